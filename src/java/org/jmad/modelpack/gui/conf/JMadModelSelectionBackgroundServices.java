@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.conf;
+
+import static java.util.Objects.requireNonNull;
+
+import org.jmad.modelpack.gui.domain.RepositoryHealthProber;
+import org.jmad.modelpack.gui.util.FxThreadStallDetector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+
+/**
+ * Starts the background services of the model selection dialogs that are enabled (the FX thread stall detector and the
+ * repository health prober) with the Spring context, and stops them with it, whether a dialog is ever opened or not.
+ */
+public class JMadModelSelectionBackgroundServices implements SmartLifecycle {
+
+    private final boolean stallDetectorEnabled;
+    private final boolean proberEnabled;
+    private final ObjectProvider<FxThreadStallDetector> stallDetector;
+    private final ObjectProvider<RepositoryHealthProber> prober;
+    private volatile boolean running;
+
+    public JMadModelSelectionBackgroundServices(boolean stallDetectorEnabled, boolean proberEnabled,
+            ObjectProvider<FxThreadStallDetector> stallDetector, ObjectProvider<RepositoryHealthProber> prober) {
+        this.stallDetectorEnabled = stallDetectorEnabled;
+        this.proberEnabled = proberEnabled;
+        this.stallDetector = requireNonNull(stallDetector, "stallDetector must not be null");
+        this.prober = requireNonNull(prober, "prober must not be null");
+    }
+
+    @Override
+    public synchronized void start() {
+        if (stallDetectorEnabled) {
+            stallDetector.getObject().start();
+        }
+        if (proberEnabled) {
+            prober.getObject().start();
+        }
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (stallDetectorEnabled) {
+            stallDetector.getObject().stop();
+        }
+        if (proberEnabled) {
+            prober.getObject().stop();
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+}
@@ -4,25 +4,53 @@
 
 package org.jmad.modelpack.gui.conf;
 
+import cern.accsoft.steering.jmad.modeldefs.io.ModelFileFinderManager;
 import javafx.geometry.Pos;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.stage.Modality;
 import org.jmad.modelpack.gui.dialogs.JMadModelSelectionDialog;
+import org.jmad.modelpack.gui.domain.ModelDefinitionCache;
+import org.jmad.modelpack.gui.domain.ModelDefinitionPrefetcher;
+import org.jmad.modelpack.gui.domain.ModelDefinitionValidator;
 import org.jmad.modelpack.gui.domain.ModelPackSelectionState;
+import org.jmad.modelpack.gui.domain.PackageCatalogue;
+import org.jmad.modelpack.gui.domain.PackageCatalogueSnapshotStore;
+import org.jmad.modelpack.gui.domain.RecentSelections;
+import org.jmad.modelpack.gui.domain.RecentSelectionsStore;
+import org.jmad.modelpack.gui.domain.RepositoryHealthProber;
+import org.jmad.modelpack.gui.domain.RepositoryHealthProber.UnhealthyRepositoryPolicy;
+import org.jmad.modelpack.gui.domain.RepositoryStatuses;
+import org.jmad.modelpack.gui.domain.RepositoryPackageSource;
+import org.jmad.modelpack.gui.domain.RepositoryProbe;
+import org.jmad.modelpack.gui.domain.RepositoryPackagesFetcher;
+import org.jmad.modelpack.gui.metrics.BindableModelSelectionMetrics;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
 import org.jmad.modelpack.gui.panes.JMadModelDefinitionSelectionControl;
 import org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl;
 import org.jmad.modelpack.gui.panes.JMadModelRepositorySelectionControl;
+import org.jmad.modelpack.gui.util.FxThreadStallDetector;
 import org.jmad.modelpack.gui.util.GuiUtils;
 import org.jmad.modelpack.service.JMadModelPackageService;
 import org.jmad.modelpack.service.JMadModelPackageRepositoryManager;
 import org.jmad.modelpack.service.conf.JMadModelPackageServiceConfiguration;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Scope;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Optional;
 
 /**
  * Spring configuration that only creates the beans for the jmad-modelpack-gui. It expects all the necessary beans
@@ -33,24 +61,199 @@ import org.springframework.context.annotation.Lazy;
 @ComponentScan(basePackageClasses = {JMadModelSelectionDialogConfiguration.class})
 public class JMadModelSelectionDialogConfiguration {
 
+    /** Name of the scheduler bean on which all the (potentially blocking) calls to the modelpack service are done */
+    public static final String JMAD_MODELPACK_IO_SCHEDULER = "jmadModelPackIoScheduler";
+
+    /**
+     * Name of the {@link BindableModelSelectionMetrics} bean to which host applications can bind their own metrics
+     * registry
+     */
+    public static final String JMAD_MODEL_SELECTION_METRICS = "jmadModelSelectionMetrics";
+
+    private static final String IO_THREAD_NAME = "jmad-modelpack-io";
+    private static final int IO_THREAD_TTL_SECONDS = 60;
+
+    /**
+     * If enabled, the dialog is created and the packages catalogue retrieved in the background once the context is
+     * initialized, so that opening the dialog for the first time is as fast as the next times
+     */
+    @Value("${jmad.modelpack.gui.warmUp.enabled:false}")
+    private boolean warmUpEnabled;
+
+    /** If enabled, FX thread stalls are logged with the stack of the FX thread and recorded in the metrics */
+    @Value("${jmad.modelpack.gui.stallDetector.enabled:false}")
+    private boolean stallDetectorEnabled;
+
+    @Value("${jmad.modelpack.gui.stallDetector.thresholdMillis:200}")
+    private long stallDetectorThresholdMillis;
+
+    @Value("${jmad.modelpack.gui.stallDetector.pingIntervalMillis:100}")
+    private long stallDetectorPingIntervalMillis;
+
+    @Value("${jmad.modelpack.gui.io.maxThreads:8}")
+    private int ioMaxThreads;
+
+    /** Maximum total weight (number of model, optics and sequence definitions) of the model definitions cache */
+    @Value("${jmad.modelpack.gui.definitionsCache.maxWeight:10000}")
+    private long definitionsCacheMaxWeight;
+
+    @Value("${jmad.modelpack.gui.definitionsCache.expireAfterWriteMinutes:30}")
+    private long definitionsCacheExpireAfterWriteMinutes;
+
+    /** If enabled, the last known packages catalogue is shown while the live one is retrieved */
+    @Value("${jmad.modelpack.gui.snapshot.enabled:true}")
+    private boolean snapshotEnabled;
+
+    /** Location of the packages catalogue snapshot. If empty, the default location in the user home is used */
+    @Value("${jmad.modelpack.gui.snapshot.file:}")
+    private String snapshotFile;
+
+    /** If enabled, the recent and pinned selections are saved, and shown as a quick-pick list in the dialog */
+    @Value("${jmad.modelpack.gui.recentSelections.enabled:true}")
+    private boolean recentSelectionsEnabled;
+
+    /** Location of the recent selections. If empty, the default location in the user home is used */
+    @Value("${jmad.modelpack.gui.recentSelections.file:}")
+    private String recentSelectionsFile;
+
+    /** Maximum number of recent (not pinned) selections kept */
+    @Value("${jmad.modelpack.gui.recentSelections.maxRecent:10}")
+    private int recentSelectionsMaxRecent;
+
+    /** If enabled, the model definitions of visible/hovered packages and latest releases are resolved in background */
+    @Value("${jmad.modelpack.gui.prefetch.enabled:false}")
+    private boolean prefetchEnabled;
+
+    @Value("${jmad.modelpack.gui.prefetch.maxConcurrency:2}")
+    private int prefetchMaxConcurrency;
+
+    @Value("${jmad.modelpack.gui.prefetch.latestReleases:5}")
+    private int prefetchLatestReleases;
+
+    /**
+     * Time window (in milliseconds) during which packages emitted by the service are collected before being added to
+     * the packages table in one go on the Fx thread.
+     */
+    @Value("${jmad.modelpack.gui.packages.batchWindowMillis:16}")
+    private long packagesBatchWindowMillis;
+
+    /** Maximum number of packages added to the packages table in one go on the Fx thread */
+    @Value("${jmad.modelpack.gui.packages.batchMaxSize:256}")
+    private int packagesBatchMaxSize;
+
+    /** Maximum number of repositories whose packages are retrieved in parallel */
+    @Value("${jmad.modelpack.gui.repositories.maxParallel:4}")
+    private int repositoriesMaxParallel;
+
+    /** Maximum time (in seconds) to wait for the next package of a repository before giving up on it */
+    @Value("${jmad.modelpack.gui.repositories.timeoutSeconds:30}")
+    private long repositoriesTimeoutSeconds;
+
+    /** Time (in milliseconds) after which a repository that delivered all its packages is shown as slow */
+    @Value("${jmad.modelpack.gui.repositories.slowThresholdMillis:5000}")
+    private long repositoriesSlowThresholdMillis;
+
+    @Value("${jmad.modelpack.gui.repositories.retries:1}")
+    private int repositoriesRetries;
+
+    @Value("${jmad.modelpack.gui.repositories.retryBackoffMillis:500}")
+    private long repositoriesRetryBackoffMillis;
+
+    /**
+     * If enabled, the repositories are regularly probed in the background and their health shown. They are listed
+     * through the {@link RepositoryPackageSource} bean if there is one, otherwise probed with an HTTP HEAD request on
+     * their url (reachability and latency only).
+     */
+    @Value("${jmad.modelpack.gui.prober.enabled:false}")
+    private boolean proberEnabled;
+
+    @Value("${jmad.modelpack.gui.prober.intervalSeconds:300}")
+    private long proberIntervalSeconds;
+
+    /** Maximum time (in seconds) between two probes of a failing repository */
+    @Value("${jmad.modelpack.gui.prober.maxBackoffSeconds:3600}")
+    private long proberMaxBackoffSeconds;
+
+    /** Number of consecutive failed or slow probes after which a repository is considered unhealthy */
+    @Value("${jmad.modelpack.gui.prober.unhealthyAfter:3}")
+    private int proberUnhealthyAfter;
+
+    /** What to do with unhealthy repositories: KEEP, DEPRIORITISE or DISABLE */
+    @Value("${jmad.modelpack.gui.prober.unhealthyPolicy:KEEP}")
+    private UnhealthyRepositoryPolicy proberUnhealthyPolicy;
+
+    /**
+     * If enabled, the files referenced by the selected model definition, optics and range are checked in the
+     * background, and the outcome is shown next to the buttons of the dialog
+     */
+    @Value("${jmad.modelpack.gui.validation.enabled:false}")
+    private boolean validationEnabled;
+
+    /** Maximum number of model files checked in parallel */
+    @Value("${jmad.modelpack.gui.validation.maxConcurrency:4}")
+    private int validationMaxConcurrency;
+
+    @Value("${jmad.modelpack.gui.validation.timeoutSeconds:30}")
+    private long validationTimeoutSeconds;
+
+    /**
+     * A new dialog, with its own selection state and controls, on each call. The catalogue of packages and the model
+     * definitions are shared by all the dialogs, so that opening another one costs no retrieval.
+     */
     @Bean
     @Lazy
-    public JMadModelSelectionDialog jmadModelSelectionDialog(Region modelSelectionRegion,
-                                                             Region repositorySelectionControl, ModelPackSelectionState selectionState) {
-        JMadModelSelectionDialog dialog = new JMadModelSelectionDialog(modelSelectionRegion, repositorySelectionControl,
+    @Scope(ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+    public JMadModelSelectionDialog jmadModelSelectionDialog(JMadModelPackageService packageService,
+                                                             PackageCatalogue packageCatalogue,
+                                                             ModelDefinitionCache modelDefinitionCache,
+                                                             JMadModelPackageRepositoryManager manager,
+                                                             RepositoryStatuses repositoryStatuses,
+                                                             @Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler,
+                                                             @Qualifier(JMAD_MODEL_SELECTION_METRICS) ModelSelectionMetrics metrics,
+                                                             ObjectProvider<ModelDefinitionPrefetcher> prefetcher,
+                                                             ObjectProvider<ModelDefinitionValidator> validator,
+                                                             ObjectProvider<RecentSelections> recentSelections) {
+        ModelPackSelectionState selectionState = new ModelPackSelectionState(packageService, modelDefinitionCache,
+                ioScheduler);
+        JMadModelPackagesSelectionControl packagesSelectionControl = createPackagesSelectionControl(packageCatalogue,
+                selectionState, metrics, prefetcher);
+        JMadModelDefinitionSelectionControl definitionSelectionControl = new JMadModelDefinitionSelectionControl(
                 selectionState);
+        JMadModelRepositorySelectionControl repositorySelectionControl = new JMadModelRepositorySelectionControl(
+                manager, ioScheduler, repositoryStatuses);
+
+        JMadModelSelectionDialog dialog = new JMadModelSelectionDialog(
+                createModelSelectionRegion(packagesSelectionControl, definitionSelectionControl),
+                repositorySelectionControl, selectionState, packagesSelectionControl::dispose);
         dialog.setResizable(true);
         dialog.initModality(Modality.NONE);
+        if (validationEnabled) {
+            dialog.validatorProperty().set(validator.getObject());
+        }
+        if (recentSelectionsEnabled) {
+            dialog.recentSelectionsProperty().set(recentSelections.getObject());
+        }
         return dialog;
     }
 
+    /**
+     * @deprecated each dialog has its own controls, created with it by {@link #jmadModelSelectionDialog}. This single
+     *             instance is only kept for the applications that assemble their own dialog from these beans.
+     */
+    @Deprecated
     @Bean
     @Lazy
     public JMadModelPackagesSelectionControl packagesSelectionControl(JMadModelPackageService packageService,
                                                                       ModelPackSelectionState modelPackSelectionState) {
-        return new JMadModelPackagesSelectionControl(packageService, modelPackSelectionState);
+        /* as before the catalogue was shared: the control has a catalogue of its own */
+        return new JMadModelPackagesSelectionControl(packageService, modelPackSelectionState,
+                jmadModelPackIoScheduler());
     }
 
+    /**
+     * @deprecated see {@link #packagesSelectionControl}
+     */
+    @Deprecated
     @Bean
     @Lazy
     public JMadModelDefinitionSelectionControl definitionSelectionControl(
@@ -58,10 +261,198 @@ public class JMadModelSelectionDialogConfiguration {
         return new JMadModelDefinitionSelectionControl(modelPackSelectionState);
     }
 
+    /**
+     * @deprecated see {@link #packagesSelectionControl}
+     */
+    @Deprecated
     @Bean
     @Lazy
     public Region modelSelectionRegion(JMadModelPackagesSelectionControl packagesSelectionControl,
                                        JMadModelDefinitionSelectionControl definitionSelectionControl) {
+        return createModelSelectionRegion(packagesSelectionControl, definitionSelectionControl);
+    }
+
+    /**
+     * @deprecated each dialog has its own selection state, created with it by {@link #jmadModelSelectionDialog}.
+     *             This single instance is only kept for the applications that assemble their own dialog from these
+     *             beans.
+     */
+    @Deprecated
+    @Bean
+    @Lazy
+    public ModelPackSelectionState modelPackSelectionState(JMadModelPackageService packageService,
+                                                           ModelDefinitionCache modelDefinitionCache,
+                                                           @Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler) {
+        return new ModelPackSelectionState(packageService, modelDefinitionCache, ioScheduler);
+    }
+
+    /**
+     * @deprecated see {@link #packagesSelectionControl}
+     */
+    @Deprecated
+    @Bean
+    @Lazy
+    public JMadModelRepositorySelectionControl repositorySelectionControl(JMadModelPackageRepositoryManager manager,
+                                                                          RepositoryStatuses repositoryStatuses,
+                                                                          @Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler) {
+        return new JMadModelRepositorySelectionControl(manager, ioScheduler, repositoryStatuses);
+    }
+
+    /**
+     * Starts the enabled stall detector and repository health prober with the context
+     */
+    @Bean
+    public JMadModelSelectionBackgroundServices jmadModelSelectionBackgroundServices(
+            ObjectProvider<FxThreadStallDetector> stallDetector, ObjectProvider<RepositoryHealthProber> prober) {
+        return new JMadModelSelectionBackgroundServices(stallDetectorEnabled, proberEnabled, stallDetector, prober);
+    }
+
+    @Bean(name = JMAD_MODELPACK_IO_SCHEDULER, destroyMethod = "dispose")
+    @Lazy
+    public Scheduler jmadModelPackIoScheduler() {
+        return Schedulers.newBoundedElastic(ioMaxThreads, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, IO_THREAD_NAME,
+                IO_THREAD_TTL_SECONDS, true);
+    }
+
+    @Bean(destroyMethod = "stop")
+    @Lazy
+    public FxThreadStallDetector fxThreadStallDetector(
+            @Qualifier(JMAD_MODEL_SELECTION_METRICS) ModelSelectionMetrics metrics) {
+        return new FxThreadStallDetector(Duration.ofMillis(stallDetectorThresholdMillis),
+                Duration.ofMillis(stallDetectorPingIntervalMillis), stall -> {
+                    FxThreadStallDetector.logStall(stall);
+                    metrics.recordDuration(ModelSelectionMetrics.FX_THREAD_STALL, stall.duration(),
+                            ModelSelectionMetrics.TAG_CULPRIT,
+                            stall.culprit().map(StackTraceElement::getClassName).orElse("unknown"));
+                });
+    }
+
+    @Bean
+    public JMadModelSelectionDialogWarmUp jmadModelSelectionDialogWarmUp(
+            ObjectProvider<PackageCatalogue> packageCatalogue,
+            ObjectProvider<JMadModelSelectionDialogFactory> jmadModelSelectionDialogFactory,
+            @Qualifier(JMAD_MODEL_SELECTION_METRICS) ModelSelectionMetrics metrics) {
+        return new JMadModelSelectionDialogWarmUp(warmUpEnabled, packageCatalogue, jmadModelSelectionDialogFactory,
+                metrics);
+    }
+
+    @Bean(name = JMAD_MODEL_SELECTION_METRICS)
+    public BindableModelSelectionMetrics jmadModelSelectionMetrics() {
+        return new BindableModelSelectionMetrics();
+    }
+
+    /**
+     * The catalogue of packages shared by all the dialogs
+     */
+    @Bean
+    @Lazy
+    public PackageCatalogue packageCatalogue(JMadModelPackageService packageService,
+                                             ModelDefinitionCache modelDefinitionCache,
+                                             @Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler,
+                                             PackageCatalogueSnapshotStore snapshotStore,
+                                             @Qualifier(JMAD_MODEL_SELECTION_METRICS) ModelSelectionMetrics metrics,
+                                             RepositoryPackagesFetcher packagesFetcher) {
+        return new PackageCatalogue(packageService, modelDefinitionCache, ioScheduler, snapshotStore,
+                Duration.ofMillis(packagesBatchWindowMillis), packagesBatchMaxSize, metrics,
+                Optional.of(packagesFetcher));
+    }
+
+    @Bean
+    @Lazy
+    public RepositoryStatuses repositoryStatuses() {
+        return new RepositoryStatuses();
+    }
+
+    /**
+     * Retrieves the packages repository by repository. If a {@link RepositoryPackageSource} bean is present, the
+     * repositories are queried independently through it; otherwise the service listing is split by repository.
+     */
+    @Bean
+    @Lazy
+    public RepositoryPackagesFetcher repositoryPackagesFetcher(JMadModelPackageService packageService,
+                                                               JMadModelPackageRepositoryManager manager,
+                                                               RepositoryStatuses repositoryStatuses,
+                                                               @Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler,
+                                                               ObjectProvider<RepositoryPackageSource> repositorySource,
+                                                               ObjectProvider<RepositoryHealthProber> prober,
+                                                               @Qualifier(JMAD_MODEL_SELECTION_METRICS) ModelSelectionMetrics metrics) {
+        RepositoryPackagesFetcher fetcher = new RepositoryPackagesFetcher(packageService, manager, repositoryStatuses,
+                ioScheduler, Optional.ofNullable(repositorySource.getIfAvailable()), repositoriesMaxParallel,
+                Duration.ofSeconds(repositoriesTimeoutSeconds), Duration.ofMillis(repositoriesSlowThresholdMillis),
+                repositoriesRetries, Duration.ofMillis(repositoriesRetryBackoffMillis), metrics);
+        if (proberEnabled && proberUnhealthyPolicy == UnhealthyRepositoryPolicy.DEPRIORITISE) {
+            fetcher.setRepositoryOrder(prober.getObject().healthRanking());
+        }
+        return fetcher;
+    }
+
+    @Bean(destroyMethod = "stop")
+    @Lazy
+    public RepositoryHealthProber repositoryHealthProber(JMadModelPackageRepositoryManager manager,
+                                                         RepositoryStatuses repositoryStatuses,
+                                                         @Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler,
+                                                         ObjectProvider<RepositoryPackageSource> repositorySource) {
+        Duration probeTimeout = Duration.ofSeconds(repositoriesTimeoutSeconds);
+        RepositoryProbe probe = Optional.ofNullable(repositorySource.getIfAvailable())
+                .map(RepositoryProbe::listingThrough).orElseGet(() -> RepositoryProbe.httpHead(probeTimeout));
+        return new RepositoryHealthProber(manager, repositoryStatuses, ioScheduler, probe,
+                Duration.ofSeconds(proberIntervalSeconds), Duration.ofSeconds(proberMaxBackoffSeconds), probeTimeout,
+                Duration.ofMillis(repositoriesSlowThresholdMillis), proberUnhealthyAfter, proberUnhealthyPolicy);
+    }
+
+    @Bean
+    @Lazy
+    public PackageCatalogueSnapshotStore packageCatalogueSnapshotStore() {
+        if (!snapshotEnabled) {
+            return PackageCatalogueSnapshotStore.disabled();
+        }
+        if (snapshotFile.isEmpty()) {
+            return new PackageCatalogueSnapshotStore(PackageCatalogueSnapshotStore.DEFAULT_SNAPSHOT_FILE);
+        }
+        return new PackageCatalogueSnapshotStore(Paths.get(snapshotFile));
+    }
+
+    @Bean
+    @Lazy
+    public ModelDefinitionValidator modelDefinitionValidator(ModelFileFinderManager fileFinderManager,
+                                                             @Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler,
+                                                             @Qualifier(JMAD_MODEL_SELECTION_METRICS) ModelSelectionMetrics metrics) {
+        return new ModelDefinitionValidator(fileFinderManager, ioScheduler, validationMaxConcurrency,
+                Duration.ofSeconds(validationTimeoutSeconds), metrics);
+    }
+
+    /**
+     * The recent and pinned selections shared by all the dialogs
+     */
+    @Bean(destroyMethod = "dispose")
+    @Lazy
+    public RecentSelections recentSelections(@Qualifier(JMAD_MODELPACK_IO_SCHEDULER) Scheduler ioScheduler) {
+        RecentSelectionsStore store = recentSelectionsFile.isEmpty()
+                ? new RecentSelectionsStore(RecentSelectionsStore.DEFAULT_SELECTIONS_FILE)
+                : new RecentSelectionsStore(Paths.get(recentSelectionsFile));
+        return new RecentSelections(store, ioScheduler, recentSelectionsMaxRecent);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    @Lazy
+    public ModelDefinitionPrefetcher modelDefinitionPrefetcher(ModelDefinitionCache modelDefinitionCache) {
+        return new ModelDefinitionPrefetcher(modelDefinitionCache, prefetchMaxConcurrency, prefetchLatestReleases);
+    }
+
+    private JMadModelPackagesSelectionControl createPackagesSelectionControl(PackageCatalogue packageCatalogue,
+                                                                             ModelPackSelectionState selectionState,
+                                                                             ModelSelectionMetrics metrics,
+                                                                             ObjectProvider<ModelDefinitionPrefetcher> prefetcher) {
+        JMadModelPackagesSelectionControl packagesSelectionControl = new JMadModelPackagesSelectionControl(
+                packageCatalogue, selectionState, metrics);
+        if (prefetchEnabled) {
+            packagesSelectionControl.prefetcherProperty().set(prefetcher.getObject());
+        }
+        return packagesSelectionControl;
+    }
+
+    private static Region createModelSelectionRegion(JMadModelPackagesSelectionControl packagesSelectionControl,
+                                                     JMadModelDefinitionSelectionControl definitionSelectionControl) {
         HBox pane = new HBox(packagesSelectionControl, definitionSelectionControl);
         pane.setFillHeight(true);
         pane.setPadding(GuiUtils.DEFAULT_SPACING_INSETS);
@@ -74,14 +465,10 @@ public class JMadModelSelectionDialogConfiguration {
 
     @Bean
     @Lazy
-    public ModelPackSelectionState modelPackSelectionState(JMadModelPackageService packageService) {
-        return new ModelPackSelectionState(packageService);
-    }
-
-    @Bean
-    @Lazy
-    public JMadModelRepositorySelectionControl repositorySelectionControl(JMadModelPackageRepositoryManager manager) {
-        return new JMadModelRepositorySelectionControl(manager);
+    public ModelDefinitionCache modelDefinitionCache(JMadModelPackageService packageService,
+                                                     @Qualifier(JMAD_MODEL_SELECTION_METRICS) ModelSelectionMetrics metrics) {
+        return new ModelDefinitionCache(packageService, definitionsCacheMaxWeight,
+                Duration.ofMinutes(definitionsCacheExpireAfterWriteMinutes), metrics);
     }
 
 }
@@ -4,23 +4,45 @@
 
 package org.jmad.modelpack.gui.conf;
 
+import static java.util.Objects.requireNonNull;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.DIALOG_OPEN_TO_CLOSE;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_OUTCOME;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.jmad.modelpack.gui.dialogs.JMadModelSelectionDialog;
 import org.jmad.modelpack.gui.domain.JMadModelSelection;
 import org.jmad.modelpack.gui.domain.JMadModelSelectionType;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
 import org.jmad.modelpack.gui.util.FxUtils;
 import org.springframework.beans.factory.annotation.Lookup;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import reactor.core.publisher.Mono;
+
+/**
+ * Opens model selection dialogs. Each selection gets its own dialog, so several can be open at the same time; they all
+ * show the same, shared, catalogue of packages. Closed dialogs are kept for reuse, up to {@value #MAX_IDLE_DIALOGS}.
+ */
 @Component("jmadModelSelectionDialogFactory")
 @Lazy
 public class JMadModelSelectionDialogFactory {
 
     private static final int MODELPACK_DIALOG_WIDTH = 1000;
     private static final int MODELPACK_DIALOG_HEIGHT = 700;
+    /** Closed dialogs kept to be shown again, up to date with the catalogue */
+    private static final int MAX_IDLE_DIALOGS = 1;
+
+    /* only accessed from the Fx thread */
+    private final Deque<JMadModelSelectionDialog> idleDialogs = new ArrayDeque<>();
 
     public Optional<JMadModelSelection> showAndWaitModelSelection() {
         return showAndWaitModelSelection(JMadModelSelectionType.ALL);
@@ -30,19 +52,139 @@ public class JMadModelSelectionDialogFactory {
         AtomicReference<Optional<JMadModelSelection>> userSelection = new AtomicReference<>();
 
         FxUtils.runSyncOnFxThread(() -> {
-            JMadModelSelectionDialog selectionDialog = jmadModelSelectionDialog();
-            selectionDialog.setModelSelectionType(selectionType);
-            selectionDialog.setWidth(MODELPACK_DIALOG_WIDTH);
-            selectionDialog.setHeight(MODELPACK_DIALOG_HEIGHT);
-            userSelection.set(selectionDialog.showAndWait());
+            JMadModelSelectionDialog selectionDialog = prepareDialog(selectionType);
+            long start = System.nanoTime();
+            Optional<JMadModelSelection> selection = selectionDialog.showAndWait();
+            recordClosed(start, selection.isPresent());
+            release(selectionDialog);
+            userSelection.set(selection);
         });
 
         return userSelection.get();
     }
 
+    public CompletableFuture<Optional<JMadModelSelection>> showModelSelection() {
+        return showModelSelection(JMadModelSelectionType.ALL);
+    }
+
+    /**
+     * Opens the model selection dialog without blocking the calling thread. The returned future completes when the
+     * dialog is closed, with an empty optional if the user cancelled it. Cancelling the future closes the dialog.
+     */
+    public CompletableFuture<Optional<JMadModelSelection>> showModelSelection(JMadModelSelectionType selectionType) {
+        return asOptionalFuture(modelSelection(selectionType));
+    }
+
+    /**
+     * Same as {@link #showModelSelection(JMadModelSelectionType)}, but closes the dialog and completes the future
+     * exceptionally with a {@link java.util.concurrent.TimeoutException} if the user did not close it within the given
+     * timeout.
+     */
+    public CompletableFuture<Optional<JMadModelSelection>> showModelSelection(JMadModelSelectionType selectionType,
+            Duration timeout) {
+        requireNonNull(timeout, "timeout must not be null");
+        return asOptionalFuture(modelSelection(selectionType).timeout(timeout));
+    }
+
+    public Mono<JMadModelSelection> modelSelection() {
+        return modelSelection(JMadModelSelectionType.ALL);
+    }
+
+    /**
+     * @return a mono that opens the model selection dialog on subscription and emits the selection once the user
+     *         confirms it, or completes empty if the user cancels the dialog. Cancelling the subscription (e.g. through
+     *         {@link Mono#timeout(Duration)}) closes the dialog. No thread is held while the dialog is open.
+     */
+    public Mono<JMadModelSelection> modelSelection(JMadModelSelectionType selectionType) {
+        requireNonNull(selectionType, "selectionType must not be null");
+        return Mono.create(sink -> {
+            /* only accessed from the Fx thread */
+            AtomicReference<JMadModelSelectionDialog> openDialog = new AtomicReference<>();
+            AtomicBoolean disposed = new AtomicBoolean(false);
+
+            sink.onDispose(() -> FxUtils.runAsyncOnFxThread(() -> {
+                disposed.set(true);
+                JMadModelSelectionDialog dialog = openDialog.getAndSet(null);
+                if (dialog != null) {
+                    dialog.close();
+                }
+            }));
+
+            FxUtils.runAsyncOnFxThread(() -> {
+                if (disposed.get()) {
+                    return;
+                }
+                JMadModelSelectionDialog selectionDialog = prepareDialog(selectionType);
+                long start = System.nanoTime();
+                openDialog.set(selectionDialog);
+                selectionDialog.setOnHidden(e -> {
+                    release(selectionDialog);
+                    if (openDialog.getAndSet(null) == null) {
+                        /* closed because the subscription was disposed */
+                        return;
+                    }
+                    JMadModelSelection selection = selectionDialog.getResult();
+                    recordClosed(start, selection != null);
+                    if (selection == null) {
+                        sink.success();
+                    } else {
+                        sink.success(selection);
+                    }
+                });
+                selectionDialog.show();
+            });
+        });
+    }
+
+    /**
+     * Creates a dialog and keeps it for the next selection, unless enough dialogs are kept already. Must be called from
+     * the Fx thread.
+     */
+    void prepareIdleDialog() {
+        if (idleDialogs.size() < MAX_IDLE_DIALOGS) {
+            JMadModelSelectionDialog selectionDialog = jmadModelSelectionDialog();
+            /* creates the skins, which would otherwise happen on first show */
+            selectionDialog.getDialogPane().applyCss();
+            idleDialogs.push(selectionDialog);
+        }
+    }
+
+    private JMadModelSelectionDialog prepareDialog(JMadModelSelectionType selectionType) {
+        JMadModelSelectionDialog selectionDialog = idleDialogs.isEmpty() ? jmadModelSelectionDialog()
+                : idleDialogs.pop();
+        selectionDialog.setModelSelectionType(selectionType);
+        selectionDialog.setWidth(MODELPACK_DIALOG_WIDTH);
+        selectionDialog.setHeight(MODELPACK_DIALOG_HEIGHT);
+        return selectionDialog;
+    }
+
+    private void release(JMadModelSelectionDialog selectionDialog) {
+        selectionDialog.setOnHidden(null);
+        if (idleDialogs.size() < MAX_IDLE_DIALOGS) {
+            idleDialogs.push(selectionDialog);
+        } else {
+            selectionDialog.dispose();
+        }
+    }
+
+    private void recordClosed(long start, boolean confirmed) {
+        modelSelectionMetrics().recordDuration(DIALOG_OPEN_TO_CLOSE, elapsedSince(start), TAG_OUTCOME,
+                confirmed ? "ok" : "cancel");
+    }
+
+    private static CompletableFuture<Optional<JMadModelSelection>> asOptionalFuture(Mono<JMadModelSelection> mono) {
+        /* cancelling the future returned by toFuture() cancels the subscription, and so closes the dialog */
+        return mono.map(Optional::of).defaultIfEmpty(Optional.empty()).toFuture();
+    }
+
     @Lookup
     protected JMadModelSelectionDialog jmadModelSelectionDialog() {
         return null;
     }
 
+    @Lookup(JMadModelSelectionDialogConfiguration.JMAD_MODEL_SELECTION_METRICS)
+    protected ModelSelectionMetrics modelSelectionMetrics() {
+        return ModelSelectionMetrics.noop();
+    }
+
 }
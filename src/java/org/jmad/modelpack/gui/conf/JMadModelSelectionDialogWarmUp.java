@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.conf;
+
+import static java.util.Objects.requireNonNull;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_PHASE;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.WARM_UP;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.controlsfx.glyphfont.GlyphFontRegistry;
+import org.jmad.modelpack.gui.domain.PackageCatalogue;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.jmad.modelpack.gui.util.FxUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+/**
+ * Does in the background, ahead of time, what otherwise happens when the model selection dialog is opened for the
+ * first time: initializing the Fx toolkit, loading the glyph font, creating the (lazy) catalogue and a dialog, which
+ * starts retrieving the packages catalogue, and creating the skins of the dialog. The dialog is then kept by the
+ * {@link JMadModelSelectionDialogFactory} for the first selection. If enabled, it runs once the Spring context
+ * is initialized, otherwise it can be triggered with {@link #warmUp()}. The duration of each phase is logged and
+ * recorded in the {@link ModelSelectionMetrics}.
+ */
+public class JMadModelSelectionDialogWarmUp implements SmartInitializingSingleton {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JMadModelSelectionDialogWarmUp.class);
+    private static final String GLYPH_FONT_NAME = "FontAwesome";
+
+    private final boolean enabledOnStartup;
+    private final ObjectProvider<PackageCatalogue> catalogue;
+    private final ObjectProvider<JMadModelSelectionDialogFactory> dialogFactory;
+    private final ModelSelectionMetrics metrics;
+    private CompletableFuture<Void> warmUp;
+
+    public JMadModelSelectionDialogWarmUp(boolean enabledOnStartup,
+            ObjectProvider<PackageCatalogue> catalogue, ObjectProvider<JMadModelSelectionDialogFactory> dialogFactory,
+            ModelSelectionMetrics metrics) {
+        this.enabledOnStartup = enabledOnStartup;
+        this.catalogue = requireNonNull(catalogue, "catalogue must not be null");
+        this.dialogFactory = requireNonNull(dialogFactory, "dialogFactory must not be null");
+        this.metrics = requireNonNull(metrics, "metrics must not be null");
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabledOnStartup) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Starts warming up the dialog in the background, unless already done or in progress.
+     *
+     * @return a future that completes once the dialog is ready to be shown
+     */
+    public synchronized CompletableFuture<Void> warmUp() {
+        if (warmUp == null) {
+            long start = System.nanoTime();
+            // @formatter:off
+            warmUp = CompletableFuture
+                    .runAsync(() -> timed("fx-toolkit", FxUtils::ensureFxInitialized), this::runOnWarmUpThread)
+                    .thenRun(() -> timed("fonts", () -> GlyphFontRegistry.font(GLYPH_FONT_NAME)))
+                    .thenRun(() -> timed("catalogue", catalogue::getObject))
+                    .thenRunAsync(() -> timed("dialog", this::createDialog), FxUtils::runAsyncOnFxThread)
+                    .whenComplete((v, e) -> {
+                        if (e != null) {
+                            LOGGER.warn("Error while warming up the model selection dialog", e);
+                            return;
+                        }
+                        LOGGER.info("Model selection dialog warmed up in {} ms", elapsedSince(start).toMillis());
+                        metrics.recordDuration(WARM_UP, elapsedSince(start), TAG_PHASE, "total");
+                    });
+            // @formatter:on
+        }
+        return warmUp;
+    }
+
+    private void createDialog() {
+        dialogFactory.getObject().prepareIdleDialog();
+    }
+
+    private void timed(String phase, Runnable task) {
+        long start = System.nanoTime();
+        task.run();
+        LOGGER.debug("Warm up of {} took {} ms", phase, elapsedSince(start).toMillis());
+        metrics.recordDuration(WARM_UP, elapsedSince(start), TAG_PHASE, phase);
+    }
+
+    private void runOnWarmUpThread(Runnable task) {
+        Thread thread = new Thread(task, "jmad-modelpack-warmup");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+}
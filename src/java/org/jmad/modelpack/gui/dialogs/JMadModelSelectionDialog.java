@@ -5,79 +5,262 @@
 package org.jmad.modelpack.gui.dialogs;
 
 import cern.accsoft.steering.jmad.domain.machine.RangeDefinition;
+import cern.accsoft.steering.jmad.domain.machine.SequenceDefinition;
 import cern.accsoft.steering.jmad.model.JMadModelStartupConfiguration;
 import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
 import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.event.ActionEvent;
+import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import org.jmad.modelpack.domain.ModelPackageVariant;
 import org.jmad.modelpack.gui.domain.JMadModelSelection;
 import org.jmad.modelpack.gui.domain.JMadModelSelectionType;
+import org.jmad.modelpack.gui.domain.ModelDefinitionValidation;
+import org.jmad.modelpack.gui.domain.ModelDefinitionValidator;
 import org.jmad.modelpack.gui.domain.ModelPackSelectionState;
+import org.jmad.modelpack.gui.domain.ModelSelectionCoordinates;
+import org.jmad.modelpack.gui.domain.RecentSelections;
+import org.jmad.modelpack.gui.panes.JMadRecentSelectionsControl;
 import org.jmad.modelpack.gui.util.GuiUtils;
+import org.jmad.modelpack.gui.util.LatestRequestSubscription;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Function;
+
+import static freetimelabs.io.reactorfx.schedulers.FxSchedulers.fxThread;
 import static javafx.scene.control.TabPane.TabClosingPolicy.UNAVAILABLE;
+import static org.jmad.modelpack.gui.util.FxUtils.onChange;
 
 public class JMadModelSelectionDialog extends Dialog<JMadModelSelection> {
 
+    /* the selection changes in bursts (model definition, then optics, sequence and range), or while scrolling */
+    private static final Duration VALIDATION_DELAY = Duration.ofMillis(200);
+    private static final int SHOWN_MISSING_FILES = 3;
+
     private final ModelPackSelectionState selectionState;
+    private final Disposable resources;
+    private final ObjectProperty<ModelDefinitionValidator> validator = new SimpleObjectProperty<>();
+    private final ReadOnlyObjectWrapper<ModelDefinitionValidation> validation = new ReadOnlyObjectWrapper<>();
+    private final LatestRequestSubscription validationRequest = new LatestRequestSubscription();
+    private final ObjectProperty<RecentSelections> recentSelections = new SimpleObjectProperty<>();
+    private final JMadRecentSelectionsControl recentSelectionsControl;
 
     public JMadModelSelectionDialog(Region modelSelectionRegion, Region repositorySelectionRegion,
                                     ModelPackSelectionState selectionState) {
+        this(modelSelectionRegion, repositorySelectionRegion, selectionState, Disposables.single());
+    }
+
+    /**
+     * @param resources released when the dialog is {@link #dispose() disposed}, e.g. the subscriptions of its controls
+     *            to the shared catalogue
+     */
+    public JMadModelSelectionDialog(Region modelSelectionRegion, Region repositorySelectionRegion,
+                                    ModelPackSelectionState selectionState, Disposable resources) {
         this.selectionState = selectionState;
+        this.resources = resources;
         TabPane tabPane = new TabPane();
         tabPane.setTabClosingPolicy(UNAVAILABLE);
-        tabPane.getTabs().add(new Tab("Available models", modelSelectionRegion));
+        Tab modelSelectionTab = new Tab("Available models", modelSelectionRegion);
+        tabPane.getTabs().add(modelSelectionTab);
         tabPane.getTabs().add(new Tab("Models repositories", repositorySelectionRegion));
+        /* no need to fill the optics, sequences and ranges nobody looks at */
+        selectionState.detailsShownProperty().bind(modelSelectionTab.selectedProperty().and(showingProperty()));
 
         tabPane.setPrefWidth(1000);
         tabPane.setPrefHeight(700);
 
-        getDialogPane().setContent(tabPane);
+        recentSelectionsControl = new JMadRecentSelectionsControl(selectionState);
+        recentSelectionsControl.recentSelectionsProperty().bind(recentSelections);
+        recentSelectionsControl.setPadding(GuiUtils.DEFAULT_SPACING_INSETS);
+        VBox content = new VBox(recentSelectionsControl, tabPane);
+        VBox.setVgrow(tabPane, Priority.ALWAYS);
+
+        getDialogPane().setContent(content);
 
         ButtonType buttonTypeOk = new ButtonType("Ok", ButtonData.OK_DONE);
         ButtonType buttonTypeCancel = new ButtonType("Cancel", ButtonData.CANCEL_CLOSE);
         getDialogPane().getButtonTypes().addAll(buttonTypeOk, buttonTypeCancel);
 
+        Label validationStatus = new Label();
+        validationStatus.textProperty().bind(Bindings.createStringBinding(() -> validationText(validation.get()),
+                validation));
+        ButtonBar.setButtonData(validationStatus, ButtonData.LEFT);
+        ButtonBar buttonBar = (ButtonBar) getDialogPane().lookup(".button-bar");
+        if (buttonBar != null) {
+            buttonBar.getButtons().add(validationStatus);
+        }
+
+        validator.addListener(onChange(v -> validateSelection()));
+        selectionState.selectedModelDefinitionProperty().addListener(onChange(v -> validateSelection()));
+        selectionState.selectedOpticsProperty().addListener(onChange(v -> validateSelection()));
+        selectionState.selectedRangeProperty().addListener(onChange(v -> validateSelection()));
+        selectionState.modelSelectionTypeProperty().addListener(onChange(v -> validateSelection()));
+
         setTitle("JMad Model Selection");
         getDialogPane().setPadding(GuiUtils.ZERO_INSETS);
         tabPane.setPadding(GuiUtils.ZERO_INSETS);
 
-        setResultConverter(b -> {
-            if (b != buttonTypeOk) {
-                return null;
-            }
+        Button okButton = (Button) getDialogPane().lookupButton(buttonTypeOk);
+        okButton.addEventHandler(ActionEvent.ACTION, e -> recordSelection());
+        recentSelectionsControl.setOnConfirm(okButton::fire);
 
-            JMadModelDefinition modelDefinition = selectionState.selectedModelDefinitionProperty().get();
+        setResultConverter(b -> selectionOf(b, buttonTypeOk));
+    }
+
+    private JMadModelSelection selectionOf(ButtonType buttonType, ButtonType buttonTypeOk) {
+        if (buttonType != buttonTypeOk) {
+            return null;
+        }
 
-            if (modelDefinition == null) {
-                return null;
-            }
+        JMadModelDefinition modelDefinition = selectionState.selectedModelDefinitionProperty().get();
 
-            if(selectionState.modelSelectionTypeProperty().get() == JMadModelSelectionType.MODEL_DEFINITION_ONLY) {
-                return new JMadModelSelection(modelDefinition);
-            }
+        if (modelDefinition == null) {
+            return null;
+        }
 
-            if(selectionState.modelSelectionTypeProperty().get() == JMadModelSelectionType.ALL) {
-                OpticsDefinition opticsDefinition = selectionState.selectedOpticsProperty().get();
-                RangeDefinition rangeDefinition = selectionState.selectedRangeProperty().get();
+        if(selectionState.modelSelectionTypeProperty().get() == JMadModelSelectionType.MODEL_DEFINITION_ONLY) {
+            return new JMadModelSelection(modelDefinition);
+        }
 
-                JMadModelStartupConfiguration startupConfiguration = new JMadModelStartupConfiguration();
-                startupConfiguration.setInitialOpticsDefinition(opticsDefinition);
-                startupConfiguration.setInitialRangeDefinition(rangeDefinition);
+        if(selectionState.modelSelectionTypeProperty().get() == JMadModelSelectionType.ALL) {
+            OpticsDefinition opticsDefinition = selectionState.selectedOpticsProperty().get();
+            RangeDefinition rangeDefinition = selectionState.selectedRangeProperty().get();
 
-                return new JMadModelSelection(modelDefinition, startupConfiguration);
-            }
+            JMadModelStartupConfiguration startupConfiguration = new JMadModelStartupConfiguration();
+            startupConfiguration.setInitialOpticsDefinition(opticsDefinition);
+            startupConfiguration.setInitialRangeDefinition(rangeDefinition);
 
-            throw new IllegalStateException("Invalid model selection type");
-        });
+            return new JMadModelSelection(modelDefinition, startupConfiguration);
+        }
+
+        throw new IllegalStateException("Invalid model selection type");
     }
 
     public void setModelSelectionType(JMadModelSelectionType type) {
         selectionState.modelSelectionTypeProperty().set(type);
     }
 
+    public ModelPackSelectionState selectionState() {
+        return selectionState;
+    }
+
+    /**
+     * Optional validator of the selection. When set, the files referenced by the selected model definition (and
+     * optics and range) are checked in the background, and the outcome is shown next to the buttons.
+     */
+    public ObjectProperty<ModelDefinitionValidator> validatorProperty() {
+        return validator;
+    }
+
+    /**
+     * @return the outcome of the check of the current selection, null if there is no validator or nothing selected
+     */
+    public ReadOnlyObjectProperty<ModelDefinitionValidation> validationProperty() {
+        return validation.getReadOnlyProperty();
+    }
+
+    /**
+     * Optional recent and pinned selections. When set, they are shown as a quick-pick list above the tabs, and the
+     * selections confirmed with this dialog are added to them.
+     */
+    public ObjectProperty<RecentSelections> recentSelectionsProperty() {
+        return recentSelections;
+    }
+
+    private void recordSelection() {
+        RecentSelections activeRecentSelections = recentSelections.get();
+        ModelPackageVariant variant = selectionState.selectedPackageProperty().get();
+        JMadModelDefinition modelDefinition = selectionState.selectedModelDefinitionProperty().get();
+        if (activeRecentSelections == null || variant == null || modelDefinition == null) {
+            return;
+        }
+
+        boolean withOptics = selectionState.modelSelectionTypeProperty().get() == JMadModelSelectionType.ALL;
+        String opticsName = withOptics ? nameOf(selectionState.selectedOpticsProperty().get(),
+                OpticsDefinition::getName) : null;
+        String sequenceName = withOptics ? nameOf(selectionState.selectedSequenceProperty().get(),
+                SequenceDefinition::getName) : null;
+        String rangeName = withOptics ? nameOf(selectionState.selectedRangeProperty().get(),
+                RangeDefinition::getName) : null;
+        activeRecentSelections.record(new ModelSelectionCoordinates(variant, modelDefinition.getName(), opticsName,
+                sequenceName, rangeName, false, Instant.now()));
+    }
+
+    private static <T> String nameOf(T definition, Function<T, String> nameOf) {
+        return definition == null ? null : nameOf.apply(definition);
+    }
+
+    private void validateSelection() {
+        ModelDefinitionValidator activeValidator = validator.get();
+        JMadModelDefinition modelDefinition = selectionState.selectedModelDefinitionProperty().get();
+        if (activeValidator == null || modelDefinition == null) {
+            validationRequest.cancel();
+            validation.set(null);
+            return;
+        }
+
+        /* the optics and range only belong to the result for this selection type */
+        boolean withOptics = selectionState.modelSelectionTypeProperty().get() == JMadModelSelectionType.ALL;
+        OpticsDefinition optics = withOptics ? selectionState.selectedOpticsProperty().get() : null;
+        RangeDefinition range = withOptics ? selectionState.selectedRangeProperty().get() : null;
+        validation.set(ModelDefinitionValidation.validating(modelDefinition));
+        // @formatter:off
+        validationRequest.subscribeLatest(() -> activeValidator.validate(modelDefinition, optics, range)
+                .delaySubscription(VALIDATION_DELAY)
+                .publishOn(fxThread())
+                .subscribe(validation::set));
+        // @formatter:on
+    }
+
+    private static String validationText(ModelDefinitionValidation validation) {
+        if (validation == null) {
+            return "";
+        }
+        String latency = validation.latency().map(l -> ", " + l.toMillis() + " ms").orElse("");
+        switch (validation.state()) {
+        case VALIDATING:
+            return "checking model files...";
+        case VALID:
+            return "model files ok (" + validation.checkedFiles() + " files" + latency + ")";
+        case INVALID:
+            List<String> missingFiles = validation.missingFiles();
+            String shownFiles = String.join(", ", missingFiles.subList(0,
+                    Math.min(SHOWN_MISSING_FILES, missingFiles.size())));
+            String moreFiles = missingFiles.size() > SHOWN_MISSING_FILES
+                    ? " and " + (missingFiles.size() - SHOWN_MISSING_FILES) + " more"
+                    : "";
+            return "missing model files: " + shownFiles + moreFiles;
+        default:
+            return "model files not checked: " + validation.error().orElse("unknown error");
+        }
+    }
+
+    /**
+     * Closes the dialog and releases its resources. The dialog must not be shown anymore afterwards.
+     */
+    public void dispose() {
+        close();
+        validationRequest.cancel();
+        recentSelectionsControl.dispose();
+        resources.dispose();
+    }
+
 }
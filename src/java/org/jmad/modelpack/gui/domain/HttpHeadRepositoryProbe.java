@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends an HTTP HEAD request to the url of a repository. Any answer below 500 means that the repository is reachable:
+ * the repositories are usually APIs that refuse a plain HEAD (401, 404, 405), which still tells how fast they answer.
+ * The request blocks, so the mono has to be subscribed on an I/O scheduler.
+ */
+final class HttpHeadRepositoryProbe implements RepositoryProbe {
+
+    private final int timeoutMillis;
+
+    HttpHeadRepositoryProbe(Duration timeout) {
+        this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE,
+                requireNonNull(timeout, "timeout must not be null").toMillis());
+    }
+
+    @Override
+    public boolean canProbe(JMadModelPackageRepository repository) {
+        String scheme = uriOf(repository).map(URI::getScheme).orElse("");
+        return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+    }
+
+    @Override
+    public Mono<Integer> probe(JMadModelPackageRepository repository) {
+        return Mono.fromCallable(() -> responseCodeOf(repository)).flatMap(responseCode -> Mono.empty());
+    }
+
+    private int responseCodeOf(JMadModelPackageRepository repository) throws IOException {
+        URI uri = uriOf(repository).orElseThrow(() -> new IOException("Invalid url " + repository.repoUrl()));
+        HttpURLConnection connection = (HttpURLConnection) uri.toURL().openConnection();
+        try {
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            int responseCode = connection.getResponseCode();
+            if (responseCode >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+                throw new IOException("HTTP " + responseCode + " from " + uri);
+            }
+            return responseCode;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static Optional<URI> uriOf(JMadModelPackageRepository repository) {
+        if (repository.repoUrl() == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(new URI(repository.repoUrl()));
+        } catch (URISyntaxException e) {
+            return Optional.empty();
+        }
+    }
+
+}
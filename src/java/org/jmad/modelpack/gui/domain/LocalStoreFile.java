@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The file of a local store (packages catalogue snapshot, recent selections): a magic number and a format version,
+ * followed by the content of the store. The file is written next to its final place and moved over it, so that it is
+ * never left half written, and it is deleted if it cannot be read back (corrupted, truncated, written by an
+ * incompatible version). Without a path, the file never has any content and nothing is saved. All the methods are
+ * blocking.
+ */
+final class LocalStoreFile {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LocalStoreFile.class);
+
+    private final Path file;
+    private final int magic;
+    private final int formatVersion;
+    private final boolean compressed;
+    private final String description;
+
+    /**
+     * @param file the path of the file, or null if the store is disabled
+     * @param description what the file contains, for the log messages
+     */
+    LocalStoreFile(Path file, int magic, int formatVersion, boolean compressed, String description) {
+        this.file = file;
+        this.magic = magic;
+        this.formatVersion = formatVersion;
+        this.compressed = compressed;
+        this.description = requireNonNull(description, "description must not be null");
+    }
+
+    /**
+     * @return the content read by the given reader after the header, or empty if there is no file or it cannot be
+     *         read, in which case it is deleted
+     */
+    <T> Optional<T> read(ContentReader<T> reader) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+
+        try (DataInputStream in = new DataInputStream(inputStream())) {
+            if (in.readInt() != magic || in.readInt() != formatVersion) {
+                throw new IOException("Not a " + description + ", or unsupported format version");
+            }
+            return Optional.of(reader.read(in));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("The {} {} cannot be read and is discarded", description, file, e);
+            delete();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Replaces the file with the header followed by what the given writer writes. Failures are logged.
+     */
+    void write(ContentWriter writer) {
+        if (file == null) {
+            return;
+        }
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            try (DataOutputStream out = new DataOutputStream(outputStream(temporaryFile))) {
+                out.writeInt(magic);
+                out.writeInt(formatVersion);
+                writer.write(out);
+            }
+            try {
+                Files.move(temporaryFile, file, REPLACE_EXISTING, ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("The {} {} could not be saved", description, file, e);
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    void delete() {
+        if (file != null) {
+            deleteQuietly(file);
+        }
+    }
+
+    private InputStream inputStream() throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file));
+        if (!compressed) {
+            return in;
+        }
+        try {
+            return new GZIPInputStream(in);
+        } catch (IOException e) {
+            /* not a gzipped file, it must not stay open as it is deleted */
+            in.close();
+            throw e;
+        }
+    }
+
+    private OutputStream outputStream(Path target) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(target));
+        return compressed ? new GZIPOutputStream(out) : out;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete {}", file, e);
+        }
+    }
+
+    @FunctionalInterface
+    interface ContentReader<T> {
+        T read(DataInputStream in) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface ContentWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+}
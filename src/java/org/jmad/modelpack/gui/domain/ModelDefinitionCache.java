@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.MODEL_DEFINITIONS_LATENCY;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_OUTCOME;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.outcomeOf;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.jmad.modelpack.service.JMadModelPackageService;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import reactor.core.publisher.Mono;
+
+/**
+ * LRU cache of the model definitions resolved from a {@link ModelPackageVariant}, so that going back to a recently
+ * selected package does not download and parse the model pack again. Entries are weighed by the number of model,
+ * optics and sequence definitions they hold (so every entry weighs at least 1 and the weight also bounds the number of
+ * entries) and expire after a fixed time. Concurrent loads of the same variant (the selected package and the
+ * prefetching of the visible rows, for instance) share a single retrieval from the service.
+ */
+public class ModelDefinitionCache {
+
+    public static final long DEFAULT_MAXIMUM_WEIGHT = 10_000;
+    public static final Duration DEFAULT_EXPIRE_AFTER_WRITE = Duration.ofMinutes(30);
+
+    private final JMadModelPackageService packageService;
+    private final ModelSelectionMetrics metrics;
+    private final Cache<ModelPackageVariant, List<JMadModelDefinition>> cache;
+    private final List<BiConsumer<ModelPackageVariant, List<JMadModelDefinition>>> loadListeners =
+            new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<ModelPackageVariant, Mono<List<JMadModelDefinition>>> inFlightLoads =
+            new ConcurrentHashMap<>();
+
+    public ModelDefinitionCache(JMadModelPackageService packageService) {
+        this(packageService, DEFAULT_MAXIMUM_WEIGHT, DEFAULT_EXPIRE_AFTER_WRITE);
+    }
+
+    public ModelDefinitionCache(JMadModelPackageService packageService, long maximumWeight,
+            Duration expireAfterWrite) {
+        this(packageService, maximumWeight, expireAfterWrite, ModelSelectionMetrics.noop());
+    }
+
+    public ModelDefinitionCache(JMadModelPackageService packageService, long maximumWeight,
+            Duration expireAfterWrite, ModelSelectionMetrics metrics) {
+        this.packageService = requireNonNull(packageService, "packageService must not be null");
+        this.metrics = requireNonNull(metrics, "metrics must not be null");
+        requireNonNull(expireAfterWrite, "expireAfterWrite must not be null");
+        // @formatter:off
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher(ModelDefinitionCache::weightOf)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        // @formatter:on
+    }
+
+    /**
+     * @return the model definitions of the given variant if they are cached, without triggering any loading
+     */
+    public Optional<List<JMadModelDefinition>> cachedDefinitionsFrom(ModelPackageVariant variant) {
+        return Optional.ofNullable(cache.getIfPresent(variant));
+    }
+
+    /**
+     * @return the model definitions of the given variant if they are cached. Unlike
+     *         {@link #cachedDefinitionsFrom(ModelPackageVariant)}, this is not recorded as a hit or a miss.
+     */
+    public Optional<List<JMadModelDefinition>> peekDefinitionsFrom(ModelPackageVariant variant) {
+        return Optional.ofNullable(cache.asMap().get(variant));
+    }
+
+    /**
+     * @return true if the model definitions of the given variant are cached. Unlike
+     *         {@link #cachedDefinitionsFrom(ModelPackageVariant)}, this is not recorded as a hit or a miss.
+     */
+    public boolean isCached(ModelPackageVariant variant) {
+        return cache.asMap().containsKey(variant);
+    }
+
+    /**
+     * @return a mono that resolves the model definitions of the given variant from the service and caches them once
+     *         they are all retrieved. The cache is not looked up. If the variant is already being loaded, the mono
+     *         joins that load instead of starting another one; the load is cancelled only once all the monos sharing
+     *         it are cancelled.
+     */
+    public Mono<List<JMadModelDefinition>> loadDefinitionsFrom(ModelPackageVariant variant) {
+        requireNonNull(variant, "variant must not be null");
+        return Mono.defer(() -> inFlightLoads.computeIfAbsent(variant, this::sharedLoadOf));
+    }
+
+    /**
+     * @return the number of variants being loaded from the service
+     */
+    public int inFlightLoadsCount() {
+        return inFlightLoads.size();
+    }
+
+    private Mono<List<JMadModelDefinition>> sharedLoadOf(ModelPackageVariant variant) {
+        /*
+         * the load is unregistered before its outcome is delivered, which is replayed to the subscribers that got it
+         * just before; one subscribing after it was cancelled restarts it, which must then not unregister a newer load
+         */
+        AtomicReference<Mono<List<JMadModelDefinition>>> sharedLoad = new AtomicReference<>();
+        // @formatter:off
+        sharedLoad.set(Mono.fromDirect(loadOf(variant)
+                .doOnTerminate(() -> inFlightLoads.remove(variant, sharedLoad.get()))
+                .doOnCancel(() -> inFlightLoads.remove(variant, sharedLoad.get()))
+                .flux()
+                .replay(1)
+                .refCount()));
+        // @formatter:on
+        return sharedLoad.get();
+    }
+
+    private Mono<List<JMadModelDefinition>> loadOf(ModelPackageVariant variant) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return packageService.modelDefinitionsFrom(variant).collectList().doOnNext(defs -> {
+                cache.put(variant, defs);
+                loadListeners.forEach(listener -> listener.accept(variant, defs));
+            }).doFinally(signal -> metrics.recordDuration(MODEL_DEFINITIONS_LATENCY, elapsedSince(start), TAG_OUTCOME,
+                    outcomeOf(signal)));
+        });
+    }
+
+    /**
+     * Registers a listener that is notified (on the thread that loaded them) each time the model definitions of a
+     * variant are loaded from the service.
+     */
+    public void addLoadListener(BiConsumer<ModelPackageVariant, List<JMadModelDefinition>> listener) {
+        loadListeners.add(listener);
+    }
+
+    public void removeLoadListener(BiConsumer<ModelPackageVariant, List<JMadModelDefinition>> listener) {
+        loadListeners.remove(listener);
+    }
+
+    public void invalidate(ModelPackageVariant variant) {
+        cache.invalidate(variant);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of this cache
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private static int weightOf(ModelPackageVariant variant, List<JMadModelDefinition> definitions) {
+        int weight = 1;
+        for (JMadModelDefinition definition : definitions) {
+            weight += 1 + definition.getOpticsDefinitions().size() + definition.getSequenceDefinitions().size();
+        }
+        return weight;
+    }
+
+}
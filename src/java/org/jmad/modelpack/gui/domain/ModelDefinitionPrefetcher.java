@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Resolves the model definitions of package variants the user is likely to select next (visible or hovered rows,
+ * latest releases) in the background and puts them into the {@link ModelDefinitionCache}, so that the selection
+ * usually hits warm data. Requests are queued and executed with a bounded concurrency on low priority threads. Requests
+ * that are not needed anymore (e.g. the row scrolled away) can be cancelled, whether they are still queued or running.
+ * A running request shares its load with the selection of the same variant, which cancelling it does not interrupt.
+ */
+public class ModelDefinitionPrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelDefinitionPrefetcher.class);
+    private static final String THREAD_NAME_PREFIX = "jmad-modelpack-prefetch-";
+    private static final int THREAD_TTL_SECONDS = 60;
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 2;
+    public static final int DEFAULT_LATEST_RELEASES_COUNT = 5;
+
+    private final ModelDefinitionCache cache;
+    private final int maxConcurrency;
+    private final int latestReleasesCount;
+    private final Scheduler scheduler;
+
+    private final Set<ModelPackageVariant> pending = new LinkedHashSet<>();
+    private final Map<ModelPackageVariant, Disposable> inFlight = new HashMap<>();
+
+    public ModelDefinitionPrefetcher(ModelDefinitionCache cache) {
+        this(cache, DEFAULT_MAX_CONCURRENCY, DEFAULT_LATEST_RELEASES_COUNT);
+    }
+
+    public ModelDefinitionPrefetcher(ModelDefinitionCache cache, int maxConcurrency, int latestReleasesCount) {
+        this.cache = requireNonNull(cache, "cache must not be null");
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.latestReleasesCount = latestReleasesCount;
+        this.scheduler = Schedulers.newBoundedElastic(maxConcurrency, Integer.MAX_VALUE, lowPriorityThreads(),
+                THREAD_TTL_SECONDS);
+    }
+
+    /**
+     * Queues the resolution of the model definitions of the given variant, unless they are already cached, queued or
+     * being resolved.
+     */
+    public synchronized void prefetch(ModelPackageVariant variant) {
+        if (pending.contains(variant) || inFlight.containsKey(variant) || cache.isCached(variant)) {
+            return;
+        }
+        pending.add(variant);
+        drain();
+    }
+
+    /**
+     * Drops the given variant from the queue, or cancels its resolution if it is already running.
+     */
+    public synchronized void cancel(ModelPackageVariant variant) {
+        if (pending.remove(variant)) {
+            return;
+        }
+        Disposable running = inFlight.remove(variant);
+        if (running != null) {
+            running.dispose();
+            drain();
+        }
+    }
+
+    public synchronized void cancelAll() {
+        pending.clear();
+        inFlight.values().forEach(Disposable::dispose);
+        inFlight.clear();
+    }
+
+    /**
+     * @return how many of the latest releases (one per package, in table order) should be prefetched once the
+     *         packages are known
+     */
+    public int latestReleasesCount() {
+        return latestReleasesCount;
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size() + inFlight.size();
+    }
+
+    public void dispose() {
+        cancelAll();
+        scheduler.dispose();
+    }
+
+    private void drain() {
+        Iterator<ModelPackageVariant> pendingVariants = pending.iterator();
+        while (inFlight.size() < maxConcurrency && pendingVariants.hasNext()) {
+            ModelPackageVariant variant = pendingVariants.next();
+            pendingVariants.remove();
+
+            Disposable.Swap running = Disposables.swap();
+            inFlight.put(variant, running);
+            // @formatter:off
+            running.update(cache.loadDefinitionsFrom(variant)
+                    .subscribeOn(scheduler)
+                    .doFinally(signal -> completed(variant, running))
+                    .subscribe(defs -> LOGGER.debug("Prefetched {} model definitions from {}", defs.size(), variant),
+                            e -> LOGGER.debug("Error while prefetching model definitions from {}", variant, e)));
+            // @formatter:on
+        }
+    }
+
+    private synchronized void completed(ModelPackageVariant variant, Disposable running) {
+        if (inFlight.remove(variant, running)) {
+            drain();
+        }
+    }
+
+    private static ThreadFactory lowPriorityThreads() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
+    }
+
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+
+/**
+ * Outcome of the last (or running) check of the files referenced by a model selection, as done by the
+ * {@link ModelDefinitionValidator}.
+ */
+public final class ModelDefinitionValidation {
+
+    public enum State {
+        VALIDATING,
+        VALID,
+        /** some of the referenced files could not be found */
+        INVALID,
+        /** the check itself failed (e.g. timed out), so nothing is known about the files */
+        FAILED
+    }
+
+    private final JMadModelDefinition modelDefinition;
+    private final State state;
+    private final Duration latency;
+    private final int checkedFiles;
+    private final List<String> missingFiles;
+    private final String error;
+
+    private ModelDefinitionValidation(JMadModelDefinition modelDefinition, State state, Duration latency,
+            int checkedFiles, List<String> missingFiles, String error) {
+        this.modelDefinition = requireNonNull(modelDefinition, "modelDefinition must not be null");
+        this.state = requireNonNull(state, "state must not be null");
+        this.latency = latency;
+        this.checkedFiles = checkedFiles;
+        this.missingFiles = ImmutableList.copyOf(missingFiles);
+        this.error = error;
+    }
+
+    public static ModelDefinitionValidation validating(JMadModelDefinition modelDefinition) {
+        return new ModelDefinitionValidation(modelDefinition, State.VALIDATING, null, 0, Collections.emptyList(),
+                null);
+    }
+
+    public static ModelDefinitionValidation completed(JMadModelDefinition modelDefinition, Duration latency,
+            int checkedFiles, List<String> missingFiles) {
+        State state = missingFiles.isEmpty() ? State.VALID : State.INVALID;
+        return new ModelDefinitionValidation(modelDefinition, state, latency, checkedFiles, missingFiles, null);
+    }
+
+    public static ModelDefinitionValidation failed(JMadModelDefinition modelDefinition, Duration latency,
+            Throwable error) {
+        return new ModelDefinitionValidation(modelDefinition, State.FAILED, latency, 0, Collections.emptyList(),
+                String.valueOf(Throwables.getRootCause(error)));
+    }
+
+    public JMadModelDefinition modelDefinition() {
+        return modelDefinition;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * @return the time it took to check all the files, or until it failed. Empty while validating
+     */
+    public Optional<Duration> latency() {
+        return Optional.ofNullable(latency);
+    }
+
+    public int checkedFiles() {
+        return checkedFiles;
+    }
+
+    /**
+     * @return the names of the referenced files that could not be found, with the reason if there is one
+     */
+    public List<String> missingFiles() {
+        return missingFiles;
+    }
+
+    public Optional<String> error() {
+        return Optional.ofNullable(error);
+    }
+
+    @Override
+    public String toString() {
+        return "ModelDefinitionValidation [modelDefinition=" + modelDefinition + ", state=" + state + ", latency="
+                + latency + ", checkedFiles=" + checkedFiles + ", missingFiles=" + missingFiles + ", error=" + error
+                + "]";
+    }
+
+}
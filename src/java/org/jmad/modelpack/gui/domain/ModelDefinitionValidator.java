@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.MODEL_DEFINITION_VALIDATION;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_OUTCOME;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+
+import com.google.common.base.Throwables;
+
+import cern.accsoft.steering.jmad.domain.file.ModelFile;
+import cern.accsoft.steering.jmad.domain.machine.RangeDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+import cern.accsoft.steering.jmad.modeldefs.io.ModelFileFinder;
+import cern.accsoft.steering.jmad.modeldefs.io.ModelFileFinderManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Checks, before a model selection is returned to the host application, that the files it references (init files of
+ * the model definition and of the optics, post-use files of the range) can be found, so that a broken model pack shows
+ * up in the dialog rather than when the model is started. The files are looked up with the {@link ModelFileFinder} of
+ * the model definition, a bounded number of them in parallel on the given scheduler.
+ */
+public class ModelDefinitionValidator {
+
+    public static final int DEFAULT_MAX_CONCURRENCY = 4;
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+
+    private final ModelFileFinderManager fileFinderManager;
+    private final Scheduler ioScheduler;
+    private final int maxConcurrency;
+    private final Duration timeout;
+    private final ModelSelectionMetrics metrics;
+
+    public ModelDefinitionValidator(ModelFileFinderManager fileFinderManager, Scheduler ioScheduler) {
+        this(fileFinderManager, ioScheduler, DEFAULT_MAX_CONCURRENCY, DEFAULT_TIMEOUT, ModelSelectionMetrics.noop());
+    }
+
+    public ModelDefinitionValidator(ModelFileFinderManager fileFinderManager, Scheduler ioScheduler,
+            int maxConcurrency, Duration timeout, ModelSelectionMetrics metrics) {
+        this.fileFinderManager = requireNonNull(fileFinderManager, "fileFinderManager must not be null");
+        this.ioScheduler = requireNonNull(ioScheduler, "ioScheduler must not be null");
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.timeout = requireNonNull(timeout, "timeout must not be null");
+        this.metrics = requireNonNull(metrics, "metrics must not be null");
+    }
+
+    /**
+     * Checks the files referenced by the given model definition and, if not null, by the given optics and range.
+     * Nothing is done until subscribed, and cancelling the subscription skips the files not checked yet. The returned
+     * mono never fails: a failure of the check itself is a {@link ModelDefinitionValidation.State#FAILED} validation.
+     */
+    public Mono<ModelDefinitionValidation> validate(JMadModelDefinition modelDefinition, OpticsDefinition optics,
+            RangeDefinition range) {
+        requireNonNull(modelDefinition, "modelDefinition must not be null");
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            List<ModelFile> files = referencedFiles(modelDefinition, optics, range);
+            ModelFileFinder fileFinder;
+            try {
+                fileFinder = fileFinderManager.getModelFileFinder(modelDefinition);
+            } catch (RuntimeException e) {
+                return Mono.just(ModelDefinitionValidation.failed(modelDefinition, elapsedSince(start), e));
+            }
+            // @formatter:off
+            return Flux.fromIterable(files)
+                    .flatMap(file -> Mono.fromCallable(() -> missingReason(fileFinder, file))
+                            .subscribeOn(ioScheduler), maxConcurrency)
+                    .collectList()
+                    .timeout(timeout)
+                    .map(missingFiles -> ModelDefinitionValidation.completed(modelDefinition, elapsedSince(start),
+                            files.size(), missingFiles))
+                    .onErrorResume(e -> Mono.just(
+                            ModelDefinitionValidation.failed(modelDefinition, elapsedSince(start), e)))
+                    .doOnNext(validation -> metrics.recordDuration(MODEL_DEFINITION_VALIDATION,
+                            elapsedSince(start), TAG_OUTCOME, validation.state().name().toLowerCase(Locale.ROOT)));
+            // @formatter:on
+        });
+    }
+
+    private static List<ModelFile> referencedFiles(JMadModelDefinition modelDefinition, OpticsDefinition optics,
+            RangeDefinition range) {
+        Set<ModelFile> files = new LinkedHashSet<>();
+        addAll(files, modelDefinition.getInitFiles());
+        if (optics != null) {
+            addAll(files, optics.getInitFiles());
+        }
+        if (range != null) {
+            addAll(files, range.getPostUseFiles());
+        }
+        return new ArrayList<>(files);
+    }
+
+    private static void addAll(Set<ModelFile> files, List<ModelFile> moreFiles) {
+        if (moreFiles != null) {
+            files.addAll(moreFiles);
+        }
+    }
+
+    /**
+     * @return null if the given file can be opened, otherwise its name with the reason if there is one (a null result
+     *         of the callable is an empty mono, so only the missing files are collected)
+     */
+    private static String missingReason(ModelFileFinder fileFinder, ModelFile file) {
+        try (InputStream stream = fileFinder.getStream(file)) {
+            return stream == null ? file.getName() : null;
+        } catch (Exception e) {
+            return file.getName() + " (" + Throwables.getRootCause(e).getMessage() + ")";
+        }
+    }
+
+}
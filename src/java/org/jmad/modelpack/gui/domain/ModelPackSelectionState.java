@@ -5,14 +5,25 @@
 package org.jmad.modelpack.gui.domain;
 
 import static freetimelabs.io.reactorfx.schedulers.FxSchedulers.fxThread;
+import static java.util.Objects.requireNonNull;
 import static javafx.collections.FXCollections.observableArrayList;
 import static org.jmad.modelpack.gui.util.FxUtils.onChange;
 import static org.jmad.modelpack.service.JMadModelPackageService.Mode.OFFLINE;
 import static org.jmad.modelpack.service.JMadModelPackageService.Mode.ONLINE;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
 import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.util.LatestRequestSubscription;
 import org.jmad.modelpack.service.JMadModelPackageService;
 
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
 import cern.accsoft.steering.jmad.domain.machine.RangeDefinition;
 import cern.accsoft.steering.jmad.domain.machine.SequenceDefinition;
 import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
@@ -24,8 +35,17 @@ import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleListProperty;
 import javafx.beans.property.SimpleObjectProperty;
 
+/**
+ * The selection of one model selection dialog: the selected package, model definition, optics, sequence and range,
+ * with the lists they are chosen from. The lists of optics, sequences and ranges are only filled while they are shown,
+ * i.e. for the {@link JMadModelSelectionType#ALL} selection type and as long as {@link #detailsShownProperty()} is
+ * true; otherwise only their defaults are selected.
+ */
 public class ModelPackSelectionState {
 
+    /** Model definitions selected within this delay of each other are considered as scrolled through */
+    private static final Duration DETAILS_UPDATE_DELAY = Duration.ofMillis(100);
+
     private final ObjectProperty<ModelPackageVariant> selectedPackage = new SimpleObjectProperty<>();
 
     private final ListProperty<JMadModelDefinition> availableDefinitions = new SimpleListProperty<>(
@@ -44,52 +64,191 @@ public class ModelPackSelectionState {
     private final ObjectProperty<JMadModelSelectionType> modelSelectionType = new SimpleObjectProperty<>(JMadModelSelectionType.ALL);
 
     private final BooleanProperty onlineMode = new SimpleBooleanProperty(true);
+    /* the catalogue the online mode is bound to, which then switches the mode of the service, or null */
+    private PackageCatalogue modeCatalogue;
 
+    /* shows the loading of the catalogue and of the model definitions, so it is only written through them */
     private final BooleanProperty loading = new SimpleBooleanProperty(false);
-
+    private final BooleanProperty catalogueLoading = new SimpleBooleanProperty(false);
+    private final BooleanProperty definitionsLoading = new SimpleBooleanProperty(false);
+
+    /* whether the optics, sequences and ranges are shown at all */
+    private final BooleanProperty detailsShown = new SimpleBooleanProperty(true);
+
+    private final LatestRequestSubscription definitionsRequest = new LatestRequestSubscription();
+    private final LatestRequestSubscription detailsRequest = new LatestRequestSubscription();
+    /* the lists of optics, sequences and ranges do not belong to the selected model definition (yet) */
+    private boolean detailsStale;
+    /* the lists are being changed, so the selection changes they trigger are ignored */
+    private boolean updatingDetails;
+    private long lastDetailsRequestNanos = System.nanoTime() - DETAILS_UPDATE_DELAY.toNanos();
+    /* the package is selected with the definitions restore() already has */
+    private boolean restoringPackage;
+
+    private final ModelDefinitionCache definitionsCache;
+    private final Scheduler ioScheduler;
+
+    /**
+     * @deprecated the model definitions are then loaded on the shared {@link Schedulers#boundedElastic()} scheduler.
+     *             Use {@link #ModelPackSelectionState(JMadModelPackageService, ModelDefinitionCache, Scheduler)}
+     *             instead.
+     */
+    @Deprecated
     public ModelPackSelectionState(JMadModelPackageService modelPackageService) {
+        this(modelPackageService, new ModelDefinitionCache(modelPackageService), Schedulers.boundedElastic());
+    }
+
+    public ModelPackSelectionState(JMadModelPackageService modelPackageService, ModelDefinitionCache definitionsCache,
+            Scheduler ioScheduler) {
+        requireNonNull(modelPackageService, "modelPackageService must not be null");
+        this.definitionsCache = requireNonNull(definitionsCache, "definitionsCache must not be null");
+        this.ioScheduler = requireNonNull(ioScheduler, "ioScheduler must not be null");
         selectedPackage.addListener(onChange(newSelectedPackage -> {
+            if (restoringPackage) {
+                return;
+            }
             if (newSelectedPackage == null) {
+                definitionsRequest.cancel();
+                definitionsLoading.set(false);
+                return;
+            }
+
+            Optional<List<JMadModelDefinition>> cachedDefinitions = definitionsCache
+                    .cachedDefinitionsFrom(newSelectedPackage);
+            if (cachedDefinitions.isPresent()) {
+                definitionsRequest.cancel();
+                definitionsLoading.set(false);
+                updateAvailableDefinitions(cachedDefinitions.get());
                 return;
             }
-            modelPackageService.modelDefinitionsFrom(newSelectedPackage).collectList()
+
+            definitionsRequest.subscribeLatest(() -> definitionsCache.loadDefinitionsFrom(newSelectedPackage)
+                    .subscribeOn(ioScheduler)
                     .publishOn(fxThread())
-                    .doOnSubscribe(s -> loading.set(true))
-                    .doOnTerminate(() -> loading.set(false))
-                    .subscribe(defs -> {
-                        availableDefinitions.setAll(defs);
-                        if (!defs.isEmpty()) {
-                            JMadModelDefinition selectedModelDef = defs.get(0);
-                            updateSelectedModelDefinition(selectedModelDef);
-                        }
-                    });
+                    .doOnSubscribe(s -> definitionsLoading.set(true))
+                    .doOnTerminate(() -> definitionsLoading.set(false))
+                    .subscribe(this::updateAvailableDefinitions));
         }));
 
+        catalogueLoading.addListener(onChange(v -> updateLoading()));
+        definitionsLoading.addListener(onChange(v -> updateLoading()));
+
         onlineMode.set(modelPackageService.mode() == ONLINE);
-        onlineMode.addListener(onChange(isOnline -> modelPackageService.setMode(isOnline ? ONLINE : OFFLINE)));
-        
+        onlineMode.addListener(onChange(isOnline -> {
+            if (modeCatalogue == null) {
+                modelPackageService.setMode(isOnline ? ONLINE : OFFLINE);
+            }
+        }));
+
         selectedModelDefinition.addListener(onChange(this::updateSelectedModelDefinition));
         selectedSequence.addListener(onChange(this::updateSequenceDefinition));
+        detailsShown.addListener(onChange(v -> materializeDetailsIfNeeded()));
+        modelSelectionType.addListener(onChange(v -> materializeDetailsIfNeeded()));
+    }
+
+    /**
+     * Selects again the package variant, model definition, optics, sequence and range of the given coordinates. The
+     * model definitions are taken from the cache, or resolved from the variant directly, so the package variant is
+     * selected even if it is not shown (yet) by the packages table, which then selects it once it is shown.
+     *
+     * @return a mono emitting, on the FX thread, whether the model definition was found in the package variant. The
+     *         optics, sequence and range that are not found anymore are left to their defaults
+     */
+    public Mono<Boolean> restore(ModelSelectionCoordinates coordinates) {
+        requireNonNull(coordinates, "coordinates must not be null");
+        ModelPackageVariant variant = coordinates.variant();
+        // @formatter:off
+        Mono<List<JMadModelDefinition>> definitions = Mono.defer(() -> definitionsCache.cachedDefinitionsFrom(variant)
+                .map(Mono::just)
+                .orElseGet(() -> definitionsCache.loadDefinitionsFrom(variant)
+                        .subscribeOn(ioScheduler)
+                        .publishOn(fxThread())
+                        .doOnSubscribe(s -> definitionsLoading.set(true))
+                        .doFinally(signal -> definitionsLoading.set(false))));
+        // @formatter:on
+        return definitions.map(defs -> restore(coordinates, defs));
+    }
+
+    private boolean restore(ModelSelectionCoordinates coordinates, List<JMadModelDefinition> defs) {
+        restoringPackage = true;
+        try {
+            selectedPackage.set(coordinates.variant());
+        } finally {
+            restoringPackage = false;
+        }
+        /* a pending resolution of the previously selected package must not override the restored selection */
+        definitionsRequest.cancel();
+        definitionsLoading.set(false);
+        updateAvailableDefinitions(defs);
+
+        Optional<JMadModelDefinition> modelDefinition = named(defs, JMadModelDefinition::getName,
+                coordinates.modelDefinitionName());
+        if (!modelDefinition.isPresent()) {
+            return false;
+        }
+        updateSelectedModelDefinition(modelDefinition.get());
+        coordinates.opticsName()
+                .flatMap(name -> named(modelDefinition.get().getOpticsDefinitions(), OpticsDefinition::getName, name))
+                .ifPresent(selectedOptics::set);
+        coordinates.sequenceName().flatMap(
+                name -> named(modelDefinition.get().getSequenceDefinitions(), SequenceDefinition::getName, name))
+                .ifPresent(selectedSequence::set);
+        SequenceDefinition sequence = selectedSequence.get();
+        if (sequence != null) {
+            coordinates.rangeName()
+                    .flatMap(name -> named(sequence.getRangeDefinitions(), RangeDefinition::getName, name))
+                    .ifPresent(selectedRange::set);
+        }
+        return true;
+    }
+
+    private static <T> Optional<T> named(List<T> items, Function<T, String> nameOf, String name) {
+        return items.stream().filter(item -> name.equals(nameOf.apply(item))).findFirst();
+    }
+
+    private void updateAvailableDefinitions(List<JMadModelDefinition> defs) {
+        availableDefinitions.setAll(defs);
+        if (!defs.isEmpty()) {
+            JMadModelDefinition selectedModelDef = defs.get(0);
+            updateSelectedModelDefinition(selectedModelDef);
+        }
     }
 
     private void updateSelectedModelDefinition(JMadModelDefinition selectedModelDef) {
-        selectedModelDefinitionProperty().set(selectedModelDef);
+        if (selectedModelDefinition.get() != selectedModelDef) {
+            /* the listener of the property comes back here */
+            selectedModelDefinition.set(selectedModelDef);
+            return;
+        }
 
         if (selectedModelDef == null) {
             return;
         }
 
-        availableOpticsProperty().setAll(selectedModelDef.getOpticsDefinitions());
-        updateOpticsDefinition(selectedModelDef.getDefaultOpticsDefinition());
+        /* the lists of the previous definition must not be shown meanwhile */
+        detailsStale = true;
+        updatingDetails = true;
+        availableOptics.clear();
+        availableSequences.clear();
+        availableRanges.clear();
+        updatingDetails = false;
 
-        availableSequencesProperty().setAll(selectedModelDef.getSequenceDefinitions());
+        /* the defaults are all the selection needs, and are cheap to get */
+        updateOpticsDefinition(selectedModelDef.getDefaultOpticsDefinition());
         updateSequenceDefinition(selectedModelDef.getDefaultSequenceDefinition());
+        requestDetails();
     }
 
     private void updateSequenceDefinition(SequenceDefinition sequenceDefinition) {
+        if (updatingDetails) {
+            return;
+        }
         selectedSequenceProperty().set(sequenceDefinition);
         if (sequenceDefinition != null) {
-            availableRangesProperty().setAll(sequenceDefinition.getRangeDefinitions());
+            if (!detailsStale) {
+                /* another sequence was chosen from the materialized ones */
+                availableRangesProperty().setAll(sequenceDefinition.getRangeDefinitions());
+            }
             selectedRangeProperty().set(sequenceDefinition.getDefaultRangeDefinition());
         }
     }
@@ -98,6 +257,63 @@ public class ModelPackSelectionState {
         selectedOpticsProperty().set(opticsDefinition);
     }
 
+    /**
+     * The optics, sequences and ranges are only needed when they are shown. When model definitions are selected in a
+     * quick succession (e.g. scrolling through them), only the last one is materialized.
+     */
+    private void requestDetails() {
+        if (!detailsNeeded()) {
+            detailsRequest.cancel();
+            return;
+        }
+        long now = System.nanoTime();
+        boolean quickSuccession = now - lastDetailsRequestNanos < DETAILS_UPDATE_DELAY.toNanos();
+        lastDetailsRequestNanos = now;
+        if (!quickSuccession) {
+            detailsRequest.cancel();
+            materializeDetails();
+            return;
+        }
+        // @formatter:off
+        detailsRequest.subscribeLatest(() -> Mono.delay(DETAILS_UPDATE_DELAY)
+                .publishOn(fxThread())
+                .subscribe(v -> materializeDetailsIfNeeded()));
+        // @formatter:on
+    }
+
+    private boolean detailsNeeded() {
+        return detailsShown.get() && modelSelectionType.get() == JMadModelSelectionType.ALL;
+    }
+
+    private void materializeDetailsIfNeeded() {
+        if (detailsStale && detailsNeeded()) {
+            materializeDetails();
+        }
+    }
+
+    private void materializeDetails() {
+        detailsStale = false;
+        JMadModelDefinition modelDefinition = selectedModelDefinition.get();
+        if (modelDefinition == null) {
+            return;
+        }
+        OpticsDefinition optics = selectedOptics.get();
+        SequenceDefinition sequence = selectedSequence.get();
+        RangeDefinition range = selectedRange.get();
+
+        updatingDetails = true;
+        availableOptics.setAll(modelDefinition.getOpticsDefinitions());
+        availableSequences.setAll(modelDefinition.getSequenceDefinitions());
+        if (sequence != null) {
+            availableRanges.setAll(sequence.getRangeDefinitions());
+        }
+        /* changing the lists clears the selection of the views showing them */
+        selectedOptics.set(optics);
+        selectedSequence.set(sequence);
+        selectedRange.set(range);
+        updatingDetails = false;
+    }
+
     public ListProperty<JMadModelDefinition> availableDefinitionsProperty() {
         return availableDefinitions;
     }
@@ -134,14 +350,73 @@ public class ModelPackSelectionState {
         return selectedRange;
     }
     
+    /**
+     * Whether the packages are retrieved online. Changing it sets the mode of the model package service, unless it is
+     * {@link #bindOnlineModeTo(PackageCatalogue) bound to a catalogue}, which then does it.
+     */
     public BooleanProperty onlineModeProperty() {
         return onlineMode;
     }
 
+    /**
+     * Binds the online mode bidirectionally to the one of the given catalogue. The catalogue then switches the mode of
+     * the model package service (once per switch, off the Fx thread) instead of this state.
+     */
+    public void bindOnlineModeTo(PackageCatalogue catalogue) {
+        requireNonNull(catalogue, "catalogue must not be null");
+        modeCatalogue = catalogue;
+        onlineMode.bindBidirectional(catalogue.onlineModeProperty());
+    }
+
+    /**
+     * Undoes {@link #bindOnlineModeTo(PackageCatalogue)}. The state sets the mode of the service itself again.
+     */
+    public void unbindOnlineModeFrom(PackageCatalogue catalogue) {
+        requireNonNull(catalogue, "catalogue must not be null");
+        onlineMode.unbindBidirectional(catalogue.onlineModeProperty());
+        if (modeCatalogue == catalogue) {
+            modeCatalogue = null;
+        }
+    }
+
+    /**
+     * @return whether the optics, sequences and ranges are visible to the user. While they are not, their lists are not
+     *         filled.
+     */
+    public BooleanProperty detailsShownProperty() {
+        return detailsShown;
+    }
+
+    /**
+     * @return the number of model definition loads that were cancelled because another package was selected meanwhile
+     */
+    public long cancelledRequestsCount() {
+        return definitionsRequest.cancelledCount();
+    }
+
+    public ModelDefinitionCache definitionsCache() {
+        return definitionsCache;
+    }
+
+    /**
+     * @return true while the catalogue of packages or the model definitions of the selected package are retrieved
+     */
     public BooleanProperty loadingProperty() {
         return loading;
     }
 
+    /**
+     * @return whether the catalogue of packages shown with this state is being retrieved, as set by the control that
+     *         shows it. The model definitions are loaded by the state itself; both show in {@link #loadingProperty()}.
+     */
+    public BooleanProperty catalogueLoadingProperty() {
+        return catalogueLoading;
+    }
+
+    private void updateLoading() {
+        loading.set(catalogueLoading.get() || definitionsLoading.get());
+    }
+
     public ObjectProperty<JMadModelSelectionType> modelSelectionTypeProperty() {
         return modelSelectionType;
     }
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackage;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.Variant;
+import org.jmad.modelpack.domain.VariantType;
+
+/**
+ * Writes the {@link ModelPackageVariant}s of the local stores field by field (repository url, name and connector,
+ * package id and name, variant name and type) and creates them again through their constructors, so that the files do
+ * not depend on the serialized form of the domain classes, and reading them never instantiates any other class.
+ */
+final class ModelPackageVariantCodec {
+
+    private ModelPackageVariantCodec() {
+        /* static methods only */
+    }
+
+    static void write(DataOutput out, ModelPackageVariant variant) throws IOException {
+        ModelPackage modelPackage = variant.modelPackage();
+        JMadModelPackageRepository repository = modelPackage.repository();
+        writeNullableString(out, repository.repoUrl());
+        writeNullableString(out, repository.repoName());
+        writeNullableString(out, repository.connectorId());
+        writeNullableString(out, modelPackage.id());
+        writeNullableString(out, modelPackage.name());
+        writeNullableString(out, variant.variant().name());
+        out.writeUTF(variant.variant().type().name());
+    }
+
+    static ModelPackageVariant read(DataInput in) throws IOException {
+        String repoUrl = readNullableString(in);
+        String repoName = readNullableString(in);
+        String connectorId = readNullableString(in);
+        String packageId = readNullableString(in);
+        String packageName = readNullableString(in);
+        String variantName = readNullableString(in);
+        VariantType variantType = variantType(in.readUTF());
+        JMadModelPackageRepository repository = new JMadModelPackageRepository(repoUrl, repoName, connectorId);
+        return new ModelPackageVariant(new ModelPackage(packageName, repository, packageId),
+                new Variant(variantName, variantType));
+    }
+
+    static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static VariantType variantType(String name) throws IOException {
+        try {
+            return VariantType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unknown variant type: " + name, e);
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+
+/**
+ * Where a model selection comes from: the package variant, and the names of the model definition, optics, sequence and
+ * range within it, so that it can be selected again without retrieving the catalogue of packages. The optics, sequence
+ * and range are empty if only the model definition was selected. Also tells whether the selection is pinned and when it
+ * was last used.
+ */
+public final class ModelSelectionCoordinates {
+
+    private final ModelPackageVariant variant;
+    private final String modelDefinitionName;
+    private final String opticsName;
+    private final String sequenceName;
+    private final String rangeName;
+    private final boolean pinned;
+    private final Instant lastUsed;
+
+    public ModelSelectionCoordinates(ModelPackageVariant variant, String modelDefinitionName, String opticsName,
+            String sequenceName, String rangeName, boolean pinned, Instant lastUsed) {
+        this.variant = requireNonNull(variant, "variant must not be null");
+        this.modelDefinitionName = requireNonNull(modelDefinitionName, "modelDefinitionName must not be null");
+        this.opticsName = opticsName;
+        this.sequenceName = sequenceName;
+        this.rangeName = rangeName;
+        this.pinned = pinned;
+        this.lastUsed = requireNonNull(lastUsed, "lastUsed must not be null");
+    }
+
+    public ModelPackageVariant variant() {
+        return variant;
+    }
+
+    public String modelDefinitionName() {
+        return modelDefinitionName;
+    }
+
+    public Optional<String> opticsName() {
+        return Optional.ofNullable(opticsName);
+    }
+
+    public Optional<String> sequenceName() {
+        return Optional.ofNullable(sequenceName);
+    }
+
+    public Optional<String> rangeName() {
+        return Optional.ofNullable(rangeName);
+    }
+
+    public boolean isPinned() {
+        return pinned;
+    }
+
+    public Instant lastUsed() {
+        return lastUsed;
+    }
+
+    public ModelSelectionCoordinates withPinned(boolean newPinned) {
+        return new ModelSelectionCoordinates(variant, modelDefinitionName, opticsName, sequenceName, rangeName,
+                newPinned, lastUsed);
+    }
+
+    public ModelSelectionCoordinates withLastUsed(Instant newLastUsed) {
+        return new ModelSelectionCoordinates(variant, modelDefinitionName, opticsName, sequenceName, rangeName, pinned,
+                newLastUsed);
+    }
+
+    /**
+     * @return true if the given coordinates point to the same selection, whether pinned or not and whenever used
+     */
+    public boolean isSameSelectionAs(ModelSelectionCoordinates other) {
+        return variant.equals(other.variant) && modelDefinitionName.equals(other.modelDefinitionName)
+                && Objects.equals(opticsName, other.opticsName) && Objects.equals(sequenceName, other.sequenceName)
+                && Objects.equals(rangeName, other.rangeName);
+    }
+
+    /**
+     * @return the text of this selection as shown to the user, e.g. "LHC 2018 / R2018a_A11mC11mA10mL10m / lhcb1 / ALL
+     *         (lhc 2018.1)"
+     */
+    public String displayText() {
+        StringBuilder text = new StringBuilder(modelDefinitionName);
+        for (String name : new String[] { opticsName, sequenceName, rangeName }) {
+            if (name != null) {
+                text.append(" / ").append(name);
+            }
+        }
+        return text.append(" (").append(variant.modelPackage().name()).append(' ').append(variant.variant().name())
+                .append(')').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ModelSelectionCoordinates [variant=" + variant + ", modelDefinitionName=" + modelDefinitionName
+                + ", opticsName=" + opticsName + ", sequenceName=" + sequenceName + ", rangeName=" + rangeName
+                + ", pinned=" + pinned + ", lastUsed=" + lastUsed + "]";
+    }
+
+}
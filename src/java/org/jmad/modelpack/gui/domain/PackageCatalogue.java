@@ -0,0 +1,613 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static freetimelabs.io.reactorfx.schedulers.FxSchedulers.fxThread;
+import static java.util.Comparator.comparing;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.PACKAGES_TABLE_UPDATE;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_OPERATION;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_OUTCOME;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TIME_TO_COMPLETE_CATALOGUE;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TIME_TO_FIRST_PACKAGE;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.outcomeOf;
+import static org.jmad.modelpack.gui.util.FxUtils.onChange;
+import static org.jmad.modelpack.service.JMadModelPackageService.Mode.OFFLINE;
+import static org.jmad.modelpack.service.JMadModelPackageService.Mode.ONLINE;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackage;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.ModelPackages;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.jmad.modelpack.gui.util.FxUtils;
+import org.jmad.modelpack.gui.util.LatestRequestSubscription;
+import org.jmad.modelpack.service.JMadModelPackageService;
+import org.jmad.modelpack.service.JMadModelPackageService.Mode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.TreeMultimap;
+
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanProperty;
+import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * The catalogue of model packages, shared by all the model selection dialogs: it is retrieved once, kept up to date
+ * and searched in one place, whatever the number of dialogs showing it. Dialogs {@link #subscribe(Listener) subscribe}
+ * to it and are notified of its changes, so that they only keep the state of their own view. The catalogue is
+ * retrieved when the first listener subscribes, and a retrieval in progress is cancelled once the last one is gone.
+ * <p>
+ * The catalogue is confined to the Fx thread: its content can only be read from it, and the changes are notified on
+ * it. All the other methods can be called from any thread.
+ */
+public class PackageCatalogue {
+
+    /** Roughly one JavaFx pulse: packages arriving within the same frame are added to the catalogue together */
+    public static final Duration DEFAULT_PACKAGES_BATCH_WINDOW = Duration.ofMillis(16);
+    public static final int DEFAULT_PACKAGES_BATCH_MAX_SIZE = 256;
+    public static final Comparator<ModelPackage> PACKAGE_ORDER = comparing(ModelPackage::name);
+    public static final Comparator<ModelPackageVariant> VARIANT_ORDER = ModelPackages
+            .latestFirstPackageVariantComparator();
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackageCatalogue.class);
+    private static final Duration AVAILABLE_PACKAGES_REFRESH_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration CLEAR_CACHE_TIMEOUT = Duration.ofSeconds(30);
+    private static final DateTimeFormatter SNAPSHOT_TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    /**
+     * Notified on the Fx thread of the changes of the catalogue
+     */
+    public interface Listener {
+
+        /**
+         * The given variants were added to the catalogue
+         */
+        void packagesAdded(List<ModelPackageVariant> variants);
+
+        /**
+         * The given variants were removed from the catalogue
+         */
+        void packagesRemoved(Collection<ModelPackageVariant> variants);
+
+        void statusChanged(ModelPackageVariant variant, PackageStatus status);
+
+        /**
+         * The catalogue was cleared to be retrieved again from scratch. The variants that are retrieved again are
+         * notified as added.
+         */
+        void catalogueCleared();
+
+        /**
+         * A retrieval or refresh of the catalogue terminated, successfully or not. The variants of the previous
+         * catalogue that were not retrieved again are gone.
+         */
+        void catalogueUpdated();
+    }
+
+    private final JMadModelPackageService packageService;
+    private final ModelDefinitionCache definitionsCache;
+    private final Scheduler ioScheduler;
+    private final PackageCatalogueSnapshotStore snapshotStore;
+    private final Duration packagesBatchWindow;
+    private final int packagesBatchMaxSize;
+    private final ModelSelectionMetrics metrics;
+    private final Optional<RepositoryPackagesFetcher> packagesFetcher;
+
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final LatestRequestSubscription packagesRequest = new LatestRequestSubscription();
+    private final LatestRequestSubscription clearCacheRequest = new LatestRequestSubscription();
+    private final PackageSearchIndex searchIndex = new PackageSearchIndex();
+    /* registered on the definitions cache, which may be shared, so removed on disposal */
+    private final BiConsumer<ModelPackageVariant, List<JMadModelDefinition>> definitionsIndexer =
+            searchIndex::addDefinitions;
+
+    private final ReadOnlyBooleanWrapper loading = new ReadOnlyBooleanWrapper(false);
+    private final ReadOnlyBooleanWrapper browsable = new ReadOnlyBooleanWrapper(true);
+    private final ReadOnlyStringWrapper statusText = new ReadOnlyStringWrapper("");
+    private final BooleanProperty onlineMode = new SimpleBooleanProperty(true);
+
+    private final SetMultimap<ModelPackage, ModelPackageVariant> packages = TreeMultimap.create(PACKAGE_ORDER,
+            VARIANT_ORDER);
+    /* status of the variants that differ from the live catalogue */
+    private final Map<ModelPackageVariant, PackageStatus> statuses = new HashMap<>();
+    /* variants shown from the snapshot that the running refresh did not confirm (yet) */
+    private final Set<ModelPackageVariant> unconfirmedVariants = new HashSet<>();
+    /* variants received from the service during the running refresh */
+    private final List<ModelPackageVariant> liveVariants = new ArrayList<>();
+    private boolean snapshotShown;
+    private boolean fullRefreshRunning;
+    /* false until a retrieval of the whole catalogue completed, or once one was cancelled */
+    private boolean complete;
+    /* the mode to set on the service, read when switching so that the last switch wins */
+    private volatile Mode requestedMode;
+
+    /**
+     * @param packagesFetcher if present, the packages are retrieved repository by repository through it, so that a
+     *            slow or failing repository does not fail the whole refresh. Otherwise the listing of the package
+     *            service is used as a whole.
+     */
+    public PackageCatalogue(JMadModelPackageService packageService, ModelDefinitionCache definitionsCache,
+            Scheduler ioScheduler, PackageCatalogueSnapshotStore snapshotStore, Duration packagesBatchWindow,
+            int packagesBatchMaxSize, ModelSelectionMetrics metrics,
+            Optional<RepositoryPackagesFetcher> packagesFetcher) {
+        this.packageService = requireNonNull(packageService, "packageService must not be null");
+        this.definitionsCache = requireNonNull(definitionsCache, "definitionsCache must not be null");
+        this.ioScheduler = requireNonNull(ioScheduler, "ioScheduler must not be null");
+        this.snapshotStore = requireNonNull(snapshotStore, "snapshotStore must not be null");
+        this.packagesBatchWindow = requireNonNull(packagesBatchWindow, "packagesBatchWindow must not be null");
+        if (packagesBatchMaxSize < 1) {
+            throw new IllegalArgumentException("packagesBatchMaxSize must be at least 1");
+        }
+        this.packagesBatchMaxSize = packagesBatchMaxSize;
+        this.metrics = requireNonNull(metrics, "metrics must not be null");
+        this.packagesFetcher = requireNonNull(packagesFetcher, "packagesFetcher must not be null");
+
+        definitionsCache.addLoadListener(definitionsIndexer);
+        onlineMode.set(packageService.mode() == ONLINE);
+        requestedMode = packageService.mode();
+        onlineMode.addListener(onChange(this::switchMode));
+    }
+
+    /**
+     * Registers the given listener, and retrieves the catalogue if this is the first one and the catalogue was not
+     * retrieved yet. The listener is expected to read the current content of the catalogue once subscribed.
+     *
+     * @return disposing it unregisters the listener
+     */
+    public Disposable subscribe(Listener listener) {
+        requireNonNull(listener, "listener must not be null");
+        listeners.add(listener);
+        FxUtils.runAsyncOnFxThread(() -> {
+            if (!complete && !fullRefreshRunning) {
+                fullRefresh();
+            }
+        });
+        return () -> {
+            if (listeners.remove(listener) && listeners.isEmpty()) {
+                FxUtils.runAsyncOnFxThread(this::cancelIfUnused);
+            }
+        };
+    }
+
+    /**
+     * Cancels the retrieval and the cache clearing in progress, and stops indexing the model definitions loaded into
+     * the definitions cache. The catalogue must not be used anymore afterwards.
+     */
+    public void dispose() {
+        packagesRequest.cancel();
+        clearCacheRequest.cancel();
+        definitionsCache.removeLoadListener(definitionsIndexer);
+    }
+
+    /**
+     * @return the number of listeners, i.e. of dialogs, using this catalogue
+     */
+    public int listenersCount() {
+        return listeners.size();
+    }
+
+    private void cancelIfUnused() {
+        if (!listeners.isEmpty() || !fullRefreshRunning) {
+            return;
+        }
+        /* nobody waits for it: the next listener retrieves the catalogue again */
+        packagesRequest.cancel();
+        fullRefreshRunning = false;
+        hideLoading();
+        statusText.set("");
+    }
+
+    /**
+     * @return the variants of the catalogue per package, in package order and latest variant first. Must be read from
+     *         the Fx thread.
+     */
+    public SetMultimap<ModelPackage, ModelPackageVariant> packages() {
+        return Multimaps.unmodifiableSetMultimap(packages);
+    }
+
+    /**
+     * @return the status of the given variant. Must be called from the Fx thread.
+     */
+    public PackageStatus statusOf(ModelPackageVariant variant) {
+        return statuses.getOrDefault(variant, PackageStatus.LIVE);
+    }
+
+    /**
+     * @return the index of the names of the variants of the catalogue and of their model definitions
+     */
+    public PackageSearchIndex searchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * @return true while the whole catalogue is retrieved, or the cache cleared
+     */
+    public ReadOnlyBooleanProperty loadingProperty() {
+        return loading.getReadOnlyProperty();
+    }
+
+    /**
+     * @return false while the whole catalogue is retrieved and nothing can be shown yet, i.e. until the snapshot (if
+     *         any) is shown
+     */
+    public ReadOnlyBooleanProperty browsableProperty() {
+        return browsable.getReadOnlyProperty();
+    }
+
+    /**
+     * @return a short description of the retrieval in progress (e.g. "refreshing..."), empty if there is none
+     */
+    public ReadOnlyStringProperty statusTextProperty() {
+        return statusText.getReadOnlyProperty();
+    }
+
+    /**
+     * @return the mode of the package service. Changing it refreshes the catalogue.
+     */
+    public BooleanProperty onlineModeProperty() {
+        return onlineMode;
+    }
+
+    /**
+     * @return the number of refreshes and cache clearings that were cancelled because a newer one was started
+     */
+    public long cancelledRequestsCount() {
+        return packagesRequest.cancelledCount() + clearCacheRequest.cancelledCount();
+    }
+
+    public void clearCache() {
+        definitionsCache.invalidateAll();
+        // @formatter:off
+        clearCacheRequest.subscribeLatest(() -> packageService.clearCache()
+                .subscribeOn(ioScheduler)
+                .timeout(CLEAR_CACHE_TIMEOUT)
+                .publishOn(fxThread())
+                .doOnSubscribe(s -> FxUtils.runAsyncOnFxThread(this::showLoading))
+                .doOnError(e -> {
+                    LOGGER.error("Error while clearing the service cache", e);
+                    hideLoading();
+                })
+                .doOnSuccess(v -> hideLoading())
+                .subscribe());
+        // @formatter:on
+    }
+
+    /**
+     * Retrieves the whole catalogue again, forgetting the versions of the repositories.
+     */
+    public void fullRefresh() {
+        FxUtils.runAsyncOnFxThread(() -> {
+            packagesFetcher.ifPresent(RepositoryPackagesFetcher::forgetVersions);
+            updatePackages();
+        });
+    }
+
+    /**
+     * Refresh diffed against the catalogue: the listings are retrieved again (in full, unless the packages fetcher has
+     * a {@link VersionedRepositoryPackageSource}), and only the differences are applied. The variants that appeared in
+     * the repositories whose listing changed are added and marked as new, the ones that disappeared are removed, so
+     * that the table is updated in place instead of being rebuilt. The marks of the previous refresh are cleared first.
+     * Falls back to a retrieval of the whole catalogue if there is no complete catalogue to compare with yet.
+     */
+    public void refresh() {
+        FxUtils.runAsyncOnFxThread(this::refreshPackages);
+    }
+
+    /**
+     * Sets the mode of the service on the I/O scheduler (it may block), then refreshes the catalogue.
+     */
+    private void switchMode(boolean isOnline) {
+        requestedMode = isOnline ? ONLINE : OFFLINE;
+        // @formatter:off
+        Mono.fromRunnable(this::applyRequestedMode)
+                .subscribeOn(ioScheduler)
+                .doOnError(e -> LOGGER.error("Error while switching the model package service mode", e))
+                .doOnSuccess(v -> {
+                    /* the offline catalogue differs from the online one, so no repository version is valid anymore */
+                    packagesFetcher.ifPresent(RepositoryPackagesFetcher::forgetVersions);
+                    refresh();
+                })
+                .subscribe();
+        // @formatter:on
+    }
+
+    private synchronized void applyRequestedMode() {
+        packageService.setMode(requestedMode);
+    }
+
+    /**
+     * Clears the catalogue and fills it again: first from the last known catalogue snapshot (if any), so that the user
+     * can already browse it, then from the live service stream. Once the live stream completes, variants that appeared
+     * or disappeared since the snapshot are marked and the snapshot is replaced. The snapshot is only used in online
+     * mode, as the offline catalogue is only a subset of it.
+     */
+    private void updatePackages() {
+        clearPackages();
+        fullRefreshRunning = true;
+        PackageCatalogueSnapshotStore refreshSnapshotStore = onlineMode.get() ? snapshotStore
+                : PackageCatalogueSnapshotStore.disabled();
+        // @formatter:off
+        packagesRequest.subscribeLatest(() -> Mono.fromCallable(refreshSnapshotStore::load)
+                .subscribeOn(ioScheduler)
+                .publishOn(fxThread())
+                .doOnSubscribe(s -> FxUtils.runAsyncOnFxThread(this::showLoading))
+                .doOnNext(snapshot -> snapshot.ifPresent(this::showSnapshot))
+                .thenMany(withCatalogueMetrics(livePackages())
+                        .bufferTimeout(packagesBatchMaxSize, packagesBatchWindow)
+                        .publishOn(fxThread()))
+                .doOnComplete(() -> {
+                    fullRefreshRunning = false;
+                    complete = true;
+                    hideLoading();
+                    reconcileWithSnapshot(refreshSnapshotStore);
+                    listeners.forEach(Listener::catalogueUpdated);
+                })
+                .doOnError(e -> {
+                    LOGGER.error("Error while retrieving available packages", e);
+                    fullRefreshRunning = false;
+                    hideLoading();
+                    statusText.set("");
+                    listeners.forEach(Listener::catalogueUpdated);
+                })
+                .subscribe(this::addLivePackages));
+        // @formatter:on
+    }
+
+    private void refreshPackages() {
+        if (packages.isEmpty() || fullRefreshRunning) {
+            updatePackages();
+            return;
+        }
+        clearChangeMarks();
+        PackageCatalogueSnapshotStore refreshSnapshotStore = onlineMode.get() ? snapshotStore
+                : PackageCatalogueSnapshotStore.disabled();
+        // @formatter:off
+        packagesRequest.subscribeLatest(() -> changedListings()
+                .publishOn(fxThread())
+                .doOnSubscribe(s -> FxUtils.runAsyncOnFxThread(() -> statusText.set("refreshing...")))
+                .doOnComplete(() -> {
+                    statusText.set("");
+                    List<ModelPackageVariant> catalogue = packages.values().stream()
+                            .filter(v -> statuses.get(v) != PackageStatus.REMOVED).collect(toList());
+                    Mono.fromRunnable(() -> refreshSnapshotStore.save(catalogue)).subscribeOn(ioScheduler).subscribe();
+                    listeners.forEach(Listener::catalogueUpdated);
+                })
+                .doOnError(e -> {
+                    LOGGER.error("Error while refreshing available packages", e);
+                    statusText.set("");
+                    listeners.forEach(Listener::catalogueUpdated);
+                })
+                .subscribe(this::applyListing));
+        // @formatter:on
+    }
+
+    private Flux<RepositoryListing> changedListings() {
+        if (packagesFetcher.isPresent()) {
+            return packagesFetcher.get().changedListings();
+        }
+        /* without the fetcher, the catalogue can only be compared as a whole */
+        // @formatter:off
+        return packageService.availablePackages()
+                .subscribeOn(ioScheduler)
+                .timeout(AVAILABLE_PACKAGES_REFRESH_TIMEOUT)
+                .collect(toSet())
+                .map(RepositoryListing::ofAll)
+                .flux();
+        // @formatter:on
+    }
+
+    private void applyListing(RepositoryListing listing) {
+        long start = System.nanoTime();
+        Set<ModelPackageVariant> current = packages.values().stream().filter(listing::covers).collect(toSet());
+        List<ModelPackageVariant> removed = current.stream().filter(v -> !listing.variants().contains(v))
+                .collect(toList());
+        removed.forEach(this::removePackage);
+        if (!removed.isEmpty()) {
+            listeners.forEach(listener -> listener.packagesRemoved(removed));
+        }
+        List<ModelPackageVariant> added = listing.variants().stream().filter(v -> !current.contains(v))
+                .filter(this::addPackage).collect(toList());
+        added.forEach(v -> markStatus(v, PackageStatus.ADDED));
+        notifyAdded(added);
+        metrics.recordDuration(PACKAGES_TABLE_UPDATE, elapsedSince(start), TAG_OPERATION, "delta");
+    }
+
+    /**
+     * Drops the variants of the snapshot marked as removed by the previous retrieval and clears the other marks.
+     */
+    private void clearChangeMarks() {
+        List<ModelPackageVariant> removed = new ArrayList<>();
+        new ArrayList<>(statuses.entrySet()).forEach(e -> {
+            if (e.getValue() == PackageStatus.REMOVED) {
+                removed.add(e.getKey());
+            } else {
+                markStatus(e.getKey(), PackageStatus.LIVE);
+            }
+        });
+        if (removed.isEmpty()) {
+            return;
+        }
+        removed.forEach(this::removePackage);
+        listeners.forEach(listener -> listener.packagesRemoved(removed));
+    }
+
+    private Flux<ModelPackageVariant> livePackages() {
+        if (packagesFetcher.isPresent()) {
+            /* the fetcher applies timeouts per repository and never fails as a whole */
+            return packagesFetcher.get().availablePackages();
+        }
+        return packageService.availablePackages().subscribeOn(ioScheduler).timeout(AVAILABLE_PACKAGES_REFRESH_TIMEOUT);
+    }
+
+    /**
+     * Records the time to the first package, to the first package of each repository and to the complete catalogue,
+     * measured from the subscription to the given packages.
+     */
+    private Flux<ModelPackageVariant> withCatalogueMetrics(Flux<ModelPackageVariant> livePackages) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean firstReceived = new AtomicBoolean();
+            /* the latency of each repository is recorded by the fetcher, from its subscription to its completion */
+            return livePackages.doOnNext(variant -> {
+                if (firstReceived.compareAndSet(false, true)) {
+                    metrics.recordDuration(TIME_TO_FIRST_PACKAGE, elapsedSince(start));
+                }
+            }).doFinally(signal -> metrics.recordDuration(TIME_TO_COMPLETE_CATALOGUE, elapsedSince(start),
+                    TAG_OUTCOME, outcomeOf(signal)));
+        });
+    }
+
+    private void showSnapshot(PackageCatalogueSnapshot snapshot) {
+        LOGGER.info("Showing {} packages from the catalogue snapshot of {}", snapshot.variants().size(),
+                snapshot.timestamp());
+        long start = System.nanoTime();
+        snapshotShown = true;
+        List<ModelPackageVariant> added = snapshot.variants().stream().filter(this::addPackage).collect(toList());
+        added.forEach(variant -> {
+            unconfirmedVariants.add(variant);
+            markStatus(variant, PackageStatus.CACHED);
+        });
+        notifyAdded(added);
+        metrics.recordDuration(PACKAGES_TABLE_UPDATE, elapsedSince(start), TAG_OPERATION, "snapshot");
+        String timestamp = LocalDateTime.ofInstant(snapshot.timestamp(), ZoneId.systemDefault())
+                .format(SNAPSHOT_TIMESTAMP_FORMAT);
+        statusText.set("cached " + timestamp + ", refreshing...");
+        /* the cached packages can already be browsed while the live ones are retrieved */
+        browsable.set(true);
+    }
+
+    private void addLivePackages(List<ModelPackageVariant> variants) {
+        long start = System.nanoTime();
+        List<ModelPackageVariant> added = new ArrayList<>();
+        for (ModelPackageVariant variant : variants) {
+            liveVariants.add(variant);
+            if (unconfirmedVariants.remove(variant)) {
+                markStatus(variant, PackageStatus.LIVE);
+            } else if (addPackage(variant)) {
+                added.add(variant);
+                if (snapshotShown) {
+                    markStatus(variant, PackageStatus.ADDED);
+                }
+            }
+        }
+        notifyAdded(added);
+        metrics.recordDuration(PACKAGES_TABLE_UPDATE, elapsedSince(start), TAG_OPERATION, "batch");
+    }
+
+    /**
+     * Marks the variants of the snapshot that were not retrieved again as removed, except the ones of the repositories
+     * that failed or timed out: they stay cached, and in the next snapshot.
+     */
+    private void reconcileWithSnapshot(PackageCatalogueSnapshotStore refreshSnapshotStore) {
+        Set<JMadModelPackageRepository> failedRepositories = packagesFetcher
+                .map(RepositoryPackagesFetcher::failedRepositories).orElse(Collections.emptySet());
+        List<ModelPackageVariant> catalogue = new ArrayList<>(liveVariants);
+        liveVariants.clear();
+        for (ModelPackageVariant variant : unconfirmedVariants) {
+            if (failedRepositories.contains(variant.modelPackage().repository())) {
+                catalogue.add(variant);
+            } else {
+                markStatus(variant, PackageStatus.REMOVED);
+            }
+        }
+        unconfirmedVariants.clear();
+        statusText.set("");
+
+        Mono.fromRunnable(() -> refreshSnapshotStore.save(catalogue)).subscribeOn(ioScheduler).subscribe();
+    }
+
+    private void hideLoading() {
+        loading.set(false);
+        browsable.set(true);
+    }
+
+    private void showLoading() {
+        loading.set(true);
+        browsable.set(false);
+    }
+
+    private boolean addPackage(ModelPackageVariant variant) {
+        if (!packages.put(variant.modelPackage(), variant)) {
+            return false;
+        }
+        searchIndex.add(variant);
+        definitionsCache.peekDefinitionsFrom(variant).ifPresent(defs -> searchIndex.addDefinitions(variant, defs));
+        return true;
+    }
+
+    private void notifyAdded(List<ModelPackageVariant> added) {
+        if (!added.isEmpty()) {
+            listeners.forEach(listener -> listener.packagesAdded(added));
+        }
+    }
+
+    private void removePackage(ModelPackageVariant variant) {
+        packages.remove(variant.modelPackage(), variant);
+        statuses.remove(variant);
+        unconfirmedVariants.remove(variant);
+        searchIndex.remove(variant);
+    }
+
+    private void markStatus(ModelPackageVariant variant, PackageStatus status) {
+        if (status == PackageStatus.LIVE) {
+            if (statuses.remove(variant) == null) {
+                return;
+            }
+        } else if (statuses.put(variant, status) == status) {
+            return;
+        }
+        listeners.forEach(listener -> listener.statusChanged(variant, status));
+    }
+
+    /**
+     * Clears the catalogue. The listeners keep their view until the retrieval that follows terminates, so that they
+     * can reuse it for the variants that are retrieved again.
+     */
+    private void clearPackages() {
+        packages.clear();
+        statuses.clear();
+        unconfirmedVariants.clear();
+        liveVariants.clear();
+        snapshotShown = false;
+        complete = false;
+        searchIndex.clear();
+        statusText.set("");
+        listeners.forEach(Listener::catalogueCleared);
+    }
+
+}
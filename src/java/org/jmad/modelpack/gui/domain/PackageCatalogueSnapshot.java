@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The last known catalogue of model packages: all the variants (with their package and repository of origin) as
+ * retrieved by the last complete refresh, and when this refresh happened.
+ */
+public class PackageCatalogueSnapshot {
+
+    private final Instant timestamp;
+    private final List<ModelPackageVariant> variants;
+
+    public PackageCatalogueSnapshot(Instant timestamp, List<ModelPackageVariant> variants) {
+        this.timestamp = requireNonNull(timestamp, "timestamp must not be null");
+        this.variants = ImmutableList.copyOf(requireNonNull(variants, "variants must not be null"));
+    }
+
+    public Instant timestamp() {
+        return timestamp;
+    }
+
+    public List<ModelPackageVariant> variants() {
+        return variants;
+    }
+
+    @Override
+    public String toString() {
+        return "PackageCatalogueSnapshot [timestamp=" + timestamp + ", variants=" + variants.size() + "]";
+    }
+
+}
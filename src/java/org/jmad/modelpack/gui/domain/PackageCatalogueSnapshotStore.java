@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+
+/**
+ * Stores the last known {@link PackageCatalogueSnapshot} in a compact (gzipped) local file, so that the packages table
+ * can be rendered immediately when the dialog opens, while the live catalogue is being retrieved. Files that cannot be
+ * read back (corrupted, truncated, written by an incompatible version) are deleted and treated as if there was no
+ * snapshot. All the methods are blocking and should be called from an I/O thread.
+ */
+public class PackageCatalogueSnapshotStore {
+
+    public static final Path DEFAULT_SNAPSHOT_FILE = Paths.get(System.getProperty("user.home"), ".jmad",
+            "modelpack-fx", "packages-catalogue.snapshot");
+
+    private static final int MAGIC = 0x4A4D5043; /* "JMPC" */
+    /* 2: variants written field by field instead of serialized */
+    private static final int FORMAT_VERSION = 2;
+    /* far above any real catalogue, anything above is not a valid file */
+    static final int MAX_VARIANTS = 1_000_000;
+
+    private final LocalStoreFile snapshotFile;
+
+    public PackageCatalogueSnapshotStore(Path snapshotFile) {
+        this.snapshotFile = new LocalStoreFile(snapshotFile, MAGIC, FORMAT_VERSION, true,
+                "packages catalogue snapshot");
+    }
+
+    /**
+     * @return a store that never has any snapshot and does not save anything
+     */
+    public static PackageCatalogueSnapshotStore disabled() {
+        return new PackageCatalogueSnapshotStore(null);
+    }
+
+    public Optional<PackageCatalogueSnapshot> load() {
+        return snapshotFile.read(PackageCatalogueSnapshotStore::readSnapshot);
+    }
+
+    public void save(Collection<ModelPackageVariant> variants) {
+        snapshotFile.write(out -> {
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(variants.size());
+            for (ModelPackageVariant variant : variants) {
+                ModelPackageVariantCodec.write(out, variant);
+            }
+        });
+    }
+
+    public void delete() {
+        snapshotFile.delete();
+    }
+
+    private static PackageCatalogueSnapshot readSnapshot(DataInputStream in) throws IOException {
+        Instant timestamp = Instant.ofEpochMilli(in.readLong());
+        int count = in.readInt();
+        if (count < 0 || count > MAX_VARIANTS) {
+            throw new IOException("Invalid number of variants: " + count);
+        }
+        /* not pre-sized from the file, a truncated file must not cost more than what it contains */
+        List<ModelPackageVariant> variants = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            variants.add(ModelPackageVariantCodec.read(in));
+        }
+        return new PackageCatalogueSnapshot(timestamp, variants);
+    }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.jmad.modelpack.gui.util.GramIndex.normalize;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.util.GramIndex;
+
+import cern.accsoft.steering.jmad.domain.machine.SequenceDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+
+/**
+ * In-memory n-gram index over the searchable names of package variants: package name, variant name and, once they are
+ * resolved, the names of the model definitions with their optics and sequences (see {@link GramIndex}). Queries are
+ * case-insensitive; all the words of a query have to match. The index is updated incrementally and is thread safe;
+ * every update changes its {@link #version()}.
+ */
+public class PackageSearchIndex {
+
+    private final GramIndex<ModelPackageVariant> index = GramIndex.create();
+    private long version;
+
+    public synchronized void add(ModelPackageVariant variant) {
+        if (index.add(variant, variant.modelPackage().name(), variant.variant().name())) {
+            version++;
+        }
+    }
+
+    /**
+     * Adds the names of the model definitions (with their optics and sequences) resolved from the given variant to
+     * the searchable names of this variant. Ignored if the variant is not in the index.
+     */
+    public synchronized void addDefinitions(ModelPackageVariant variant, List<JMadModelDefinition> definitions) {
+        List<String> names = new ArrayList<>();
+        for (JMadModelDefinition definition : definitions) {
+            names.add(definition.getName());
+            for (OpticsDefinition optics : definition.getOpticsDefinitions()) {
+                names.add(optics.getName());
+            }
+            for (SequenceDefinition sequence : definition.getSequenceDefinitions()) {
+                names.add(sequence.getName());
+            }
+        }
+        if (index.extend(variant, names.toArray(new String[0]))) {
+            version++;
+        }
+    }
+
+    public synchronized void remove(ModelPackageVariant variant) {
+        if (index.remove(variant)) {
+            version++;
+        }
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        version++;
+    }
+
+    /**
+     * @return a number that changes whenever a variant is added or removed, or its searchable names are extended
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * @return all the variants matching every word of the given query
+     */
+    public synchronized Set<ModelPackageVariant> search(String query) {
+        List<String> words = wordsOf(query);
+        if (words.isEmpty()) {
+            return new HashSet<>(index.items());
+        }
+
+        Set<ModelPackageVariant> result = null;
+        for (String word : words) {
+            result = index.matching(word, result);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Refines the result of a previous query with a query that extends it (e.g. the same search field after one more
+     * keystroke), by only checking the variants that matched the previous query. Only valid if the index did not change
+     * since the previous query (same {@link #version()}), otherwise variants that became searchable are missed.
+     */
+    public synchronized Set<ModelPackageVariant> refine(Set<ModelPackageVariant> previousResult, String query) {
+        List<String> words = wordsOf(query);
+        Set<ModelPackageVariant> result = new HashSet<>();
+        for (ModelPackageVariant variant : previousResult) {
+            if (words.stream().allMatch(word -> index.contains(variant, word))) {
+                result.add(variant);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the given variant matches every word of the given query
+     */
+    public synchronized boolean matches(ModelPackageVariant variant, String query) {
+        if (!index.items().contains(variant)) {
+            return false;
+        }
+        return wordsOf(query).stream().allMatch(word -> index.contains(variant, word));
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    private static List<String> wordsOf(String query) {
+        List<String> words = new ArrayList<>();
+        if (query == null) {
+            return words;
+        }
+        for (String word : normalize(query).split("\\s+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+}
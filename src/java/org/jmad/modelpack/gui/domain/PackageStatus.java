@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+/**
+ * Where a variant of the {@link PackageCatalogue} comes from, with respect to the last known catalogue snapshot and
+ * the previous refresh
+ */
+public enum PackageStatus {
+    LIVE(""),
+    CACHED("cached"),
+    ADDED("new"),
+    REMOVED("removed");
+
+    private final String text;
+
+    PackageStatus(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return the text shown next to the variant, empty for live variants
+     */
+    public String text() {
+        return text;
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static freetimelabs.io.reactorfx.schedulers.FxSchedulers.fxThread;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.reverseOrder;
+import static java.util.Objects.requireNonNull;
+import static javafx.collections.FXCollections.observableArrayList;
+import static javafx.collections.FXCollections.unmodifiableObservableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javafx.collections.ObservableList;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The recent and pinned model selections, shared by all the dialogs: the pinned ones first, then the most recently
+ * used ones, up to a maximum. They are loaded from and saved to a {@link RecentSelectionsStore} in the background, one
+ * operation after the other. Must only be used from the FX thread.
+ */
+public class RecentSelections {
+
+    public static final int DEFAULT_MAX_RECENT = 10;
+
+    private static final Comparator<ModelSelectionCoordinates> ORDER = comparing(ModelSelectionCoordinates::isPinned,
+            reverseOrder()).thenComparing(ModelSelectionCoordinates::lastUsed, reverseOrder());
+
+    private final RecentSelectionsStore store;
+    private final int maxRecent;
+    /* a single worker of the I/O scheduler, so that the saves are done in order */
+    private final Scheduler storeScheduler;
+    private final ObservableList<ModelSelectionCoordinates> selections = observableArrayList();
+    private final ObservableList<ModelSelectionCoordinates> readOnlySelections = unmodifiableObservableList(
+            selections);
+
+    public RecentSelections(RecentSelectionsStore store, Scheduler ioScheduler) {
+        this(store, ioScheduler, DEFAULT_MAX_RECENT);
+    }
+
+    public RecentSelections(RecentSelectionsStore store, Scheduler ioScheduler, int maxRecent) {
+        this.store = requireNonNull(store, "store must not be null");
+        requireNonNull(ioScheduler, "ioScheduler must not be null");
+        if (maxRecent < 0) {
+            throw new IllegalArgumentException("maxRecent must not be negative");
+        }
+        this.maxRecent = maxRecent;
+        this.storeScheduler = Schedulers.single(ioScheduler);
+
+        // @formatter:off
+        Mono.fromCallable(store::load)
+                .subscribeOn(storeScheduler)
+                .publishOn(fxThread())
+                .subscribe(this::mergeLoaded);
+        // @formatter:on
+    }
+
+    /**
+     * @return the pinned selections (most recently used first), then the recent ones
+     */
+    public ObservableList<ModelSelectionCoordinates> selections() {
+        return readOnlySelections;
+    }
+
+    /**
+     * Puts the given selection on top of the recent ones (or of the pinned ones, if it is pinned already). The oldest
+     * recent selection is dropped if there are too many.
+     */
+    public void record(ModelSelectionCoordinates selection) {
+        boolean pinned = selections.stream().anyMatch(s -> s.isSameSelectionAs(selection) && s.isPinned());
+        List<ModelSelectionCoordinates> updated = without(selection);
+        updated.add(selection.withPinned(pinned || selection.isPinned()));
+        update(updated, true);
+    }
+
+    public void setPinned(ModelSelectionCoordinates selection, boolean pinned) {
+        List<ModelSelectionCoordinates> updated = without(selection);
+        updated.add(selection.withPinned(pinned));
+        update(updated, true);
+    }
+
+    public void remove(ModelSelectionCoordinates selection) {
+        update(without(selection), true);
+    }
+
+    public void dispose() {
+        storeScheduler.dispose();
+    }
+
+    private void mergeLoaded(List<ModelSelectionCoordinates> loaded) {
+        /* the selections recorded while loading are the most recent ones */
+        List<ModelSelectionCoordinates> merged = new ArrayList<>(selections);
+        for (ModelSelectionCoordinates selection : loaded) {
+            if (merged.stream().noneMatch(selection::isSameSelectionAs)) {
+                merged.add(selection);
+            }
+        }
+        update(merged, !selections.isEmpty());
+    }
+
+    private List<ModelSelectionCoordinates> without(ModelSelectionCoordinates selection) {
+        List<ModelSelectionCoordinates> remaining = new ArrayList<>(selections);
+        remaining.removeIf(selection::isSameSelectionAs);
+        return remaining;
+    }
+
+    private void update(List<ModelSelectionCoordinates> updated, boolean save) {
+        updated.sort(ORDER);
+        List<ModelSelectionCoordinates> kept = new ArrayList<>();
+        int recentCount = 0;
+        for (ModelSelectionCoordinates selection : updated) {
+            if (selection.isPinned() || recentCount++ < maxRecent) {
+                kept.add(selection);
+            }
+        }
+        selections.setAll(kept);
+        if (save) {
+            Mono.fromRunnable(() -> store.save(kept)).subscribeOn(storeScheduler).subscribe();
+        }
+    }
+
+}
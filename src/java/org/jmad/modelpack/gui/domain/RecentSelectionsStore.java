@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.jmad.modelpack.gui.domain.ModelPackageVariantCodec.readNullableString;
+import static org.jmad.modelpack.gui.domain.ModelPackageVariantCodec.writeNullableString;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+
+/**
+ * Stores the recent and pinned {@link ModelSelectionCoordinates} in a local file, so that they survive the
+ * application. Files that cannot be read back (corrupted, truncated, written by an incompatible version) are deleted
+ * and treated as if there were no selections. All the methods are blocking and should be called from an I/O thread.
+ */
+public class RecentSelectionsStore {
+
+    public static final Path DEFAULT_SELECTIONS_FILE = Paths.get(System.getProperty("user.home"), ".jmad",
+            "modelpack-fx", "recent-selections");
+
+    private static final int MAGIC = 0x4A4D5253; /* "JMRS" */
+    /* 2: variants written field by field instead of serialized */
+    private static final int FORMAT_VERSION = 2;
+    /* there are only a handful of them, anything above is not a valid file */
+    static final int MAX_SELECTIONS = 1000;
+
+    private final LocalStoreFile selectionsFile;
+
+    public RecentSelectionsStore(Path selectionsFile) {
+        this.selectionsFile = new LocalStoreFile(selectionsFile, MAGIC, FORMAT_VERSION, false,
+                "recent selections file");
+    }
+
+    /**
+     * @return a store that never has any selection and does not save anything
+     */
+    public static RecentSelectionsStore disabled() {
+        return new RecentSelectionsStore(null);
+    }
+
+    public List<ModelSelectionCoordinates> load() {
+        return selectionsFile.read(RecentSelectionsStore::readSelections).orElse(Collections.emptyList());
+    }
+
+    public void save(Collection<ModelSelectionCoordinates> selections) {
+        selectionsFile.write(out -> {
+            out.writeInt(selections.size());
+            for (ModelSelectionCoordinates selection : selections) {
+                ModelPackageVariantCodec.write(out, selection.variant());
+                out.writeUTF(selection.modelDefinitionName());
+                writeNullableString(out, selection.opticsName().orElse(null));
+                writeNullableString(out, selection.sequenceName().orElse(null));
+                writeNullableString(out, selection.rangeName().orElse(null));
+                out.writeBoolean(selection.isPinned());
+                out.writeLong(selection.lastUsed().toEpochMilli());
+            }
+        });
+    }
+
+    public void delete() {
+        selectionsFile.delete();
+    }
+
+    private static List<ModelSelectionCoordinates> readSelections(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_SELECTIONS) {
+            throw new IOException("Invalid number of selections: " + count);
+        }
+        List<ModelSelectionCoordinates> selections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ModelPackageVariant variant = ModelPackageVariantCodec.read(in);
+            String modelDefinitionName = in.readUTF();
+            String opticsName = readNullableString(in);
+            String sequenceName = readNullableString(in);
+            String rangeName = readNullableString(in);
+            boolean pinned = in.readBoolean();
+            Instant lastUsed = Instant.ofEpochMilli(in.readLong());
+            selections.add(new ModelSelectionCoordinates(variant, modelDefinitionName, opticsName, sequenceName,
+                    rangeName, pinned, lastUsed));
+        }
+        return selections;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Outcome of the last (or running) retrieval of the packages of one repository.
+ */
+public final class RepositoryFetchStatus {
+
+    public enum State {
+        FETCHING,
+        OK,
+        /** all the packages were retrieved, but it took longer than the slow threshold */
+        SLOW,
+        /** the listing of the repository did not change since the last refresh, so it was not applied again */
+        UNCHANGED,
+        FAILED
+    }
+
+    private final JMadModelPackageRepository repository;
+    private final State state;
+    private final Duration latency;
+    private final int packageCount;
+    private final String error;
+
+    private RepositoryFetchStatus(JMadModelPackageRepository repository, State state, Duration latency,
+            int packageCount, String error) {
+        this.repository = requireNonNull(repository, "repository must not be null");
+        this.state = requireNonNull(state, "state must not be null");
+        this.latency = latency;
+        this.packageCount = packageCount;
+        this.error = error;
+    }
+
+    public static RepositoryFetchStatus fetching(JMadModelPackageRepository repository) {
+        return new RepositoryFetchStatus(repository, State.FETCHING, null, 0, null);
+    }
+
+    public static RepositoryFetchStatus completed(JMadModelPackageRepository repository, Duration latency,
+            int packageCount, Duration slowThreshold) {
+        State state = latency.compareTo(slowThreshold) > 0 ? State.SLOW : State.OK;
+        return new RepositoryFetchStatus(repository, state, latency, packageCount, null);
+    }
+
+    public static RepositoryFetchStatus unchanged(JMadModelPackageRepository repository, Duration latency,
+            int packageCount) {
+        return new RepositoryFetchStatus(repository, State.UNCHANGED, latency, packageCount, null);
+    }
+
+    public static RepositoryFetchStatus failed(JMadModelPackageRepository repository, Duration latency,
+            int packageCount, Throwable error) {
+        /* the root cause is more telling than e.g. the exhausted retries that wrap it */
+        return new RepositoryFetchStatus(repository, State.FAILED, latency, packageCount,
+                String.valueOf(Throwables.getRootCause(error)));
+    }
+
+    public JMadModelPackageRepository repository() {
+        return repository;
+    }
+
+    public State state() {
+        return state;
+    }
+
+    /**
+     * @return the time it took to retrieve all the packages of the repository, or until it failed. Empty while
+     *         fetching
+     */
+    public Optional<Duration> latency() {
+        return Optional.ofNullable(latency);
+    }
+
+    /**
+     * @return the number of package variants retrieved from the repository (before any failure)
+     */
+    public int packageCount() {
+        return packageCount;
+    }
+
+    public Optional<String> error() {
+        return Optional.ofNullable(error);
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryFetchStatus [repository=" + repository + ", state=" + state + ", latency=" + latency
+                + ", packageCount=" + packageCount + ", error=" + error + "]";
+    }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Result of the latest probe of a repository by the {@link RepositoryHealthProber}, together with the number of
+ * consecutive failed and slow probes that led to it.
+ */
+public final class RepositoryHealth {
+
+    /** Healthy and fast repositories first, then slow ones, then unreachable ones; unprobed ones are assumed healthy */
+    public static final Comparator<RepositoryHealth> HEALTHIEST_FIRST = Comparator
+            .comparing(RepositoryHealth::isReachable).reversed()
+            .thenComparing(h -> h.latency().orElse(Duration.ZERO));
+
+    private final JMadModelPackageRepository repository;
+    private final Instant probeTime;
+    private final boolean reachable;
+    private final Duration latency;
+    /* null if the probe cannot count the packages */
+    private final Integer packageCount;
+    private final int consecutiveFailures;
+    private final int consecutiveSlowProbes;
+    private final String error;
+
+    private RepositoryHealth(JMadModelPackageRepository repository, Instant probeTime, boolean reachable,
+            Duration latency, Integer packageCount, int consecutiveFailures, int consecutiveSlowProbes, String error) {
+        this.repository = requireNonNull(repository, "repository must not be null");
+        this.probeTime = probeTime;
+        this.reachable = reachable;
+        this.latency = latency;
+        this.packageCount = packageCount;
+        this.consecutiveFailures = consecutiveFailures;
+        this.consecutiveSlowProbes = consecutiveSlowProbes;
+        this.error = error;
+    }
+
+    /**
+     * @return the health of a repository that was not probed yet
+     */
+    public static RepositoryHealth unknown(JMadModelPackageRepository repository) {
+        return new RepositoryHealth(repository, null, true, null, null, 0, 0, null);
+    }
+
+    /**
+     * @param listedPackages the number of packages of the repository, null if the probe cannot count them
+     */
+    RepositoryHealth succeeded(Duration probeLatency, Integer listedPackages, Duration slowThreshold) {
+        boolean slow = probeLatency.compareTo(slowThreshold) > 0;
+        return new RepositoryHealth(repository, Instant.now(), true, probeLatency, listedPackages, 0,
+                slow ? consecutiveSlowProbes + 1 : 0, null);
+    }
+
+    RepositoryHealth failed(Duration probeDuration, Throwable cause) {
+        return new RepositoryHealth(repository, Instant.now(), false, probeDuration, null, consecutiveFailures + 1,
+                consecutiveSlowProbes, String.valueOf(Throwables.getRootCause(cause)));
+    }
+
+    public JMadModelPackageRepository repository() {
+        return repository;
+    }
+
+    /**
+     * @return the time of the latest probe, empty if the repository was not probed yet
+     */
+    public Optional<Instant> probeTime() {
+        return Optional.ofNullable(probeTime);
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    /**
+     * @return the time the probe took, e.g. to list all the packages of the repository (or until the probe failed)
+     */
+    public Optional<Duration> latency() {
+        return Optional.ofNullable(latency);
+    }
+
+    /**
+     * @return the number of packages listed by the latest probe, empty if it failed or cannot count them
+     */
+    public OptionalInt packageCount() {
+        return packageCount == null ? OptionalInt.empty() : OptionalInt.of(packageCount);
+    }
+
+    public int consecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public int consecutiveSlowProbes() {
+        return consecutiveSlowProbes;
+    }
+
+    public Optional<String> error() {
+        return Optional.ofNullable(error);
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryHealth [repository=" + repository + ", probeTime=" + probeTime + ", reachable=" + reachable
+                + ", latency=" + latency + ", packageCount=" + packageCount + ", consecutiveFailures="
+                + consecutiveFailures + ", consecutiveSlowProbes=" + consecutiveSlowProbes + ", error=" + error + "]";
+    }
+
+}
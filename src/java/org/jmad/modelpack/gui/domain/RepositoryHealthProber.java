@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.service.JMadModelPackageRepositoryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Regularly probes the enabled repositories in the background through a {@link RepositoryProbe}: whether they are
+ * reachable, how long the probe takes and, if the probe lists them, how many packages they contain. Repositories that fail are probed less and
+ * less often (exponential backoff up to a maximum). Repositories that failed or were slow for a number of consecutive
+ * probes are considered unhealthy, and are handled according to the {@link UnhealthyRepositoryPolicy}.
+ * <p>
+ * The results are published to the {@link RepositoryStatuses}. The model package service only lists all the
+ * repositories at once, so the latency or failure of a single repository cannot be told from it: by default the
+ * repositories are probed with an HTTP HEAD request on their url ({@link RepositoryProbe#httpHead(Duration)}), and
+ * listed on their own only if there is a {@link RepositoryPackageSource} ({@link RepositoryProbe#listingThrough}).
+ */
+public class RepositoryHealthProber {
+
+    public enum UnhealthyRepositoryPolicy {
+        /** unhealthy repositories are only reported */
+        KEEP,
+        /** unhealthy repositories are queried last when refreshing the packages */
+        DEPRIORITISE,
+        /** unhealthy repositories are disabled in the repository manager */
+        DISABLE
+    }
+
+    public static final Duration DEFAULT_PROBE_INTERVAL = Duration.ofMinutes(5);
+    public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofHours(1);
+    public static final int DEFAULT_UNHEALTHY_AFTER = 3;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryHealthProber.class);
+    private static final int MAX_BACKOFF_EXPONENT = 16;
+
+    private final JMadModelPackageRepositoryManager repositoryManager;
+    private final RepositoryStatuses statuses;
+    private final Scheduler ioScheduler;
+    private final RepositoryProbe repositoryProbe;
+    private final Duration probeInterval;
+    private final Duration maxBackoff;
+    private final Duration probeTimeout;
+    private final Duration slowThreshold;
+    private final int unhealthyAfter;
+    private final UnhealthyRepositoryPolicy policy;
+
+    private final Map<JMadModelPackageRepository, RepositoryHealth> health = new ConcurrentHashMap<>();
+    /* System.nanoTime() after which each repository is due for its next probe */
+    private final Map<JMadModelPackageRepository, Long> nextProbes = new ConcurrentHashMap<>();
+    private Disposable schedule;
+
+    /**
+     * @param probeTimeout the maximum time to wait for the next signal of a probe before considering it failed
+     * @param slowThreshold the time above which a probe is considered slow
+     * @param unhealthyAfter the number of consecutive failed (or slow) probes after which a repository is unhealthy
+     */
+    public RepositoryHealthProber(JMadModelPackageRepositoryManager repositoryManager, RepositoryStatuses statuses,
+            Scheduler ioScheduler, RepositoryProbe repositoryProbe, Duration probeInterval,
+            Duration maxBackoff, Duration probeTimeout, Duration slowThreshold, int unhealthyAfter,
+            UnhealthyRepositoryPolicy policy) {
+        this.repositoryManager = requireNonNull(repositoryManager, "repositoryManager must not be null");
+        this.statuses = requireNonNull(statuses, "statuses must not be null");
+        this.ioScheduler = requireNonNull(ioScheduler, "ioScheduler must not be null");
+        this.repositoryProbe = requireNonNull(repositoryProbe, "repositoryProbe must not be null");
+        this.probeInterval = requireNonNull(probeInterval, "probeInterval must not be null");
+        this.maxBackoff = requireNonNull(maxBackoff, "maxBackoff must not be null");
+        this.probeTimeout = requireNonNull(probeTimeout, "probeTimeout must not be null");
+        this.slowThreshold = requireNonNull(slowThreshold, "slowThreshold must not be null");
+        this.policy = requireNonNull(policy, "policy must not be null");
+        if (unhealthyAfter < 1) {
+            throw new IllegalArgumentException("unhealthyAfter must be at least 1");
+        }
+        this.unhealthyAfter = unhealthyAfter;
+    }
+
+    /**
+     * Starts probing the repositories that are due every probe interval, starting now. Does nothing if already
+     * started.
+     */
+    public synchronized void start() {
+        if (schedule != null) {
+            return;
+        }
+        // @formatter:off
+        schedule = Flux.interval(Duration.ZERO, probeInterval, ioScheduler)
+                .onBackpressureDrop()
+                .concatMap(tick -> probe(false), 1)
+                .subscribe();
+        // @formatter:on
+    }
+
+    public synchronized void stop() {
+        if (schedule != null) {
+            schedule.dispose();
+            schedule = null;
+        }
+    }
+
+    /**
+     * @return a mono that probes all the enabled repositories at once, whether they are due or not, and emits the
+     *         results (none for the repositories the probe cannot tell anything about)
+     */
+    public Mono<List<RepositoryHealth>> probeNow() {
+        return probe(true);
+    }
+
+    public Optional<RepositoryHealth> healthOf(JMadModelPackageRepository repository) {
+        return Optional.ofNullable(health.get(repository));
+    }
+
+    /**
+     * @return an order of the repositories with the healthy and fast ones first, according to the latest probes
+     */
+    public Comparator<JMadModelPackageRepository> healthRanking() {
+        return Comparator.comparing(repository -> health.getOrDefault(repository, RepositoryHealth.unknown(repository)),
+                RepositoryHealth.HEALTHIEST_FIRST);
+    }
+
+    public UnhealthyRepositoryPolicy policy() {
+        return policy;
+    }
+
+    public boolean isUnhealthy(RepositoryHealth repositoryHealth) {
+        return repositoryHealth.consecutiveFailures() >= unhealthyAfter
+                || repositoryHealth.consecutiveSlowProbes() >= unhealthyAfter;
+    }
+
+    private Mono<List<RepositoryHealth>> probe(boolean all) {
+        return repositoryManager.state().next().defaultIfEmpty(Collections.emptyMap()).flatMap(repositories -> {
+            long now = System.nanoTime();
+            // @formatter:off
+            return Flux.fromIterable(repositories.entrySet())
+                    /* a disabled repository is not listed by the service, so its health does not matter */
+                    .filter(e -> e.getValue().asBoolEnabled())
+                    .map(Map.Entry::getKey)
+                    .filter(repositoryProbe::canProbe)
+                    .filter(repository -> all || isDue(repository, now))
+                    .flatMap(this::probe)
+                    .collectList();
+            // @formatter:on
+        }).subscribeOn(ioScheduler).onErrorResume(e -> {
+            LOGGER.warn("Error while probing the repositories", e);
+            return Mono.just(Collections.emptyList());
+        });
+    }
+
+    private boolean isDue(JMadModelPackageRepository repository, long now) {
+        /* with some slack, so that a repository is not skipped because its probe ended slightly after the tick */
+        return nextProbes.getOrDefault(repository, now) - now <= probeInterval.toNanos() / 2;
+    }
+
+    private Mono<RepositoryHealth> probe(JMadModelPackageRepository repository) {
+        RepositoryHealth previous = health.getOrDefault(repository, RepositoryHealth.unknown(repository));
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            // @formatter:off
+            return repositoryProbe.probe(repository)
+                    .subscribeOn(ioScheduler)
+                    .timeout(probeTimeout)
+                    .map(Optional::of)
+                    .defaultIfEmpty(Optional.empty())
+                    .map(count -> previous.succeeded(elapsedSince(start), count.orElse(null), slowThreshold))
+                    .onErrorResume(e -> Mono.just(previous.failed(elapsedSince(start), e)));
+            // @formatter:on
+        }).doOnNext(this::record);
+    }
+
+    private void record(RepositoryHealth result) {
+        JMadModelPackageRepository repository = result.repository();
+        health.put(repository, result);
+        nextProbes.put(repository, System.nanoTime() + backoffFor(result).toNanos());
+        statuses.update(result);
+
+        if (policy == UnhealthyRepositoryPolicy.DISABLE && isUnhealthy(result)) {
+            LOGGER.warn("Disabling repository {} as it is unhealthy: {}", repository, result);
+            repositoryManager.disable(repository);
+        }
+    }
+
+    private Duration backoffFor(RepositoryHealth result) {
+        if (result.consecutiveFailures() == 0) {
+            return probeInterval;
+        }
+        long factor = 1L << Math.min(result.consecutiveFailures(), MAX_BACKOFF_EXPONENT);
+        Duration backoff = probeInterval.multipliedBy(factor);
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Optional;
+import java.util.Set;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The complete and changed listing of one repository (or of all of them), as retrieved by an incremental refresh. The
+ * variants the table shows for the covered repositories have to be replaced by the ones of the listing.
+ */
+public final class RepositoryListing {
+
+    private final Optional<JMadModelPackageRepository> repository;
+    private final Set<ModelPackageVariant> variants;
+
+    private RepositoryListing(Optional<JMadModelPackageRepository> repository, Set<ModelPackageVariant> variants) {
+        this.repository = requireNonNull(repository, "repository must not be null");
+        this.variants = ImmutableSet.copyOf(requireNonNull(variants, "variants must not be null"));
+    }
+
+    public static RepositoryListing of(JMadModelPackageRepository repository, Set<ModelPackageVariant> variants) {
+        return new RepositoryListing(Optional.of(requireNonNull(repository, "repository must not be null")), variants);
+    }
+
+    /**
+     * @return the listing of all the repositories, e.g. when the catalogue could only be retrieved as a whole
+     */
+    public static RepositoryListing ofAll(Set<ModelPackageVariant> variants) {
+        return new RepositoryListing(Optional.empty(), variants);
+    }
+
+    /**
+     * @return the repository this listing is complete for, or empty if it is complete for all of them
+     */
+    public Optional<JMadModelPackageRepository> repository() {
+        return repository;
+    }
+
+    public Set<ModelPackageVariant> variants() {
+        return variants;
+    }
+
+    /**
+     * @return whether the given variant belongs to a repository of this listing, i.e. whether it must be removed if it
+     *         is not part of the listing anymore
+     */
+    public boolean covers(ModelPackageVariant variant) {
+        return repository.map(r -> r.equals(variant.modelPackage().repository())).orElse(true);
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryListing [repository=" + repository.map(String::valueOf).orElse("all") + ", variants="
+                + variants.size() + "]";
+    }
+
+}
@@ -0,0 +1,31 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+
+import reactor.core.publisher.Flux;
+
+/**
+ * Lists the package variants of a single repository, so that repositories can be queried independently of each
+ * other. Provide one to the {@link RepositoryPackagesFetcher} if the model package connectors in use allow it;
+ * otherwise the fetcher splits the listing of the model package service by repository.
+ */
+@FunctionalInterface
+public interface RepositoryPackageSource {
+
+    Flux<ModelPackageVariant> availablePackages(JMadModelPackageRepository repository);
+
+    /**
+     * @return a source that splits the given (merged) listing by repository. The listing is subscribed to once for all
+     *         the repositories that are queried at the same time, and cancelled once none of them is interested anymore.
+     */
+    static RepositoryPackageSource sharedListingOf(Flux<ModelPackageVariant> listing) {
+        Flux<ModelPackageVariant> sharedListing = listing.replay().refCount();
+        return repository -> sharedListing.filter(variant -> repository.equals(variant.modelPackage().repository()));
+    }
+
+}
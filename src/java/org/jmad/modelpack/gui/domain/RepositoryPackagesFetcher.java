@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.emptySet;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.REPOSITORY_LATENCY;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_OUTCOME;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_REPOSITORY;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.outcomeOf;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.jmad.modelpack.service.JMadModelPackageRepositoryManager;
+import org.jmad.modelpack.service.JMadModelPackageRepositoryManager.EnableState;
+import org.jmad.modelpack.service.JMadModelPackageService;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Retrieves the available packages repository by repository, with bounded parallelism and an individual timeout and
+ * retry policy for each repository. A repository that fails or times out only loses its own packages (and the ones
+ * already received from it are kept), instead of failing the whole refresh. The outcome for each repository is
+ * published to the {@link RepositoryStatuses}.
+ * <p>
+ * Without a {@link RepositoryPackageSource} (the default), the (merged) listing of the model package service is
+ * retrieved once per refresh and split by repository. There is then no per-repository fan-out, timeout or retry: the
+ * repositories are not queried in parallel (the maximum parallelism is ignored), the timeout applies to the merged
+ * listing, there are no retries (retrying a repository would retrieve the merged listing again), and a failure is a
+ * failure of all the repositories not completely received yet. The statuses and partial results work the same.
+ * <p>
+ * The version of each listed repository is remembered, so that a refresh ({@link #changedListings()}) only reports
+ * the repositories whose listing changed. Only a {@link VersionedRepositoryPackageSource} avoids listing the unchanged
+ * repositories; none is provided by this library, so by default every refresh lists all the repositories in full and
+ * only the diffing against the catalogue (and the table) is incremental.
+ */
+public class RepositoryPackagesFetcher {
+
+    public static final int DEFAULT_MAX_PARALLEL_REPOSITORIES = 4;
+    public static final Duration DEFAULT_REPOSITORY_TIMEOUT = Duration.ofSeconds(30);
+    public static final Duration DEFAULT_SLOW_THRESHOLD = Duration.ofSeconds(5);
+    public static final int DEFAULT_RETRIES = 1;
+    public static final Duration DEFAULT_RETRY_BACKOFF = Duration.ofMillis(500);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RepositoryPackagesFetcher.class);
+
+    private final JMadModelPackageService packageService;
+    private final JMadModelPackageRepositoryManager repositoryManager;
+    private final RepositoryStatuses statuses;
+    private final Scheduler ioScheduler;
+    private final Optional<RepositoryPackageSource> repositorySource;
+    private final int maxParallelRepositories;
+    private final Duration repositoryTimeout;
+    private final Duration slowThreshold;
+    private final int retries;
+    private final Duration retryBackoff;
+    private final ModelSelectionMetrics metrics;
+    private volatile Comparator<JMadModelPackageRepository> repositoryOrder;
+    private final Map<JMadModelPackageRepository, RepositoryVersion> versions = new ConcurrentHashMap<>();
+    private final Set<JMadModelPackageRepository> failedRepositories = ConcurrentHashMap.newKeySet();
+
+    public RepositoryPackagesFetcher(JMadModelPackageService packageService,
+            JMadModelPackageRepositoryManager repositoryManager, RepositoryStatuses statuses,
+            Scheduler ioScheduler) {
+        this(packageService, repositoryManager, statuses, ioScheduler, Optional.empty(),
+                DEFAULT_MAX_PARALLEL_REPOSITORIES, DEFAULT_REPOSITORY_TIMEOUT, DEFAULT_SLOW_THRESHOLD, DEFAULT_RETRIES,
+                DEFAULT_RETRY_BACKOFF);
+    }
+
+    /**
+     * @param repositorySource the source listing each repository on its own. Without it, the merged listing of the
+     *            service is shared by all the repositories and only the timeout and slow threshold apply, to that
+     *            listing
+     * @param repositoryTimeout the maximum time to wait for the next package of a repository before giving up on it
+     * @param slowThreshold the time after which a repository that delivered all its packages is considered slow
+     * @param retries the number of times a failed repository listing is retried, 0 to never retry
+     */
+    public RepositoryPackagesFetcher(JMadModelPackageService packageService,
+            JMadModelPackageRepositoryManager repositoryManager, RepositoryStatuses statuses,
+            Scheduler ioScheduler, Optional<RepositoryPackageSource> repositorySource, int maxParallelRepositories,
+            Duration repositoryTimeout, Duration slowThreshold, int retries, Duration retryBackoff) {
+        this(packageService, repositoryManager, statuses, ioScheduler, repositorySource, maxParallelRepositories,
+                repositoryTimeout, slowThreshold, retries, retryBackoff, ModelSelectionMetrics.noop());
+    }
+
+    /**
+     * @param metrics receives the {@link ModelSelectionMetrics#REPOSITORY_LATENCY latency} of each repository
+     */
+    public RepositoryPackagesFetcher(JMadModelPackageService packageService,
+            JMadModelPackageRepositoryManager repositoryManager, RepositoryStatuses statuses,
+            Scheduler ioScheduler, Optional<RepositoryPackageSource> repositorySource, int maxParallelRepositories,
+            Duration repositoryTimeout, Duration slowThreshold, int retries, Duration retryBackoff,
+            ModelSelectionMetrics metrics) {
+        this.packageService = requireNonNull(packageService, "packageService must not be null");
+        this.repositoryManager = requireNonNull(repositoryManager, "repositoryManager must not be null");
+        this.statuses = requireNonNull(statuses, "statuses must not be null");
+        this.ioScheduler = requireNonNull(ioScheduler, "ioScheduler must not be null");
+        this.repositorySource = requireNonNull(repositorySource, "repositorySource must not be null");
+        this.repositoryTimeout = requireNonNull(repositoryTimeout, "repositoryTimeout must not be null");
+        this.slowThreshold = requireNonNull(slowThreshold, "slowThreshold must not be null");
+        this.retryBackoff = requireNonNull(retryBackoff, "retryBackoff must not be null");
+        this.metrics = requireNonNull(metrics, "metrics must not be null");
+        if (maxParallelRepositories < 1) {
+            throw new IllegalArgumentException("maxParallelRepositories must be at least 1");
+        }
+        if (retries < 0) {
+            throw new IllegalArgumentException("retries must not be negative");
+        }
+        this.maxParallelRepositories = maxParallelRepositories;
+        this.retries = retries;
+    }
+
+    /**
+     * Sets the order in which the repositories are queried, e.g. to query slow ones last so that they do not occupy
+     * the parallel slots. By default, they are queried in the order given by the repository manager.
+     */
+    public void setRepositoryOrder(Comparator<JMadModelPackageRepository> repositoryOrder) {
+        this.repositoryOrder = requireNonNull(repositoryOrder, "repositoryOrder must not be null");
+    }
+
+    /**
+     * @return a flux of the packages of all the enabled repositories, which never fails because of a single
+     *         repository. Packages are emitted as soon as they are received from their repository. The version of each
+     *         completely listed repository is remembered for the next {@link #changedListings()}.
+     */
+    public Flux<ModelPackageVariant> availablePackages() {
+        return enabledRepositories().flatMapMany(repositories -> perRepository(repositories, this::fetch));
+    }
+
+    /**
+     * Emits the complete listing of each enabled repository that changed since it was last listed, and nothing for
+     * the unchanged and failed ones. A repository is considered unchanged if the {@link VersionedRepositoryPackageSource}
+     * reports the same version marker as before (then it is not even listed), or if its listing has the same content
+     * hash as before (it was listed in full anyway). A repository that was listed (or failed) before but is
+     * not enabled anymore gets an empty listing, so that its packages are removed.
+     */
+    public Flux<RepositoryListing> changedListings() {
+        return Flux.defer(() -> {
+            Set<JMadModelPackageRepository> known = new HashSet<>(versions.keySet());
+            known.addAll(failedRepositories);
+            return enabledRepositories().flatMapMany(repositories -> {
+                known.removeAll(repositories);
+                known.forEach(versions::remove);
+                return Flux.fromIterable(known).map(repository -> RepositoryListing.of(repository, emptySet()))
+                        .concatWith(perRepository(repositories, this::changedListing));
+            });
+        });
+    }
+
+    /**
+     * @return the enabled repositories whose last listing failed or timed out, so that what is known of them should be
+     *         kept rather than considered gone
+     */
+    public Set<JMadModelPackageRepository> failedRepositories() {
+        return Collections.unmodifiableSet(new HashSet<>(failedRepositories));
+    }
+
+    /**
+     * Forgets the versions of the repositories, so that the next {@link #changedListings()} reports all of them as
+     * changed, e.g. after switching between online and offline mode.
+     */
+    public void forgetVersions() {
+        versions.clear();
+    }
+
+    private <T> Flux<T> perRepository(List<JMadModelPackageRepository> repositories,
+            BiFunction<RepositoryPackageSource, JMadModelPackageRepository, Publisher<T>> query) {
+        if (repositorySource.isPresent()) {
+            RepositoryPackageSource source = repositorySource.get();
+            return Flux.fromIterable(repositories).flatMap(repository -> query.apply(source, repository),
+                    maxParallelRepositories);
+        }
+        /* all the repositories are served by the same listing, so there is nothing to gain in limiting them */
+        RepositoryPackageSource source = RepositoryPackageSource.sharedListingOf(
+                packageService.availablePackages().subscribeOn(ioScheduler).timeout(repositoryTimeout));
+        return Flux.fromIterable(repositories).flatMap(repository -> query.apply(source, repository),
+                Math.max(1, repositories.size()));
+    }
+
+    private Mono<List<JMadModelPackageRepository>> enabledRepositories() {
+        // @formatter:off
+        return repositoryManager.state()
+                .next()
+                .map(RepositoryPackagesFetcher::enabledIn)
+                .doOnNext(failedRepositories::retainAll)
+                .map(this::ordered)
+                .defaultIfEmpty(Collections.emptyList())
+                .subscribeOn(ioScheduler);
+        // @formatter:on
+    }
+
+    private Flux<ModelPackageVariant> fetch(RepositoryPackageSource source, JMadModelPackageRepository repository) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            Set<ModelPackageVariant> listed = ConcurrentHashMap.newKeySet();
+            statuses.update(RepositoryFetchStatus.fetching(repository));
+            // @formatter:off
+            return listingOf(source, repository)
+                    .doOnNext(listed::add)
+                    .doOnComplete(() -> {
+                        versions.put(repository, new RepositoryVersion(null, listed));
+                        failedRepositories.remove(repository);
+                        statuses.update(RepositoryFetchStatus.completed(repository, elapsedSince(start),
+                                listed.size(), slowThreshold));
+                    })
+                    .doFinally(signal -> recordLatency(repository, start, signal))
+                    .onErrorResume(e -> {
+                        LOGGER.warn("Error while retrieving the packages of repository {}. {} packages were received.",
+                                repository, listed.size(), e);
+                        failedRepositories.add(repository);
+                        statuses.update(RepositoryFetchStatus.failed(repository, elapsedSince(start),
+                                listed.size(), e));
+                        return Flux.empty();
+                    });
+            // @formatter:on
+        });
+    }
+
+    private Mono<RepositoryListing> changedListing(RepositoryPackageSource source,
+            JMadModelPackageRepository repository) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            RepositoryVersion previous = versions.get(repository);
+            statuses.update(RepositoryFetchStatus.fetching(repository));
+            // @formatter:off
+            return versionMarkerOf(source, repository)
+                    .flatMap(marker -> {
+                        if (previous != null && marker.isPresent() && marker.get().equals(previous.sourceMarker)) {
+                            failedRepositories.remove(repository);
+                            statuses.update(RepositoryFetchStatus.unchanged(repository, elapsedSince(start),
+                                    previous.packageCount));
+                            return Mono.empty();
+                        }
+                        return listingOf(source, repository)
+                                .collect(toSet())
+                                .flatMap(listed -> {
+                                    RepositoryVersion version = new RepositoryVersion(marker.orElse(null), listed);
+                                    versions.put(repository, version);
+                                    failedRepositories.remove(repository);
+                                    if (version.hasSameContentAs(previous)) {
+                                        statuses.update(RepositoryFetchStatus.unchanged(repository,
+                                                elapsedSince(start), listed.size()));
+                                        return Mono.empty();
+                                    }
+                                    statuses.update(RepositoryFetchStatus.completed(repository, elapsedSince(start),
+                                            listed.size(), slowThreshold));
+                                    return Mono.just(RepositoryListing.of(repository, listed));
+                                });
+                    })
+                    .doFinally(signal -> recordLatency(repository, start, signal))
+                    .onErrorResume(e -> {
+                        LOGGER.warn("Error while retrieving the packages of repository {}.", repository, e);
+                        failedRepositories.add(repository);
+                        statuses.update(RepositoryFetchStatus.failed(repository, elapsedSince(start), 0, e));
+                        return Mono.empty();
+                    });
+            // @formatter:on
+        });
+    }
+
+    private Flux<ModelPackageVariant> listingOf(RepositoryPackageSource source, JMadModelPackageRepository repository) {
+        if (!repositorySource.isPresent()) {
+            /* a filter of the shared listing, which has the timeout */
+            return source.availablePackages(repository);
+        }
+        // @formatter:off
+        Flux<ModelPackageVariant> listing = source.availablePackages(repository)
+                .subscribeOn(ioScheduler)
+                .timeout(repositoryTimeout);
+        // @formatter:on
+        if (retries == 0) {
+            /* retryBackoff(0, ...) would wrap every failure into a "Retries exhausted: 0/0" one */
+            return listing;
+        }
+        /* a retry may deliver again the packages received before the failure */
+        return listing.retryBackoff(retries, retryBackoff).distinct();
+    }
+
+    private void recordLatency(JMadModelPackageRepository repository, long start, SignalType signal) {
+        metrics.recordDuration(REPOSITORY_LATENCY, elapsedSince(start), TAG_REPOSITORY, String.valueOf(repository),
+                TAG_OUTCOME, outcomeOf(signal));
+    }
+
+    /**
+     * A failing version marker is not fatal: the repository is then listed and compared by content.
+     */
+    private Mono<Optional<String>> versionMarkerOf(RepositoryPackageSource source,
+            JMadModelPackageRepository repository) {
+        if (!(source instanceof VersionedRepositoryPackageSource)) {
+            return Mono.just(Optional.empty());
+        }
+        // @formatter:off
+        return ((VersionedRepositoryPackageSource) source).versionMarker(repository)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .subscribeOn(ioScheduler)
+                .timeout(repositoryTimeout)
+                .onErrorResume(e -> {
+                    LOGGER.warn("Could not retrieve the version marker of repository {}, listing it.", repository, e);
+                    return Mono.just(Optional.empty());
+                });
+        // @formatter:on
+    }
+
+    private List<JMadModelPackageRepository> ordered(List<JMadModelPackageRepository> repositories) {
+        Comparator<JMadModelPackageRepository> order = repositoryOrder;
+        if (order == null) {
+            return repositories;
+        }
+        return repositories.stream().sorted(order).collect(toList());
+    }
+
+    /**
+     * The version of the listing of a repository: the marker reported by the source (if any) and a content hash of the
+     * listing, as the model package service does not support conditional requests. The hash is a SHA-256 of the sorted
+     * fields of the variants, so that it neither depends on the listing order nor on the hash codes of the domain
+     * classes.
+     */
+    private static final class RepositoryVersion {
+        private final String sourceMarker;
+        private final HashCode contentHash;
+        private final int packageCount;
+
+        private RepositoryVersion(String sourceMarker, Collection<ModelPackageVariant> listing) {
+            this.sourceMarker = sourceMarker;
+            this.packageCount = listing.size();
+            this.contentHash = contentHashOf(listing);
+        }
+
+        private static HashCode contentHashOf(Collection<ModelPackageVariant> listing) {
+            Hasher hasher = Hashing.sha256().newHasher();
+            listing.stream().map(RepositoryVersion::keyOf).sorted()
+                    .forEach(key -> hasher.putInt(key.length()).putString(key, UTF_8));
+            return hasher.hash();
+        }
+
+        private static String keyOf(ModelPackageVariant variant) {
+            return String.join("\u0000", String.valueOf(variant.modelPackage().repository().repoUrl()),
+                    String.valueOf(variant.modelPackage().id()), variant.modelPackage().name(),
+                    variant.variant().name(), variant.variant().type().name());
+        }
+
+        private boolean hasSameContentAs(RepositoryVersion other) {
+            return other != null && packageCount == other.packageCount && contentHash.equals(other.contentHash);
+        }
+    }
+
+    private static List<JMadModelPackageRepository> enabledIn(Map<JMadModelPackageRepository, EnableState> state) {
+        return state.entrySet().stream().filter(e -> e.getValue().asBoolEnabled()).map(Map.Entry::getKey)
+                .collect(toList());
+    }
+
+}
@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import java.time.Duration;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Checks a single repository for the {@link RepositoryHealthProber}.
+ */
+@FunctionalInterface
+public interface RepositoryProbe {
+
+    /**
+     * @return a mono emitting the number of packages of the repository, or completing empty if the repository is
+     *         reachable but the probe cannot count its packages. It fails if the repository is not reachable.
+     */
+    Mono<Integer> probe(JMadModelPackageRepository repository);
+
+    /**
+     * @return false if this probe cannot tell anything about the given repository, which is then not probed at all
+     */
+    default boolean canProbe(JMadModelPackageRepository repository) {
+        return true;
+    }
+
+    /**
+     * @return a probe listing the packages of each repository through the given source
+     */
+    static RepositoryProbe listingThrough(RepositoryPackageSource source) {
+        return repository -> source.availablePackages(repository).count().map(Long::intValue);
+    }
+
+    /**
+     * @return a probe sending an HTTP HEAD request to the url of each repository, which works without any
+     *         {@link RepositoryPackageSource}: it tells whether the repository is reachable and how fast it answers,
+     *         but not how many packages it has. Repositories that are not served over HTTP are not probed.
+     */
+    static RepositoryProbe httpHead(Duration timeout) {
+        return new HttpHeadRepositoryProbe(timeout);
+    }
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Objects.requireNonNull;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.gui.util.FxUtils;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableMap;
+
+/**
+ * The latest {@link RepositoryFetchStatus} and {@link RepositoryHealth} of each repository, shared between the
+ * components that determine them and the repositories control which shows them. They can be updated from any thread,
+ * but are always changed (and so observed) on the Fx thread.
+ */
+public class RepositoryStatuses {
+
+    private final ObservableMap<JMadModelPackageRepository, RepositoryFetchStatus> fetchStatuses = FXCollections
+            .observableHashMap();
+    private final ObservableMap<JMadModelPackageRepository, RepositoryHealth> health = FXCollections
+            .observableHashMap();
+    private final ObservableMap<JMadModelPackageRepository, RepositoryFetchStatus> readOnlyFetchStatuses = FXCollections
+            .unmodifiableObservableMap(fetchStatuses);
+    private final ObservableMap<JMadModelPackageRepository, RepositoryHealth> readOnlyHealth = FXCollections
+            .unmodifiableObservableMap(health);
+
+    public void update(RepositoryFetchStatus status) {
+        requireNonNull(status, "status must not be null");
+        FxUtils.runAsyncOnFxThread(() -> fetchStatuses.put(status.repository(), status));
+    }
+
+    public void update(RepositoryHealth repositoryHealth) {
+        requireNonNull(repositoryHealth, "repositoryHealth must not be null");
+        FxUtils.runAsyncOnFxThread(() -> health.put(repositoryHealth.repository(), repositoryHealth));
+    }
+
+    /**
+     * @return the status of the last (or running) retrieval of the packages of each repository
+     */
+    public ObservableMap<JMadModelPackageRepository, RepositoryFetchStatus> fetchStatuses() {
+        return readOnlyFetchStatuses;
+    }
+
+    /**
+     * @return the health of each repository as last probed, if probing is enabled
+     */
+    public ObservableMap<JMadModelPackageRepository, RepositoryHealth> health() {
+        return readOnlyHealth;
+    }
+
+}
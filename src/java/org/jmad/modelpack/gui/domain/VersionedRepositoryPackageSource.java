@@ -0,0 +1,27 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link RepositoryPackageSource} that can tell cheaply whether the listing of a repository changed, e.g. from the
+ * ETag or last-modified header of the repository index. When the marker did not change since the last listing, the
+ * {@link RepositoryPackagesFetcher} skips the repository during a refresh instead of listing it again.
+ * <p>
+ * This is an extension point only: the model package service has no conditional requests, so no implementation is
+ * provided, and without one every refresh lists all the repositories.
+ */
+public interface VersionedRepositoryPackageSource extends RepositoryPackageSource {
+
+    /**
+     * @return an opaque marker that changes whenever the listing of the repository changes, or empty if the repository
+     *         does not provide one (it is then listed and compared by content)
+     */
+    Mono<String> versionMarker(JMadModelPackageRepository repository);
+
+}
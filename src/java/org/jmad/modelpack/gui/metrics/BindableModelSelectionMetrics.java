@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.metrics;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reactor.core.Disposable;
+
+/**
+ * The {@link ModelSelectionMetrics} used by the model selection dialog. It records nothing by itself, but forwards
+ * all the timings to the metrics bound to it, so that host applications can bind their own registry to it at any
+ * time. Failures of the bound metrics are logged and never propagate to the dialog.
+ */
+public class BindableModelSelectionMetrics implements ModelSelectionMetrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BindableModelSelectionMetrics.class);
+
+    private final List<ModelSelectionMetrics> boundMetrics = new CopyOnWriteArrayList<>();
+
+    /**
+     * Forwards all the timings recorded from now on to the given metrics, until the returned disposable is disposed.
+     */
+    public Disposable bindTo(ModelSelectionMetrics metrics) {
+        requireNonNull(metrics, "metrics must not be null");
+        boundMetrics.add(metrics);
+        return () -> boundMetrics.remove(metrics);
+    }
+
+    @Override
+    public void recordDuration(String name, Duration duration, String... tags) {
+        for (ModelSelectionMetrics metrics : boundMetrics) {
+            try {
+                metrics.recordDuration(name, duration, tags);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error while recording metric {}", name, e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.metrics;
+
+import java.time.Duration;
+
+import reactor.core.publisher.SignalType;
+
+/**
+ * Receives the timings measured on the hot paths of the model selection dialog. Implementations typically forward
+ * them to a metrics registry (e.g. as a Micrometer {@code Timer} per name and tags). Tags are given as alternating key
+ * and value strings. Implementations must be thread safe and fast, as they are called from the FX thread too.
+ *
+ * @see BindableModelSelectionMetrics
+ */
+@FunctionalInterface
+public interface ModelSelectionMetrics {
+
+    /** Time from the start of a packages refresh until the first package variant is received */
+    String TIME_TO_FIRST_PACKAGE = "jmad.modelpack.gui.packages.first";
+    /** Time from the start of a packages refresh until the whole catalogue is received. Tagged with the outcome */
+    String TIME_TO_COMPLETE_CATALOGUE = "jmad.modelpack.gui.packages.complete";
+    /**
+     * Time from the start of the listing of a repository until it is completely received, by the fetcher of the
+     * packages. Tagged with the repository and the outcome. Without a per-repository source, all the repositories are
+     * served by the same listing and complete together
+     */
+    String REPOSITORY_LATENCY = "jmad.modelpack.gui.repository.latency";
+    /** Duration of the resolution of the model definitions of a package variant. Tagged with the outcome */
+    String MODEL_DEFINITIONS_LATENCY = "jmad.modelpack.gui.definitions.latency";
+    /** Duration of the check of the files referenced by a model selection, if enabled. Tagged with the outcome */
+    String MODEL_DEFINITION_VALIDATION = "jmad.modelpack.gui.definitions.validation";
+    /** Time spent on the FX thread updating the packages table. Tagged with the operation */
+    String PACKAGES_TABLE_UPDATE = "jmad.modelpack.gui.packages.table.update";
+    /** Time from opening the dialog until it is closed. Tagged with the outcome */
+    String DIALOG_OPEN_TO_CLOSE = "jmad.modelpack.gui.dialog.duration";
+    /** Duration of the FX thread stalls, if the stall detector is enabled. Tagged with the culprit class */
+    String FX_THREAD_STALL = "jmad.modelpack.gui.fx.stall";
+    /** Duration of the warm up of the dialog, if enabled. Tagged with the phase */
+    String WARM_UP = "jmad.modelpack.gui.warmup";
+
+    String TAG_OUTCOME = "outcome";
+    String TAG_REPOSITORY = "repository";
+    String TAG_OPERATION = "operation";
+    String TAG_CULPRIT = "culprit";
+    String TAG_PHASE = "phase";
+
+    void recordDuration(String name, Duration duration, String... tags);
+
+    static ModelSelectionMetrics noop() {
+        return (name, duration, tags) -> {
+            /* nothing to record */
+        };
+    }
+
+    /**
+     * @return the time elapsed since the given {@link System#nanoTime()}
+     */
+    static Duration elapsedSince(long startNanos) {
+        return Duration.ofNanos(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return the value of the {@link #TAG_OUTCOME} tag for a reactive stream terminated with the given signal
+     */
+    static String outcomeOf(SignalType signal) {
+        switch (signal) {
+        case ON_COMPLETE:
+            return "success";
+        case ON_ERROR:
+            return "error";
+        default:
+            return "cancelled";
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The minimal operations that turn a list of tree items of the packages table into the rows of a new catalogue state.
+ * Both the items and the rows are sorted by the same order, so they are compared in a single merge pass, and the items
+ * of the rows that are still there are kept (with their expansion and selection). As the order only depends on the
+ * package and variant, a row never moves: a variant that becomes the head of its package is an update of the package
+ * item and a removal from its child items.
+ * <p>
+ * Applying the diff of an unchanged catalogue does not touch the items at all.
+ */
+final class CatalogueDiff {
+
+    /* above this, the items are replaced at once rather than firing one list change per operation */
+    private static final int BULK_OPERATIONS_THRESHOLD = 64;
+
+    enum Kind {
+        INSERT,
+        REMOVE,
+        /** the item is kept, but its line, leaf state or child items changed */
+        UPDATE
+    }
+
+    /**
+     * A row of the table: the line of a variant and, for a package item, whether it is the only visible variant
+     */
+    static final class Row {
+        private final PackageLine line;
+        private final boolean leaf;
+
+        Row(PackageLine line, boolean leaf) {
+            this.line = requireNonNull(line, "line must not be null");
+            this.leaf = leaf;
+        }
+
+        PackageLine line() {
+            return line;
+        }
+
+        boolean leaf() {
+            return leaf;
+        }
+    }
+
+    /**
+     * Consecutive rows inserted, removed or updated at the given index of the list, as it is while applying the
+     * operations in sequence.
+     */
+    static final class Operation {
+        private final Kind kind;
+        private final int index;
+        private final List<Row> rows = new ArrayList<>();
+        private int count;
+
+        private Operation(Kind kind, int index) {
+            this.kind = kind;
+            this.index = index;
+        }
+
+        Kind kind() {
+            return kind;
+        }
+
+        int index() {
+            return index;
+        }
+
+        /**
+         * @return the number of items concerned
+         */
+        int count() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "@" + index + "x" + count;
+        }
+    }
+
+    private final List<Operation> operations;
+
+    private CatalogueDiff(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * @param items the current items, sorted by the given order
+     * @param rows the rows to show, sorted by the given order
+     */
+    static CatalogueDiff between(List<? extends TreeItem<PackageLine>> items, List<Row> rows,
+            Comparator<ModelPackageVariant> order) {
+        List<Operation> operations = new ArrayList<>();
+        int itemIndex = 0;
+        int rowIndex = 0;
+        /* the position in the list as it is after the operations so far */
+        int position = 0;
+        while (itemIndex < items.size() || rowIndex < rows.size()) {
+            int comparison;
+            if (itemIndex == items.size()) {
+                comparison = 1;
+            } else if (rowIndex == rows.size()) {
+                comparison = -1;
+            } else {
+                comparison = order.compare(items.get(itemIndex).getValue().modelPackageVariant(),
+                        rows.get(rowIndex).line.modelPackageVariant());
+            }
+
+            if (comparison < 0) {
+                append(operations, Kind.REMOVE, position, null);
+                itemIndex++;
+            } else if (comparison > 0) {
+                append(operations, Kind.INSERT, position, rows.get(rowIndex));
+                rowIndex++;
+                position++;
+            } else {
+                Row row = rows.get(rowIndex);
+                if (needsUpdate(items.get(itemIndex), row)) {
+                    append(operations, Kind.UPDATE, position, row);
+                }
+                itemIndex++;
+                rowIndex++;
+                position++;
+            }
+        }
+        return new CatalogueDiff(operations);
+    }
+
+    private static boolean needsUpdate(TreeItem<PackageLine> item, Row row) {
+        if (item.getValue() != row.line || item.isLeaf() != row.leaf) {
+            return true;
+        }
+        return item instanceof PackageTreeItem && ((PackageTreeItem) item).hasOutdatedChildren();
+    }
+
+    private static void append(List<Operation> operations, Kind kind, int position, Row row) {
+        Operation last = operations.isEmpty() ? null : operations.get(operations.size() - 1);
+        boolean contiguous = last != null && last.kind == kind
+                && position == (kind == Kind.REMOVE ? last.index : last.index + last.count);
+        Operation operation = contiguous ? last : new Operation(kind, position);
+        if (!contiguous) {
+            operations.add(operation);
+        }
+        operation.count++;
+        if (row != null) {
+            operation.rows.add(row);
+        }
+    }
+
+    List<Operation> operations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    boolean isEmpty() {
+        return operations.isEmpty();
+    }
+
+    /**
+     * Applies the operations to the given items, which must be the ones the diff was computed from.
+     *
+     * @param itemFactory creates the item of an inserted row
+     * @param updater updates a kept item to the given row
+     */
+    void applyTo(ObservableList<TreeItem<PackageLine>> items, Function<Row, TreeItem<PackageLine>> itemFactory,
+            BiConsumer<TreeItem<PackageLine>, Row> updater) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        if (operations.size() > BULK_OPERATIONS_THRESHOLD) {
+            List<TreeItem<PackageLine>> target = new ArrayList<>(items);
+            applyInSequence(target, itemFactory, updater);
+            items.setAll(target);
+        } else {
+            applyInSequence(items, itemFactory, updater);
+        }
+    }
+
+    private void applyInSequence(List<TreeItem<PackageLine>> target, Function<Row, TreeItem<PackageLine>> itemFactory,
+            BiConsumer<TreeItem<PackageLine>, Row> updater) {
+        for (Operation operation : operations) {
+            switch (operation.kind) {
+            case INSERT:
+                List<TreeItem<PackageLine>> inserted = new ArrayList<>(operation.count);
+                operation.rows.forEach(row -> inserted.add(itemFactory.apply(row)));
+                target.addAll(operation.index, inserted);
+                break;
+            case REMOVE:
+                target.subList(operation.index, operation.index + operation.count).clear();
+                break;
+            case UPDATE:
+                for (int i = 0; i < operation.count; i++) {
+                    updater.accept(target.get(operation.index + i), operation.rows.get(i));
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation.kind);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogueDiff " + operations;
+    }
+
+}
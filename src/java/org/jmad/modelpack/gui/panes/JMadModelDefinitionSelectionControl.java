@@ -8,9 +8,13 @@ import cern.accsoft.steering.jmad.domain.machine.RangeDefinition;
 import cern.accsoft.steering.jmad.domain.machine.SequenceDefinition;
 import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
 import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+import javafx.collections.ListChangeListener;
+import javafx.collections.transformation.FilteredList;
+import javafx.collections.transformation.SortedList;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.StackPane;
@@ -19,6 +23,7 @@ import org.jmad.modelpack.gui.domain.JMadModelSelectionType;
 import org.jmad.modelpack.gui.domain.ModelPackSelectionState;
 import org.jmad.modelpack.gui.util.GuiUtils;
 
+import java.util.Set;
 import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
@@ -78,11 +83,42 @@ public class JMadModelDefinitionSelectionControl extends AnchorPane {
         rangeCombo.getSelectionModel().selectedItemProperty().addListener(onChange(state.selectedRangeProperty()::set));
         state.selectedRangeProperty().addListener(onChange(rangeCombo.getSelectionModel()::select));
 
-        ListView<OpticsDefinition> opticsDefinitions = new ListView<>();
-        opticsDefinitions.itemsProperty().bind(state.availableOpticsProperty());
-        opticsDefinitions.getSelectionModel().selectedItemProperty().addListener(onChange(state.selectedOpticsProperty()::set));
+        OpticsNameIndex opticsIndex = new OpticsNameIndex();
+        FilteredList<OpticsDefinition> filteredOptics = new FilteredList<>(state.availableOpticsProperty());
+        SortedList<OpticsDefinition> shownOptics = new SortedList<>(filteredOptics);
+        ListView<OpticsDefinition> opticsDefinitions = new ListView<>(shownOptics);
+        opticsDefinitions.getSelectionModel().selectedItemProperty().addListener(onChange(selected -> {
+            OpticsDefinition selectedOptics = state.selectedOpticsProperty().get();
+            if (selected == null && selectedOptics != null && !shownOptics.contains(selectedOptics)) {
+                /* only hidden by the filter, it is still the selected one */
+                return;
+            }
+            state.selectedOpticsProperty().set(selected);
+        }));
         state.selectedOpticsProperty().addListener(onChange(opticsDefinitions.getSelectionModel()::select));
 
+        TextField opticsFilter = new TextField();
+        opticsFilter.setPromptText("Filter optics...");
+        Consumer<String> opticsFilterUpdater = query -> {
+            Set<OpticsDefinition> matches = opticsIndex.matches(query);
+            filteredOptics.setPredicate(matches == null ? null : matches::contains);
+            shownOptics.setComparator(matches == null ? null : opticsIndex.order(query));
+            OpticsDefinition selectedOptics = state.selectedOpticsProperty().get();
+            if (selectedOptics != null && shownOptics.contains(selectedOptics)) {
+                opticsDefinitions.getSelectionModel().select(selectedOptics);
+            }
+        };
+        opticsFilter.textProperty().addListener(onChange(opticsFilterUpdater));
+        state.availableOpticsProperty().addListener((ListChangeListener<OpticsDefinition>) change -> {
+            opticsIndex.reset(state.availableOpticsProperty());
+            opticsFilterUpdater.accept(opticsFilter.getText());
+        });
+        opticsIndex.reset(state.availableOpticsProperty());
+
+        VBox opticsSelection = new VBox(opticsFilter, opticsDefinitions);
+        opticsSelection.setSpacing(GuiUtils.DEFAULT_SPACING);
+        VBox.setVgrow(opticsDefinitions, Priority.ALWAYS);
+
         StackPane sequenceControlContainer = new StackPane();
         StackPane rangeControlContainer = new StackPane();
         StackPane opticsDefinitionControlContainer = new StackPane();
@@ -95,7 +131,7 @@ public class JMadModelDefinitionSelectionControl extends AnchorPane {
             if (type == JMadModelSelectionType.ALL) {
                 sequenceControlContainer.getChildren().add(sequenceCombo);
                 rangeControlContainer.getChildren().add(rangeCombo);
-                opticsDefinitionControlContainer.getChildren().add(opticsDefinitions);
+                opticsDefinitionControlContainer.getChildren().add(opticsSelection);
             } else if(type == JMadModelSelectionType.MODEL_DEFINITION_ONLY) {
                 sequenceControlContainer.getChildren().add(new Label("ALL"));
                 rangeControlContainer.getChildren().add(new Label("ALL"));
@@ -109,7 +145,7 @@ public class JMadModelDefinitionSelectionControl extends AnchorPane {
         VBox box = new VBox();
         box.setPadding(DEFAULT_SPACING_INSETS);
         box.setFillWidth(true);
-        VBox.setVgrow(opticsDefinitions, Priority.ALWAYS);
+        VBox.setVgrow(opticsDefinitionControlContainer, Priority.ALWAYS);
         box.getChildren().add(new Label("Sequence:"));
         box.getChildren().add(sequenceControlContainer);
         box.getChildren().add(new Label("Range:"));
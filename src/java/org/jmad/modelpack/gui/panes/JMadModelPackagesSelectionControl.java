@@ -6,15 +6,16 @@ package org.jmad.modelpack.gui.panes;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.SetMultimap;
-import com.google.common.collect.TreeMultimap;
-import javafx.beans.binding.Bindings;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.value.ChangeListener;
 import javafx.geometry.Insets;
 import javafx.scene.control.Button;
+import javafx.scene.control.TextField;
 import javafx.scene.control.TitledPane;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeTableColumn;
+import javafx.scene.control.TreeTableRow;
 import javafx.scene.control.TreeTableView;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.HBox;
@@ -25,24 +26,40 @@ import javafx.scene.text.FontWeight;
 import org.controlsfx.control.ToggleSwitch;
 import org.jmad.modelpack.domain.ModelPackage;
 import org.jmad.modelpack.domain.ModelPackageVariant;
-import org.jmad.modelpack.domain.ModelPackages;
-import org.jmad.modelpack.domain.Variant;
+import org.jmad.modelpack.domain.VariantType;
+import org.jmad.modelpack.gui.domain.ModelDefinitionPrefetcher;
 import org.jmad.modelpack.gui.domain.ModelPackSelectionState;
+import org.jmad.modelpack.gui.domain.PackageCatalogue;
+import org.jmad.modelpack.gui.domain.PackageCatalogueSnapshotStore;
+import org.jmad.modelpack.gui.domain.PackageSearchIndex;
+import org.jmad.modelpack.gui.domain.PackageStatus;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
 import org.jmad.modelpack.gui.util.FxUtils;
 import org.jmad.modelpack.service.JMadModelPackageService;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.time.Duration;
+import reactor.core.Disposable;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
-import static freetimelabs.io.reactorfx.schedulers.FxSchedulers.fxThread;
 import static java.util.Comparator.comparing;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static javafx.scene.layout.HBox.setHgrow;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.PACKAGES_TABLE_UPDATE;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.TAG_OPERATION;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
 import static org.jmad.modelpack.gui.util.FxUtils.glueToAnchorPane;
 import static org.jmad.modelpack.gui.util.FxUtils.onChange;
 import static org.jmad.modelpack.gui.util.FxUtils.setPercentageWidth;
@@ -51,56 +68,169 @@ import static org.jmad.modelpack.gui.util.GuiUtils.DEFAULT_SPACING;
 
 public class JMadModelPackagesSelectionControl extends AnchorPane {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(JMadModelPackagesSelectionControl.class);
-    private static final Duration AVAILABLE_PACKAGES_REFRESH_TIMEOUT = Duration.ofSeconds(30);
-    private static final Duration CLEAR_CACHE_TIMEOUT = Duration.ofSeconds(30);
     private static final int OPTIONS_PANE_PREF_WIDTH = 120;
-
-    private final JMadModelPackageService packageService;
+    private static final String TITLE = "Model Packages";
+    static final Comparator<ModelPackage> PACKAGE_ORDER = PackageCatalogue.PACKAGE_ORDER;
+    static final Comparator<ModelPackageVariant> PACKAGE_LINE_ORDER = comparing(ModelPackageVariant::modelPackage,
+            PACKAGE_ORDER);
+    static final Comparator<ModelPackageVariant> VARIANT_ORDER = PackageCatalogue.VARIANT_ORDER;
+
+    private final PackageCatalogue catalogue;
+    /* the catalogue was created for this control only, so it is disposed with it */
+    private final boolean ownedCatalogue;
     private final ModelPackSelectionState state;
+    private final ModelSelectionMetrics metrics;
+    /* the variants of the shared catalogue, read only */
+    private final SetMultimap<ModelPackage, ModelPackageVariant> map;
 
     private final VariantTypeFilterControl filterControl;
     private final TreeItem<PackageLine> packagesTableRoot;
-    private final SetMultimap<ModelPackage, ModelPackageVariant> map;
     private final SectionPane contentPane;
-
+    private final TreeTableView<PackageLine> packagesTable;
+    private final TextField searchField;
+    private final ObjectProperty<ModelDefinitionPrefetcher> prefetcher = new SimpleObjectProperty<>();
+    private final Disposable catalogueSubscription;
+    /* registered on the properties of the shared catalogue, so removed on disposal */
+    private final ChangeListener<String> titleUpdater = onChange(this::updateTitle);
+    private final ChangeListener<Boolean> loadingUpdater = onChange(this::updateLoading);
+    private final ChangeListener<ModelPackageVariant> selectedPackageUpdater = onChange(this::showSelectedPackage);
+
+    /* one line per variant shown at least once in the table, kept across table rebuilds */
+    private final Map<ModelPackageVariant, PackageLine> lines = new HashMap<>();
+
+    private String searchQuery = "";
+    /* variants matching the search query, or null when there is no search */
+    private Set<ModelPackageVariant> searchResults;
+    /* version of the search index when the search results were computed */
+    private long searchIndexVersion;
+    /* the table is updated by the control, so its selection changes are not a selection of the user */
+    private boolean updatingTable;
+
+    /**
+     * @deprecated the package service is then called on the shared {@link Schedulers#boundedElastic()} scheduler. Use
+     *             {@link #JMadModelPackagesSelectionControl(JMadModelPackageService, ModelPackSelectionState,
+     *             Scheduler)} instead.
+     */
+    @Deprecated
     public JMadModelPackagesSelectionControl(JMadModelPackageService packageService, ModelPackSelectionState state) {
-        this.packageService = requireNonNull(packageService, "packageService must not be null");
+        this(packageService, state, Schedulers.boundedElastic());
+    }
+
+    /**
+     * Creates the control with a catalogue of its own, which is disposed with it.
+     *
+     * @param ioScheduler the scheduler on which the package service is called
+     */
+    public JMadModelPackagesSelectionControl(JMadModelPackageService packageService, ModelPackSelectionState state,
+            Scheduler ioScheduler) {
+        this(new PackageCatalogue(packageService, state.definitionsCache(), ioScheduler,
+                PackageCatalogueSnapshotStore.disabled(), PackageCatalogue.DEFAULT_PACKAGES_BATCH_WINDOW,
+                PackageCatalogue.DEFAULT_PACKAGES_BATCH_MAX_SIZE, ModelSelectionMetrics.noop(), Optional.empty()),
+                true, state, ModelSelectionMetrics.noop());
+    }
+
+    /**
+     * @param catalogue the catalogue of packages, that can be shared with other controls. The control shows it until
+     *            it is {@link #dispose() disposed}.
+     */
+    public JMadModelPackagesSelectionControl(PackageCatalogue catalogue, ModelPackSelectionState state,
+            ModelSelectionMetrics metrics) {
+        this(catalogue, false, state, metrics);
+    }
+
+    private JMadModelPackagesSelectionControl(PackageCatalogue catalogue, boolean ownedCatalogue,
+            ModelPackSelectionState state, ModelSelectionMetrics metrics) {
+        this.catalogue = requireNonNull(catalogue, "catalogue must not be null");
+        this.ownedCatalogue = ownedCatalogue;
         this.state = requireNonNull(state, "modelpack selection state must not be null");
-        map = TreeMultimap.create(comparing(ModelPackage::name), ModelPackages.latestFirstPackageVariantComparator());
+        this.metrics = requireNonNull(metrics, "metrics must not be null");
+        map = catalogue.packages();
         filterControl = new VariantTypeFilterControl();
         packagesTableRoot = new TreeItem<>(new PackageLine());
 
         Region optionsPane = createPackagesOptionsPane(state);
-        TreeTableView<PackageLine> packagesTable = createPackagesSelectionTable(state);
+        packagesTable = createPackagesSelectionTable(state);
 
-        HBox box = new HBox(optionsPane, packagesTable);
+        searchField = new TextField();
+        searchField.setPromptText("Search packages, variants, model definitions, optics...");
+        searchField.textProperty().addListener(onChange(this::updateSearch));
+
+        VBox tableBox = new VBox(searchField, packagesTable);
+        tableBox.setSpacing(DEFAULT_SPACING);
+        tableBox.setFillWidth(true);
+        VBox.setVgrow(packagesTable, Priority.ALWAYS);
+
+        HBox box = new HBox(optionsPane, tableBox);
         box.setSpacing(DEFAULT_SPACING);
         box.setPadding(new Insets(DEFAULT_SPACING));
         box.setFillHeight(true);
-        setHgrow(packagesTable, Priority.ALWAYS);
+        setHgrow(tableBox, Priority.ALWAYS);
 
-        contentPane = new SectionPane("Model Packages");
+        contentPane = new SectionPane(TITLE);
         contentPane.setContent(box);
         glueToAnchorPane(contentPane);
         getChildren().add(contentPane);
 
-        updatePackages();
+        catalogue.statusTextProperty().addListener(titleUpdater);
+        catalogue.browsableProperty().addListener(loadingUpdater);
+        state.catalogueLoadingProperty().bind(catalogue.loadingProperty());
+        state.bindOnlineModeTo(catalogue);
+        /* the table follows the selected package, which stays pending while its row is not shown */
+        state.selectedPackageProperty().addListener(selectedPackageUpdater);
+
+        catalogueSubscription = catalogue.subscribe(new CatalogueListener());
+        FxUtils.runAsyncOnFxThread(() -> {
+            /* the catalogue may already be (partially) retrieved */
+            updateTitle(catalogue.statusTextProperty().get());
+            updateLoading(catalogue.browsableProperty().get());
+            updatePackagesTableView();
+        });
 
         this.filterControl.variantFilterProperty().addListener(onChange(v -> updatePackagesTableView()));
+        this.prefetcher.addListener((obs, oldPrefetcher, newPrefetcher) -> {
+            if (oldPrefetcher != null) {
+                oldPrefetcher.cancelAll();
+            }
+        });
+    }
+
+    /**
+     * Optional prefetcher of model definitions. When set, the definitions of the visible and hovered rows, as well as
+     * of the latest releases, are resolved in the background so that selecting them is usually instant.
+     */
+    public ObjectProperty<ModelDefinitionPrefetcher> prefetcherProperty() {
+        return prefetcher;
+    }
+
+    /**
+     * Stops following the catalogue, and disposes it if it was created with the control. The control must not be used
+     * anymore afterwards.
+     */
+    public void dispose() {
+        catalogueSubscription.dispose();
+        catalogue.statusTextProperty().removeListener(titleUpdater);
+        catalogue.browsableProperty().removeListener(loadingUpdater);
+        state.catalogueLoadingProperty().unbind();
+        state.catalogueLoadingProperty().set(false);
+        state.unbindOnlineModeFrom(catalogue);
+        state.selectedPackageProperty().removeListener(selectedPackageUpdater);
+        if (ownedCatalogue) {
+            catalogue.dispose();
+        }
     }
 
     private VBox createPackagesOptionsPane(ModelPackSelectionState state) {
         Button refreshButton = new Button("Refresh");
+        Button fullRefreshButton = new Button("Full refresh");
         Button clearCacheButton = new Button("Clear cache");
 
         ToggleSwitch onlineSwitch = new ToggleSwitch("Online");
         onlineSwitch.setSelected(state.onlineModeProperty().get());
-        onlineSwitch.selectedProperty().addListener(onChange(state.onlineModeProperty()::set));
-        onlineSwitch.selectedProperty().addListener(onChange(v -> updatePackages()));
+        onlineSwitch.selectedProperty().bindBidirectional(state.onlineModeProperty());
 
-        refreshButton.setOnAction(e -> updatePackages());
-        clearCacheButton.setOnAction(e -> clearCache());
+        refreshButton.setOnAction(e -> catalogue.refresh());
+        fullRefreshButton.setOnAction(e -> catalogue.fullRefresh());
+        clearCacheButton.setOnAction(e -> catalogue.clearCache());
 
         TitledPane variantFilters = new TitledPane("Filters", filterControl);
         variantFilters.setCollapsible(false);
@@ -112,6 +242,7 @@ public class JMadModelPackagesSelectionControl extends AnchorPane {
         box.getChildren().add(variantFilters);
         box.getChildren().add(wrapAndGlueToAnchorPane(onlineSwitch));
         box.getChildren().add(wrapAndGlueToAnchorPane(refreshButton));
+        box.getChildren().add(wrapAndGlueToAnchorPane(fullRefreshButton));
         box.getChildren().add(FxUtils.createVerticalFiller());
         box.getChildren().add(wrapAndGlueToAnchorPane(clearCacheButton));
         box.setFillWidth(true);
@@ -126,119 +257,381 @@ public class JMadModelPackagesSelectionControl extends AnchorPane {
         TreeTableColumn<PackageLine, String> variantColumn = new TreeTableColumn<>("Variant");
         variantColumn.setCellValueFactory(param -> param.getValue().getValue().variantProperty());
 
+        TreeTableColumn<PackageLine, String> statusColumn = new TreeTableColumn<>("Status");
+        statusColumn.setCellValueFactory(param -> param.getValue().getValue().statusProperty());
+
         TreeTableView<PackageLine> packagesTable = new TreeTableView<>(packagesTableRoot);
         packagesTable.setShowRoot(false);
-        packagesTable.getColumns().setAll(packageColumn, variantColumn);
+        packagesTable.setRowFactory(table -> createPrefetchingRow());
+        packagesTable.getColumns().setAll(Arrays.asList(packageColumn, variantColumn, statusColumn));
 
-        selectionModel.selectedPackageProperty().bind(Bindings.createObjectBinding(() -> {
-            TreeItem<PackageLine> treeItem = packagesTable.getSelectionModel().selectedItemProperty().get();
-            if (treeItem == null) {
-                return null;
+        packagesTable.getSelectionModel().selectedItemProperty().addListener(onChange(treeItem -> {
+            if (!updatingTable) {
+                selectionModel.selectedPackageProperty()
+                        .set(treeItem == null ? null : treeItem.getValue().modelPackageVariant());
             }
-            return treeItem.getValue().modelPackageVariant;
-        }, packagesTable.getSelectionModel().selectedItemProperty()));
+        }));
 
-        setPercentageWidth(packagesTable, ImmutableMap.of(packageColumn, 0.7, variantColumn, 0.3));
+        setPercentageWidth(packagesTable, ImmutableMap.of(packageColumn, 0.6, variantColumn, 0.3, statusColumn, 0.1));
         return packagesTable;
     }
 
-    private void clearCache() {
-        packageService.clearCache().doOnSubscribe(s -> showLoading()).subscribeOn(fxThread())
-                .publishOn(fxThread()).timeout(CLEAR_CACHE_TIMEOUT).doOnError(e -> {
-                    LOGGER.error("Error while clearing the service cache", e);
-            hideLoading();
-        }).doOnSuccess(v -> hideLoading()).subscribe();
+    private TreeTableRow<PackageLine> createPrefetchingRow() {
+        TreeTableRow<PackageLine> row = new TreeTableRow<>();
+        row.itemProperty().addListener((obs, oldLine, newLine) -> {
+            ModelDefinitionPrefetcher activePrefetcher = prefetcher.get();
+            if (activePrefetcher == null) {
+                return;
+            }
+            if (oldLine != null && oldLine.modelPackageVariant() != null) {
+                activePrefetcher.cancel(oldLine.modelPackageVariant());
+            }
+            if (newLine != null && newLine.modelPackageVariant() != null) {
+                activePrefetcher.prefetch(newLine.modelPackageVariant());
+            }
+        });
+        row.hoverProperty().addListener(onChange(hovered -> {
+            ModelDefinitionPrefetcher activePrefetcher = prefetcher.get();
+            PackageLine line = row.getItem();
+            if (hovered && activePrefetcher != null && line != null && line.modelPackageVariant() != null) {
+                activePrefetcher.prefetch(line.modelPackageVariant());
+            }
+        }));
+        return row;
     }
 
-    private void updatePackages() {
-        // this.refreshButton.setDisable(true);
-        this.clearPackages();
+    private void prefetchLatestReleases() {
+        ModelDefinitionPrefetcher activePrefetcher = prefetcher.get();
+        if (activePrefetcher == null) {
+            return;
+        }
         // @formatter:off
-        this.packageService.availablePackages()
-                .doOnSubscribe(s -> showLoading())
-                .publishOn(fxThread())
-                .subscribeOn(fxThread())
-                .timeout(AVAILABLE_PACKAGES_REFRESH_TIMEOUT)
-                .doOnComplete(this::hideLoading)
-                .doOnError(e -> {
-                    LOGGER.error("Error while retrieving available packages", e);
-                    hideLoading();
-                })
-                .subscribe(this::addPackage);
+        map.asMap().values().stream()
+                .map(variants -> variants.stream().filter(v -> v.variant().type() == VariantType.RELEASE).findFirst())
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .limit(activePrefetcher.latestReleasesCount())
+                .forEach(activePrefetcher::prefetch);
         // @formatter:on
     }
 
-    private void hideLoading() {
-        state.loadingProperty().set(false);
-        contentPane.hideLoading();
+    /**
+     * @return the number of refreshes and cache clearings of the catalogue that were cancelled because a newer one was
+     *         started
+     */
+    public long cancelledRequestsCount() {
+        return catalogue.cancelledRequestsCount();
     }
 
-    private void showLoading() {
-        state.loadingProperty().set(true);
-        contentPane.showLoading();
+    private void updateTitle(String statusText) {
+        contentPane.setTitle(statusText.isEmpty() ? TITLE : TITLE + " (" + statusText + ")");
+    }
+
+    private void updateLoading(boolean browsable) {
+        if (browsable) {
+            contentPane.hideLoading();
+        } else {
+            contentPane.showLoading();
+        }
     }
 
-    private void addPackage(ModelPackageVariant line) {
-        this.map.put(line.modelPackage(), line);
+    private void addPackages(List<ModelPackageVariant> variants) {
+        Predicate<ModelPackageVariant> visibleLinesFilter = visibleLinesFilter();
+        updatingTable = true;
+        try {
+            for (ModelPackageVariant variant : variants) {
+                if (searchResults != null && catalogue.searchIndex().matches(variant, searchQuery)) {
+                    searchResults.add(variant);
+                }
+                if (visibleLinesFilter.test(variant)) {
+                    insertTreeItem(variant);
+                }
+            }
+        } finally {
+            updatingTable = false;
+        }
+        /* the row of a pending selection may just have been received */
+        followSelectedPackage();
+    }
+
+    private void removePackages(Collection<ModelPackageVariant> variants) {
+        for (ModelPackageVariant variant : variants) {
+            lines.remove(variant);
+            if (searchResults != null) {
+                searchResults.remove(variant);
+            }
+        }
+        updatePackagesTableView();
+    }
+
+    private Predicate<ModelPackageVariant> visibleLinesFilter() {
+        Predicate<ModelPackageVariant> variantFilter = filterControl.variantFilterProperty().get();
+        if (searchResults == null) {
+            return variantFilter;
+        }
+        return variantFilter.and(searchResults::contains);
+    }
+
+    /**
+     * Updates the search results for the given query. When the query only extends the previous one (the usual case
+     * when typing) and the index did not change in between, the previous results are refined instead of querying the
+     * whole index again.
+     */
+    private void updateSearch(String query) {
+        String trimmedQuery = query == null ? "" : query.trim();
+        PackageSearchIndex searchIndex = catalogue.searchIndex();
+        /* read before searching: a concurrent update then only causes a full search next time */
+        long indexVersion = searchIndex.version();
+        boolean refinable = searchResults != null && indexVersion == searchIndexVersion;
+        if (trimmedQuery.isEmpty()) {
+            searchResults = null;
+        } else if (refinable && trimmedQuery.startsWith(searchQuery)) {
+            searchResults = searchIndex.refine(searchResults, trimmedQuery);
+        } else {
+            searchResults = searchIndex.search(trimmedQuery);
+        }
+        searchQuery = trimmedQuery;
+        searchIndexVersion = indexVersion;
         updatePackagesTableView();
     }
 
+    private PackageLine lineFor(ModelPackageVariant variant) {
+        return lines.computeIfAbsent(variant, v -> {
+            PackageLine line = new PackageLine(v);
+            line.setStatus(catalogue.statusOf(v));
+            return line;
+        });
+    }
+
+    private void updateStatus(ModelPackageVariant variant, PackageStatus status) {
+        PackageLine line = lines.get(variant);
+        if (line != null) {
+            line.setStatus(status);
+        }
+    }
+
+    /**
+     * Inserts the given variant at its sorted position, reusing the tree items already in the table. The package item
+     * always shows the latest visible variant, so a variant sorting before it takes its place and pushes the previous
+     * one down to the first child. Child items are only touched if the package item is expanded.
+     */
+    private void insertTreeItem(ModelPackageVariant variant) {
+        List<TreeItem<PackageLine>> packageItems = this.packagesTableRoot.getChildren();
+        int packageIndex = binarySearch(packageItems, variant, PACKAGE_LINE_ORDER);
+        if (packageIndex < 0) {
+            packageItems.add(-packageIndex - 1, packageTreeItem(variant.modelPackage(), lineFor(variant), true));
+            return;
+        }
+
+        PackageTreeItem packageItem = (PackageTreeItem) packageItems.get(packageIndex);
+        int headComparison = VARIANT_ORDER.compare(variant, packageItem.getValue().modelPackageVariant());
+        if (headComparison == 0) {
+            /* the item was kept from the previous catalogue */
+            return;
+        }
+        packageItem.variantAdded();
+        if (headComparison < 0) {
+            boolean headSelected = packagesTable.getSelectionModel().getSelectedItem() == packageItem;
+            PackageLine previousHead = packageItem.getValue();
+            packageItem.setValue(lineFor(variant));
+            if (packageItem.isMaterialized()) {
+                packageItem.getChildren().add(0, new TreeItem<>(previousHead));
+            }
+            if (headSelected) {
+                packageItem.setExpanded(true);
+                packagesTable.getSelectionModel().select(packageItem.getChildren().get(0));
+            }
+            return;
+        }
+
+        if (packageItem.isMaterialized()) {
+            List<TreeItem<PackageLine>> variantItems = packageItem.getChildren();
+            int variantIndex = binarySearch(variantItems, variant, VARIANT_ORDER);
+            if (variantIndex < 0) {
+                variantItems.add(-variantIndex - 1, new TreeItem<>(lineFor(variant)));
+            }
+        }
+    }
+
+    /**
+     * The catalogue is retrieved again: the table is kept as it is, the rows that are received again are reused, and
+     * the others are removed by {@link #reconcileTableWithCatalogue()} once the catalogue is complete.
+     */
     private void clearPackages() {
-        this.map.clear();
-        this.packagesTableRoot.getChildren().clear();
+        this.lines.values().forEach(line -> line.setStatus(PackageStatus.LIVE));
+        if (this.searchResults != null) {
+            this.searchResults.clear();
+        }
+    }
+
+    private void reconcileTableWithCatalogue() {
+        updatePackagesTableView();
+        lines.keySet().retainAll(new HashSet<>(map.values()));
     }
 
+    /**
+     * Brings the table up to date with the catalogue and the filters. Only the rows that differ are inserted, removed
+     * or updated (see {@link CatalogueDiff}), so that the expansion, selection and scroll position are kept.
+     */
     private void updatePackagesTableView() {
-        List<TreeItem<PackageLine>> treeItems = treeItemsFor(this.map, filterControl.variantFilterProperty().get());
-        this.packagesTableRoot.getChildren().setAll(treeItems);
+        long start = System.nanoTime();
+        List<CatalogueDiff.Row> rows = rowsFor(this.map, visibleLinesFilter(), this::lineFor);
+        CatalogueDiff diff = CatalogueDiff.between(this.packagesTableRoot.getChildren(), rows, PACKAGE_LINE_ORDER);
+        updatingTable = true;
+        try {
+            diff.applyTo(this.packagesTableRoot.getChildren(),
+                    row -> packageTreeItem(row.line().modelPackageVariant().modelPackage(), row.line(), row.leaf()),
+                    (item, row) -> ((PackageTreeItem) item).update(row.line(), row.leaf()));
+        } finally {
+            updatingTable = false;
+        }
+        followSelectedPackage();
+        metrics.recordDuration(PACKAGES_TABLE_UPDATE, elapsedSince(start), TAG_OPERATION, "diff");
     }
 
-    private static List<TreeItem<PackageLine>> treeItemsFor(SetMultimap<ModelPackage, ModelPackageVariant> packages,
-            Predicate<ModelPackageVariant> filter) {
-        // @formatter:off
-        return packages.keySet().stream().map(modelPackage -> {
-            Set<ModelPackageVariant> packageVariants = packages.get(modelPackage);
-            return packageVariants.stream().filter(filter).map(PackageLine::new).collect(toList());
-        }).filter(pkgLines -> !pkgLines.isEmpty())
-          .map(variants -> {
-              TreeItem<PackageLine> item = new TreeItem<>(variants.get(0));
-              List<TreeItem<PackageLine>> children = variants.subList(1, variants.size()).stream().map(TreeItem::new).collect(toList());
-              item.getChildren().setAll(children);
-              return item;
-        })
-        .collect(toList());
-        // @formatter:on
+    /**
+     * Shows the package selected in the state, e.g. restored from a recent selection. A search hiding its row is
+     * cleared; the row is then selected as soon as it is shown.
+     */
+    private void showSelectedPackage(ModelPackageVariant variant) {
+        if (variant != null && searchResults != null && !searchResults.contains(variant)) {
+            /* updates the table, which then follows the selected package */
+            searchField.clear();
+            return;
+        }
+        followSelectedPackage();
     }
 
-    private static class PackageLine {
+    /**
+     * Selects the row of the package selected in the state. If the row is not shown (not retrieved yet, filtered out),
+     * the table selection is cleared and the selection stays pending in the state until the row is shown.
+     */
+    private void followSelectedPackage() {
+        ModelPackageVariant selectedVariant = state.selectedPackageProperty().get();
+        boolean followed = selectedVariant == null ? packagesTable.getSelectionModel().isEmpty()
+                : isSelected(selectedVariant);
+        if (followed) {
+            return;
+        }
+        updatingTable = true;
+        try {
+            packagesTable.getSelectionModel().clearSelection();
+            if (selectedVariant != null) {
+                select(selectedVariant);
+            }
+        } finally {
+            updatingTable = false;
+        }
+    }
 
-        private final ModelPackageVariant modelPackageVariant;
-        private final StringProperty packageName = new SimpleStringProperty();
-        private final StringProperty variant = new SimpleStringProperty();
+    private boolean isSelected(ModelPackageVariant variant) {
+        TreeItem<PackageLine> selectedItem = packagesTable.getSelectionModel().getSelectedItem();
+        return selectedItem != null && variant.equals(selectedItem.getValue().modelPackageVariant());
+    }
 
-        private PackageLine(ModelPackageVariant variant) {
-            this.modelPackageVariant = requireNonNull(variant, "modelPackageVariant must not be null");
-            this.packageName.set(variant.modelPackage().name());
-            this.variant.set(stringFor(variant.variant()));
+    /**
+     * Selects the row of the given variant, expanding its package if needed. The selection is left unchanged if the
+     * variant is not shown (not retrieved yet, filtered out).
+     *
+     * @return true if the row of the variant is selected
+     */
+    private boolean select(ModelPackageVariant variant) {
+        int packageIndex = binarySearch(this.packagesTableRoot.getChildren(), variant, PACKAGE_LINE_ORDER);
+        if (packageIndex < 0) {
+            return false;
         }
+        TreeItem<PackageLine> packageItem = this.packagesTableRoot.getChildren().get(packageIndex);
+        if (VARIANT_ORDER.compare(variant, packageItem.getValue().modelPackageVariant()) == 0) {
+            packagesTable.getSelectionModel().select(packageItem);
+            return true;
+        }
+        boolean wasExpanded = packageItem.isExpanded();
+        packageItem.setExpanded(true);
+        int variantIndex = binarySearch(packageItem.getChildren(), variant, VARIANT_ORDER);
+        if (variantIndex < 0) {
+            packageItem.setExpanded(wasExpanded);
+            return false;
+        }
+        packagesTable.getSelectionModel().select(packageItem.getChildren().get(variantIndex));
+        return true;
+    }
 
-        private static String stringFor(Variant variant) {
-            return variant.name() + " [" + variant.type() + "]";
+    private static int binarySearch(List<TreeItem<PackageLine>> items, ModelPackageVariant key,
+            Comparator<ModelPackageVariant> order) {
+        int low = 0;
+        int high = items.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int comparison = order.compare(items.get(mid).getValue().modelPackageVariant(), key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
         }
+        return -(low + 1);
+    }
 
-        private PackageLine() {
-            this.modelPackageVariant = null;
-            /* empty strings */
+    /**
+     * @return the rows of the package items: the head of each package with at least one visible variant, in package
+     *         order
+     */
+    static List<CatalogueDiff.Row> rowsFor(SetMultimap<ModelPackage, ModelPackageVariant> packages,
+            Predicate<ModelPackageVariant> filter, Function<ModelPackageVariant, PackageLine> lineFactory) {
+        List<CatalogueDiff.Row> rows = new ArrayList<>();
+        for (ModelPackage modelPackage : packages.keySet()) {
+            /* only the head and whether there is more than one visible variant are needed until expansion */
+            List<ModelPackageVariant> firstVisibleVariants = packages.get(modelPackage).stream().filter(filter)
+                    .limit(2).collect(toList());
+            if (!firstVisibleVariants.isEmpty()) {
+                rows.add(new CatalogueDiff.Row(lineFactory.apply(firstVisibleVariants.get(0)),
+                        firstVisibleVariants.size() == 1));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * The items are kept across filter changes, so their visible variants are evaluated with the filter at the time
+     * they are expanded.
+     */
+    private PackageTreeItem packageTreeItem(ModelPackage modelPackage, PackageLine head, boolean leaf) {
+        return new PackageTreeItem(head, leaf, () -> map.get(modelPackage).stream().filter(visibleLinesFilter())
+                .map(this::lineFor).collect(toList()));
+    }
+
+    /**
+     * Applies the changes of the catalogue to the table
+     */
+    private class CatalogueListener implements PackageCatalogue.Listener {
+
+        @Override
+        public void packagesAdded(List<ModelPackageVariant> variants) {
+            addPackages(variants);
         }
 
-        private StringProperty packageNameProperty() {
-            return this.packageName;
+        @Override
+        public void packagesRemoved(Collection<ModelPackageVariant> variants) {
+            removePackages(variants);
         }
 
-        private StringProperty variantProperty() {
-            return this.variant;
+        @Override
+        public void statusChanged(ModelPackageVariant variant, PackageStatus status) {
+            updateStatus(variant, status);
         }
 
+        @Override
+        public void catalogueCleared() {
+            clearPackages();
+        }
+
+        @Override
+        public void catalogueUpdated() {
+            reconcileTableWithCatalogue();
+            prefetchLatestReleases();
+        }
     }
 
 }
@@ -7,6 +7,8 @@ package org.jmad.modelpack.gui.panes;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import freetimelabs.io.reactorfx.schedulers.FxSchedulers;
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.ObjectBinding;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import javafx.beans.property.SimpleStringProperty;
@@ -18,9 +20,15 @@ import javafx.scene.control.TableView;
 import javafx.scene.control.cell.CheckBoxTableCell;
 import javafx.scene.layout.BorderPane;
 import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.gui.domain.RepositoryFetchStatus;
+import org.jmad.modelpack.gui.domain.RepositoryHealth;
+import org.jmad.modelpack.gui.domain.RepositoryStatuses;
 import org.jmad.modelpack.gui.util.FxUtils;
 import org.jmad.modelpack.service.JMadModelPackageRepositoryManager;
 import org.jmad.modelpack.service.JMadModelPackageRepositoryManager.EnableState;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.Comparator;
 import java.util.List;
@@ -32,9 +40,32 @@ import static java.util.stream.Collectors.toList;
 public class JMadModelRepositorySelectionControl extends BorderPane {
 
     private final JMadModelPackageRepositoryManager manager;
-
+    private final Scheduler ioScheduler;
+    private final RepositoryStatuses repositoryStatuses;
+
+    /**
+     * @deprecated the repository manager is then called on the shared {@link Schedulers#boundedElastic()} scheduler.
+     *             Use {@link #JMadModelRepositorySelectionControl(JMadModelPackageRepositoryManager, Scheduler)}
+     *             instead.
+     */
+    @Deprecated
     public JMadModelRepositorySelectionControl(JMadModelPackageRepositoryManager manager) {
+        this(manager, Schedulers.boundedElastic());
+    }
+
+    public JMadModelRepositorySelectionControl(JMadModelPackageRepositoryManager manager, Scheduler ioScheduler) {
+        this(manager, ioScheduler, new RepositoryStatuses());
+    }
+
+    /**
+     * @param repositoryStatuses the statuses of the retrieval of the packages and the health of each repository,
+     *            shown next to them
+     */
+    public JMadModelRepositorySelectionControl(JMadModelPackageRepositoryManager manager, Scheduler ioScheduler,
+            RepositoryStatuses repositoryStatuses) {
         this.manager = requireNonNull(manager, "manager must not be null");
+        this.ioScheduler = requireNonNull(ioScheduler, "ioScheduler must not be null");
+        this.repositoryStatuses = requireNonNull(repositoryStatuses, "repositoryStatuses must not be null");
 
         ObservableList<RepoLine> repos = FXCollections.observableArrayList();
         TableView<RepoLine> repositoryView = new TableView<>(repos);
@@ -50,16 +81,34 @@ public class JMadModelRepositorySelectionControl extends BorderPane {
         baseUrlCol.setEditable(false);
         baseUrlCol.setResizable(true);
 
-        repositoryView.getColumns().addAll(ImmutableList.of(enabledCol, baseUrlCol));
+        TableColumn<RepoLine, String> statusCol = new TableColumn<>("Status");
+        statusCol.setCellValueFactory(r -> r.getValue().status);
+
+        TableColumn<RepoLine, String> latencyCol = new TableColumn<>("Latency");
+        latencyCol.setCellValueFactory(r -> r.getValue().latency);
 
-        FxUtils.setPercentageWidth(repositoryView, ImmutableMap.of(enabledCol, 0.1, baseUrlCol, 0.9));
+        TableColumn<RepoLine, String> packagesCol = new TableColumn<>("Packages");
+        packagesCol.setCellValueFactory(r -> r.getValue().packageCount);
+
+        TableColumn<RepoLine, String> healthCol = new TableColumn<>("Health");
+        healthCol.setCellValueFactory(r -> r.getValue().health);
+        /* only probed repositories have a health, i.e. if the prober is enabled */
+        healthCol.visibleProperty().bind(Bindings.isNotEmpty(repositoryStatuses.health()));
+
+        repositoryView.getColumns()
+                .addAll(ImmutableList.of(enabledCol, baseUrlCol, statusCol, latencyCol, packagesCol, healthCol));
+
+        FxUtils.setPercentageWidth(repositoryView, ImmutableMap.<TableColumn<?, ?>, Double> builder()
+                .put(enabledCol, 0.1).put(baseUrlCol, 0.35).put(statusCol, 0.1).put(latencyCol, 0.1)
+                .put(packagesCol, 0.1).put(healthCol, 0.25).build());
 
         setCenter(repositoryView);
 
         // @formatter:off
         manager.state()
-            .map(this::repoList)
+            .subscribeOn(ioScheduler)
             .publishOn(FxSchedulers.fxThread())
+            .map(this::repoList)
             .subscribe(repos::setAll);
         // @formatter:on
 
@@ -74,20 +123,68 @@ public class JMadModelRepositorySelectionControl extends BorderPane {
         // @formatter:on
     }
 
+    private static String statusText(RepositoryFetchStatus fetchStatus) {
+        if (fetchStatus == null) {
+            return "";
+        }
+        return fetchStatus.state().name().toLowerCase();
+    }
+
+    private static String latencyText(RepositoryFetchStatus fetchStatus) {
+        if (fetchStatus == null) {
+            return "";
+        }
+        return fetchStatus.latency().map(l -> l.toMillis() + " ms").orElse("");
+    }
+
+    private static String packageCountText(RepositoryFetchStatus fetchStatus) {
+        if (fetchStatus == null || fetchStatus.state() == RepositoryFetchStatus.State.FETCHING) {
+            return "";
+        }
+        return String.valueOf(fetchStatus.packageCount());
+    }
+
+    private static String healthText(RepositoryHealth repoHealth) {
+        if (repoHealth == null || !repoHealth.probeTime().isPresent()) {
+            return "";
+        }
+        if (!repoHealth.isReachable()) {
+            return "unreachable (" + repoHealth.consecutiveFailures() + "x)";
+        }
+        String latency = repoHealth.latency().map(l -> l.toMillis() + " ms").orElse("");
+        String slow = repoHealth.consecutiveSlowProbes() > 0 ? "slow (" + repoHealth.consecutiveSlowProbes() + "x)"
+                : "ok";
+        String packages = repoHealth.packageCount().isPresent()
+                ? ", " + repoHealth.packageCount().getAsInt() + " packages"
+                : "";
+        return slow + ", " + latency + packages;
+    }
+
     private class RepoLine {
         private final BooleanProperty enabled = new SimpleBooleanProperty();
         private final StringProperty stringRepresentation = new SimpleStringProperty();
+        private final StringProperty status = new SimpleStringProperty();
+        private final StringProperty latency = new SimpleStringProperty();
+        private final StringProperty packageCount = new SimpleStringProperty();
+        private final StringProperty health = new SimpleStringProperty();
 
         private RepoLine(JMadModelPackageRepository repo, boolean enabled) {
             stringRepresentation.set(repo.toString());
+            ObjectBinding<RepositoryFetchStatus> fetchStatus = Bindings.valueAt(repositoryStatuses.fetchStatuses(),
+                    repo);
+            ObjectBinding<RepositoryHealth> repoHealth = Bindings.valueAt(repositoryStatuses.health(), repo);
+            health.bind(Bindings.createStringBinding(() -> healthText(repoHealth.get()), repoHealth));
+            status.bind(Bindings.createStringBinding(() -> statusText(fetchStatus.get()), fetchStatus));
+            latency.bind(Bindings.createStringBinding(() -> latencyText(fetchStatus.get()), fetchStatus));
+            packageCount.bind(Bindings.createStringBinding(() -> packageCountText(fetchStatus.get()), fetchStatus));
             this.enabled.set(enabled);
-            this.enabled.addListener(FxUtils.onChange(n -> {
+            this.enabled.addListener(FxUtils.onChange(n -> Mono.fromRunnable(() -> {
                 if (n) {
                     manager.enable(repo);
                 } else {
                     manager.disable(repo);
                 }
-            }));
+            }).subscribeOn(ioScheduler).subscribe()));
         }
 
     }
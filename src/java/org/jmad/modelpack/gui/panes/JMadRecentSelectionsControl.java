@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ListProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleListProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.FXCollections;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.MenuItem;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.MouseButton;
+import javafx.scene.paint.Color;
+import org.controlsfx.glyphfont.FontAwesome;
+import org.controlsfx.glyphfont.Glyph;
+import org.controlsfx.glyphfont.GlyphFontRegistry;
+import org.jmad.modelpack.gui.domain.ModelPackSelectionState;
+import org.jmad.modelpack.gui.domain.ModelSelectionCoordinates;
+import org.jmad.modelpack.gui.domain.RecentSelections;
+import org.jmad.modelpack.gui.util.LatestRequestSubscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Quick-pick list of the recent and pinned selections. Clicking one selects it again in the
+ * {@link ModelPackSelectionState} (and so in the packages table); double clicking it (or pressing enter) also confirms
+ * it. Hidden while there is no recent or pinned selection.
+ */
+public class JMadRecentSelectionsControl extends SectionPane {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JMadRecentSelectionsControl.class);
+    private static final double LIST_HEIGHT = 120;
+
+    private final ModelPackSelectionState state;
+    private final ObjectProperty<RecentSelections> recentSelections = new SimpleObjectProperty<>();
+    private final ListProperty<ModelSelectionCoordinates> shownSelections = new SimpleListProperty<>();
+    private final LatestRequestSubscription restoreRequest = new LatestRequestSubscription();
+    private Runnable onConfirm = () -> {
+        /* nothing to confirm by default */
+    };
+
+    public JMadRecentSelectionsControl(ModelPackSelectionState state) {
+        super("Recent and pinned selections");
+        this.state = requireNonNull(state, "state must not be null");
+
+        shownSelections.bind(Bindings.createObjectBinding(() -> recentSelections.get() == null
+                ? FXCollections.emptyObservableList()
+                : recentSelections.get().selections(), recentSelections));
+
+        ListView<ModelSelectionCoordinates> selectionsView = new ListView<>(shownSelections);
+        selectionsView.setPrefHeight(LIST_HEIGHT);
+        selectionsView.setCellFactory(v -> new SelectionCell());
+        selectionsView.setOnMouseClicked(event -> {
+            if (event.getButton() == MouseButton.PRIMARY) {
+                pick(selectionsView.getSelectionModel().getSelectedItem(), event.getClickCount() > 1);
+            }
+        });
+        selectionsView.setOnKeyPressed(event -> {
+            if (event.getCode() == KeyCode.ENTER) {
+                pick(selectionsView.getSelectionModel().getSelectedItem(), true);
+            }
+        });
+        setContent(selectionsView);
+
+        visibleProperty().bind(shownSelections.emptyProperty().not());
+        managedProperty().bind(visibleProperty());
+    }
+
+    /**
+     * The recent and pinned selections to show. Nothing is shown if null.
+     */
+    public ObjectProperty<RecentSelections> recentSelectionsProperty() {
+        return recentSelections;
+    }
+
+    /**
+     * @param onConfirm run once a selection picked with a double click (or enter) is selected again
+     */
+    public void setOnConfirm(Runnable onConfirm) {
+        this.onConfirm = requireNonNull(onConfirm, "onConfirm must not be null");
+    }
+
+    public void dispose() {
+        restoreRequest.cancel();
+    }
+
+    private void pick(ModelSelectionCoordinates selection, boolean confirm) {
+        if (selection == null) {
+            return;
+        }
+        restoreRequest.subscribeLatest(() -> state.restore(selection).subscribe(restored -> {
+            if (restored && confirm) {
+                onConfirm.run();
+            }
+        }, e -> LOGGER.warn("Selection {} could not be restored", selection.displayText(), e)));
+    }
+
+    private class SelectionCell extends ListCell<ModelSelectionCoordinates> {
+
+        @Override
+        protected void updateItem(ModelSelectionCoordinates item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                setText(null);
+                setGraphic(null);
+                setContextMenu(null);
+                return;
+            }
+
+            setText(item.displayText());
+            setGraphic(item.isPinned() ? pinGlyph() : null);
+
+            MenuItem pinItem = new MenuItem(item.isPinned() ? "Unpin" : "Pin");
+            pinItem.setOnAction(event -> recentSelections.get().setPinned(item, !item.isPinned()));
+            MenuItem removeItem = new MenuItem("Remove");
+            removeItem.setOnAction(event -> recentSelections.get().remove(item));
+            setContextMenu(new ContextMenu(pinItem, removeItem));
+        }
+
+        private Glyph pinGlyph() {
+            Glyph glyph = GlyphFontRegistry.font("FontAwesome").create(FontAwesome.Glyph.THUMB_TACK);
+            glyph.setColor(Color.GRAY);
+            return glyph;
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+import org.jmad.modelpack.gui.util.GramIndex;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Comparator.comparingInt;
+import static org.jmad.modelpack.gui.util.GramIndex.normalize;
+
+/**
+ * Case-insensitive index over the names of the optics of one model definition, for the type-ahead filter of the optics
+ * list (see {@link GramIndex}). A query extending the previous one (i.e. one more keystroke) only re-checks the optics
+ * that matched the previous query.
+ * <p>
+ * Optics whose name starts with the query come first in the {@link #order(String) order} of the matches.
+ */
+final class OpticsNameIndex {
+
+    private final GramIndex<OpticsDefinition> index = GramIndex.identityBased();
+    private final Map<OpticsDefinition, String> names = new IdentityHashMap<>();
+    private final Map<OpticsDefinition, Integer> positions = new IdentityHashMap<>();
+
+    private String lastQuery = "";
+    /* the optics matching the last query, null if it was empty */
+    private Set<OpticsDefinition> lastMatches;
+
+    void reset(List<? extends OpticsDefinition> optics) {
+        index.clear();
+        names.clear();
+        positions.clear();
+        lastQuery = "";
+        lastMatches = null;
+        for (OpticsDefinition opticsDefinition : optics) {
+            index.add(opticsDefinition, opticsDefinition.getName());
+            names.put(opticsDefinition, normalize(opticsDefinition.getName()));
+            positions.put(opticsDefinition, positions.size());
+        }
+    }
+
+    /**
+     * @return the optics whose name contains the given query, or null if the query is empty (i.e. all of them match)
+     */
+    Set<OpticsDefinition> matches(String query) {
+        String normalizedQuery = normalize(query).trim();
+        if (normalizedQuery.isEmpty()) {
+            lastMatches = null;
+        } else if (lastMatches != null && normalizedQuery.startsWith(lastQuery)) {
+            lastMatches = index.refine(lastMatches, normalizedQuery);
+        } else {
+            lastMatches = index.matching(normalizedQuery, null);
+        }
+        lastQuery = normalizedQuery;
+        return lastMatches;
+    }
+
+    /**
+     * @return the order of the optics matching the given query: the ones starting with it first, and then as in the
+     *         indexed list
+     */
+    Comparator<OpticsDefinition> order(String query) {
+        String normalizedQuery = normalize(query).trim();
+        return comparingInt((OpticsDefinition o) -> names.getOrDefault(o, "").startsWith(normalizedQuery) ? 0 : 1)
+                .thenComparingInt(o -> positions.getOrDefault(o, Integer.MAX_VALUE));
+    }
+
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.Variant;
+import org.jmad.modelpack.gui.domain.PackageStatus;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * One line of the packages table: a variant of a model package. Lines are kept for as long as their variant is in the
+ * catalogue, so they are kept small: the texts of the cells are only computed (and the observable values only created)
+ * when the line is displayed.
+ */
+class PackageLine {
+
+    /* the same variant names (e.g. "master [BRANCH]") occur in many packages */
+    private static final Interner<String> VARIANT_TEXTS = Interners.newWeakInterner();
+
+    private final ModelPackageVariant modelPackageVariant;
+    private PackageStatus status = PackageStatus.LIVE;
+    private String variantText;
+    /* only created once the status cell of the line is displayed, then kept up to date */
+    private ReadOnlyStringWrapper statusText;
+
+    PackageLine(ModelPackageVariant variant) {
+        this.modelPackageVariant = requireNonNull(variant, "modelPackageVariant must not be null");
+    }
+
+    PackageLine() {
+        this.modelPackageVariant = null;
+        /* empty strings */
+    }
+
+    private static String stringFor(Variant variant) {
+        return VARIANT_TEXTS.intern(variant.name() + " [" + variant.type() + "]");
+    }
+
+    ModelPackageVariant modelPackageVariant() {
+        return this.modelPackageVariant;
+    }
+
+    String packageName() {
+        return modelPackageVariant == null ? "" : modelPackageVariant.modelPackage().name();
+    }
+
+    String variantText() {
+        if (variantText == null) {
+            variantText = modelPackageVariant == null ? "" : stringFor(modelPackageVariant.variant());
+        }
+        return variantText;
+    }
+
+    PackageStatus status() {
+        return status;
+    }
+
+    /**
+     * @return a new read-only value of the package name, for a table cell
+     */
+    ReadOnlyStringProperty packageNameProperty() {
+        return new ReadOnlyStringWrapper(packageName()).getReadOnlyProperty();
+    }
+
+    /**
+     * @return a new read-only value of the variant text, for a table cell
+     */
+    ReadOnlyStringProperty variantProperty() {
+        return new ReadOnlyStringWrapper(variantText()).getReadOnlyProperty();
+    }
+
+    ReadOnlyStringProperty statusProperty() {
+        if (statusText == null) {
+            statusText = new ReadOnlyStringWrapper(status.text());
+        }
+        return statusText.getReadOnlyProperty();
+    }
+
+    void setStatus(PackageStatus status) {
+        this.status = requireNonNull(status, "status must not be null");
+        if (statusText != null) {
+            statusText.set(status.text());
+        }
+    }
+
+}
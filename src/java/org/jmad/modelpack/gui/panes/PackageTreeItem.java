@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import javafx.event.Event;
+import javafx.scene.control.TreeItem;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.toList;
+import static org.jmad.modelpack.gui.util.FxUtils.onChange;
+
+/**
+ * Tree item of a model package in the packages table. Its value is the latest visible variant of the package; the
+ * other visible variants only become child items when the item is expanded, and are released again when it is
+ * collapsed. Memory and construction time of the table therefore only depend on the expanded packages.
+ */
+class PackageTreeItem extends TreeItem<PackageLine> {
+
+    private final Supplier<List<PackageLine>> visibleLines;
+    private boolean leaf;
+    private boolean materialized;
+
+    /**
+     * @param head the line of the latest visible variant of the package
+     * @param leaf true if the head is the only visible variant of the package
+     * @param visibleLines supplies the lines of all the visible variants of the package (including the head), latest
+     *            first
+     */
+    PackageTreeItem(PackageLine head, boolean leaf, Supplier<List<PackageLine>> visibleLines) {
+        super(head);
+        this.leaf = leaf;
+        this.visibleLines = visibleLines;
+        expandedProperty().addListener(onChange(expanded -> {
+            if (expanded) {
+                materialize();
+            } else {
+                release();
+            }
+        }));
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return materialized ? getChildren().isEmpty() : leaf;
+    }
+
+    /**
+     * @return true if the child items currently exist (the item is expanded)
+     */
+    boolean isMaterialized() {
+        return materialized;
+    }
+
+    /**
+     * @return true if the child items exist and are not the lines of the currently visible variants anymore
+     */
+    boolean hasOutdatedChildren() {
+        if (!materialized) {
+            return false;
+        }
+        List<PackageLine> lines = visibleLines.get();
+        List<TreeItem<PackageLine>> children = getChildren();
+        if (children.size() != Math.max(0, lines.size() - 1)) {
+            return true;
+        }
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i).getValue() != lines.get(i + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Notifies this item that one more of its variants became visible
+     */
+    void variantAdded() {
+        if (leaf) {
+            leaf = false;
+            Event.fireEvent(this, new TreeModificationEvent<>(valueChangedEvent(), this, getValue()));
+        }
+    }
+
+    /**
+     * Brings this item up to date with the given head and the currently visible variants of its package. Only what
+     * differs is changed, so that the item and its child items keep their expansion and selection.
+     *
+     * @param leaf true if the head is the only visible variant of the package
+     */
+    void update(PackageLine head, boolean leaf) {
+        if (getValue() != head) {
+            setValue(head);
+        }
+        if (materialized) {
+            List<PackageLine> lines = visibleLines.get();
+            List<CatalogueDiff.Row> childRows = lines.subList(Math.min(1, lines.size()), lines.size()).stream()
+                    .map(line -> new CatalogueDiff.Row(line, true)).collect(toList());
+            CatalogueDiff childrenDiff = CatalogueDiff.between(getChildren(), childRows,
+                    JMadModelPackagesSelectionControl.VARIANT_ORDER);
+            childrenDiff.applyTo(getChildren(), row -> new TreeItem<>(row.line()),
+                    (item, row) -> item.setValue(row.line()));
+        } else if (this.leaf != leaf) {
+            this.leaf = leaf;
+            Event.fireEvent(this, new TreeModificationEvent<>(valueChangedEvent(), this, getValue()));
+        }
+    }
+
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+        List<PackageLine> lines = visibleLines.get();
+        materialized = true;
+        getChildren().setAll(lines.subList(Math.min(1, lines.size()), lines.size()).stream().map(TreeItem::new)
+                .collect(toList()));
+    }
+
+    private void release() {
+        if (!materialized) {
+            return;
+        }
+        leaf = getChildren().isEmpty();
+        materialized = false;
+        getChildren().clear();
+    }
+
+}
@@ -33,19 +33,9 @@ public class VariantTypeFilterControl extends VBox {
     private final ObjectProperty<Predicate<ModelPackageVariant>> predicate = new SimpleObjectProperty<>(pv -> true);
 
     {
-        ObjectBinding<Predicate<ModelPackageVariant>> objectBinding = Bindings.createObjectBinding(() -> pv -> {
-            VariantType variant = pv.variant().type();
-            if ((RELEASE == variant) && !showReleases.get()) {
-                return false;
-            }
-            if ((TAG == variant) && !showTags.get()) {
-                return false;
-            }
-            if ((BRANCH == variant) && !showBranches.get()) {
-                return false;
-            }
-            return true;
-        }, showTags, showReleases, showBranches);
+        ObjectBinding<Predicate<ModelPackageVariant>> objectBinding = Bindings.createObjectBinding(
+                () -> variantFilter(showReleases.get(), showTags.get(), showBranches.get()), showTags, showReleases,
+                showBranches);
 
         predicate.bind(objectBinding);
     }
@@ -74,6 +64,27 @@ public class VariantTypeFilterControl extends VBox {
         return predicate;
     }
 
+    /**
+     * Creates the predicate which is exposed by {@link #variantFilterProperty()} for the given check box states. Does
+     * not require the FX toolkit, so it can be evaluated outside of a running application.
+     */
+    static Predicate<ModelPackageVariant> variantFilter(boolean showReleases, boolean showTags,
+            boolean showBranches) {
+        return pv -> {
+            VariantType variant = pv.variant().type();
+            if ((RELEASE == variant) && !showReleases) {
+                return false;
+            }
+            if ((TAG == variant) && !showTags) {
+                return false;
+            }
+            if ((BRANCH == variant) && !showBranches) {
+                return false;
+            }
+            return true;
+        };
+    }
+
     private void addCheckBox(String text, BooleanProperty prop) {
         CheckBox checkBox = new CheckBox(text);
         checkBox.setSelected(prop.get());
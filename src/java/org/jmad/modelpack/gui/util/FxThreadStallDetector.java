@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.util;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javafx.application.Platform;
+
+/**
+ * Watchdog that detects when the FX thread is blocked for longer than a threshold, whatever blocks it (a long pulse, a
+ * slow listener or a slow runnable). A watchdog thread regularly posts a ping to the FX thread; if the ping is not run
+ * within the threshold, the stack of the FX thread is captured while it is still stalled and reported together with
+ * the first frame of this library found in it (the pane, listener or operator that caused the stall) once the FX
+ * thread is responsive again.
+ * <p>
+ * The overhead is one {@link Platform#runLater(Runnable)} per ping interval; stacks are only captured on stalls.
+ */
+public class FxThreadStallDetector {
+
+    public static final Duration DEFAULT_THRESHOLD = Duration.ofMillis(200);
+    public static final Duration DEFAULT_PING_INTERVAL = Duration.ofMillis(100);
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FxThreadStallDetector.class);
+    private static final String LIBRARY_PACKAGE = "org.jmad.modelpack.gui.";
+    private static final String REACTOR_PACKAGE = "reactor.core.publisher.";
+
+    private final long thresholdNanos;
+    private final long pingIntervalNanos;
+    private final Consumer<Stall> stallListener;
+
+    private ScheduledExecutorService watchdog;
+    private ScheduledFuture<?> checks;
+
+    /* all accessed from the watchdog thread only, except fxThread which is only written once */
+    private volatile Thread fxThread;
+    private volatile boolean pingPending;
+    private long pingPostedAt;
+    private StackTraceElement[] stalledStack;
+
+    public FxThreadStallDetector() {
+        this(DEFAULT_THRESHOLD, DEFAULT_PING_INTERVAL, FxThreadStallDetector::logStall);
+    }
+
+    /**
+     * @param stallListener called on the watchdog thread with each detected stall, once the FX thread is responsive
+     *            again
+     */
+    public FxThreadStallDetector(Duration threshold, Duration pingInterval, Consumer<Stall> stallListener) {
+        this.thresholdNanos = requireNonNull(threshold, "threshold must not be null").toNanos();
+        this.pingIntervalNanos = requireNonNull(pingInterval, "pingInterval must not be null").toNanos();
+        this.stallListener = requireNonNull(stallListener, "stallListener must not be null");
+        if (thresholdNanos <= 0 || pingIntervalNanos <= 0) {
+            throw new IllegalArgumentException("threshold and pingInterval must be positive");
+        }
+    }
+
+    /**
+     * Starts watching the FX thread. Does nothing if already started. If the FX toolkit is not initialized yet, the FX
+     * thread is watched once it runs.
+     */
+    public synchronized void start() {
+        if (watchdog != null) {
+            return;
+        }
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jmad-modelpack-fx-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checks = watchdog.scheduleWithFixedDelay(this::check, 0, pingIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void stop() {
+        if (watchdog == null) {
+            return;
+        }
+        checks.cancel(false);
+        watchdog.shutdownNow();
+        watchdog = null;
+    }
+
+    public synchronized boolean isStarted() {
+        return watchdog != null;
+    }
+
+    private void check() {
+        try {
+            long now = System.nanoTime();
+            if (!pingPending) {
+                if (stalledStack != null) {
+                    reportStall(Duration.ofNanos(now - pingPostedAt));
+                }
+                postPing(now);
+                return;
+            }
+            if (stalledStack == null && now - pingPostedAt > thresholdNanos && fxThread != null) {
+                /* captured while the FX thread is still stalled, so that it shows the culprit */
+                stalledStack = fxThread.getStackTrace();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error while watching the FX thread", e);
+        }
+    }
+
+    private void postPing(long now) {
+        pingPostedAt = now;
+        pingPending = true;
+        try {
+            Platform.runLater(() -> {
+                if (fxThread == null) {
+                    fxThread = Thread.currentThread();
+                }
+                pingPending = false;
+            });
+        } catch (IllegalStateException e) {
+            /* the toolkit is not (or no longer) running */
+            pingPending = false;
+        }
+    }
+
+    private void reportStall(Duration duration) {
+        Stall stall = new Stall(duration, stalledStack);
+        stalledStack = null;
+        stallListener.accept(stall);
+    }
+
+    /**
+     * Logs the given stall as a warning, including the stack of the FX thread.
+     */
+    public static void logStall(Stall stall) {
+        Throwable stack = new Throwable("FX thread stack while stalled");
+        stack.setStackTrace(stall.stack());
+        LOGGER.warn("FX thread stalled for at least {} ms in {}", stall.duration().toMillis(),
+                stall.culprit().map(StackTraceElement::toString).orElse("unknown code"), stack);
+    }
+
+    /**
+     * A period during which the FX thread did not process any event for longer than the threshold
+     */
+    public static final class Stall {
+
+        private final Duration duration;
+        private final StackTraceElement[] stack;
+
+        Stall(Duration duration, StackTraceElement[] stack) {
+            this.duration = duration;
+            this.stack = stack.clone();
+        }
+
+        /**
+         * @return the time from posting the ping until the FX thread was found responsive again. The stall lasted at
+         *         most this long
+         */
+        public Duration duration() {
+            return duration;
+        }
+
+        /**
+         * @return the stack of the FX thread, captured once the stall exceeded the threshold
+         */
+        public StackTraceElement[] stack() {
+            return stack.clone();
+        }
+
+        /**
+         * @return the innermost frame of this library in the stalled stack, i.e. the pane or listener that was
+         *         running, or else the innermost reactor operator frame
+         */
+        public Optional<StackTraceElement> culprit() {
+            Optional<StackTraceElement> libraryFrame = innermostFrameOf(LIBRARY_PACKAGE);
+            return libraryFrame.isPresent() ? libraryFrame : innermostFrameOf(REACTOR_PACKAGE);
+        }
+
+        private Optional<StackTraceElement> innermostFrameOf(String packagePrefix) {
+            return Arrays.stream(stack).filter(frame -> frame.getClassName().startsWith(packagePrefix))
+                    .filter(frame -> !isDetectorFrame(frame))
+                    .findFirst();
+        }
+
+        private static boolean isDetectorFrame(StackTraceElement frame) {
+            String detectorClassName = FxThreadStallDetector.class.getName();
+            return frame.getClassName().equals(detectorClassName)
+                    || frame.getClassName().startsWith(detectorClassName + "$");
+        }
+
+        @Override
+        public String toString() {
+            return "Stall [duration=" + duration + ", culprit=" + culprit().orElse(null) + "]";
+        }
+    }
+}
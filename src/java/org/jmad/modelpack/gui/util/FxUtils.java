@@ -67,6 +67,20 @@ public final class FxUtils {
         }
     }
 
+    /**
+     * Runs the given task on the Fx thread: immediately if called from it, later otherwise. Never blocks the caller.
+     */
+    public static void runAsyncOnFxThread(Runnable task) {
+        ensureFxInitialized();
+
+        if (Platform.isFxApplicationThread()) {
+            task.run();
+            return;
+        }
+
+        Platform.runLater(task);
+    }
+
     private Region createHorizontalFiller() {
         HBox verticalSpacer = new HBox();
         HBox.setHgrow(verticalSpacer, Priority.ALWAYS);
@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static java.util.Comparator.comparingInt;
+
+/**
+ * Case-insensitive n-gram index over the text of items, shared by the searches of the dialog. The text of an item is
+ * made of terms (e.g. the package and variant names); every 1-, 2- and 3-gram of every term points to the items
+ * containing it, so that a word is answered by intersecting the (small) posting sets of its grams and verifying the
+ * few candidates with a substring check. Not thread safe.
+ *
+ * @param <T> the type of the indexed items
+ */
+public final class GramIndex<T> {
+
+    private static final int GRAM_LENGTH = 3;
+    private static final char TERM_SEPARATOR = '\n';
+
+    private final Supplier<Set<T>> setFactory;
+    private final Map<T, String> texts;
+    private final Map<String, Set<T>> postings = new HashMap<>();
+
+    private GramIndex(Map<T, String> texts, Supplier<Set<T>> setFactory) {
+        this.texts = texts;
+        this.setFactory = setFactory;
+    }
+
+    /**
+     * @return an index whose items are told apart by {@link Object#equals(Object)}
+     */
+    public static <T> GramIndex<T> create() {
+        return new GramIndex<>(new HashMap<>(), HashSet::new);
+    }
+
+    /**
+     * @return an index whose items are told apart by identity, e.g. for items without a meaningful equals
+     */
+    public static <T> GramIndex<T> identityBased() {
+        return new GramIndex<>(new IdentityHashMap<>(), () -> Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    /**
+     * @return the given name in lower case, as indexed and searched. Null is an empty name.
+     */
+    public static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT).replace(TERM_SEPARATOR, ' ');
+    }
+
+    /**
+     * Indexes the given item with the given terms. Does nothing if the item is indexed already.
+     *
+     * @return true if the item was added
+     */
+    public boolean add(T item, String... terms) {
+        if (texts.containsKey(item)) {
+            return false;
+        }
+        String text = textOf(terms);
+        texts.put(item, text.substring(Math.min(1, text.length())));
+        indexGrams(item, text);
+        return true;
+    }
+
+    /**
+     * Adds the given terms to the ones of the given item. Does nothing if the item is not indexed.
+     *
+     * @return true if the item is indexed
+     */
+    public boolean extend(T item, String... terms) {
+        String text = texts.get(item);
+        if (text == null) {
+            return false;
+        }
+        String moreText = textOf(terms);
+        texts.put(item, text + moreText);
+        indexGrams(item, moreText);
+        return true;
+    }
+
+    /**
+     * @return true if the item was indexed
+     */
+    public boolean remove(T item) {
+        String text = texts.remove(item);
+        if (text == null) {
+            return false;
+        }
+        for (String gram : gramsOf(text)) {
+            Set<T> items = postings.get(gram);
+            if (items != null && items.remove(item) && items.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        postings.clear();
+        texts.clear();
+    }
+
+    /**
+     * @return the indexed items. The set is a view of the index.
+     */
+    public Set<T> items() {
+        return Collections.unmodifiableSet(texts.keySet());
+    }
+
+    public int size() {
+        return texts.size();
+    }
+
+    /**
+     * @param word a normalized word
+     * @return true if one of the terms of the given item contains the given word. False if the item is not indexed
+     */
+    public boolean contains(T item, String word) {
+        String text = texts.get(item);
+        return text != null && text.contains(word);
+    }
+
+    /**
+     * Iterates over the smallest posting set of the word grams (or the restriction, if smaller) and keeps the
+     * candidates that are in all the other sets and really contain the word.
+     *
+     * @param word a normalized, non-empty word
+     * @param restriction if not null, only these items are considered
+     * @return the items one of whose terms contains the given word
+     */
+    public Set<T> matching(String word, Set<T> restriction) {
+        List<Set<T>> wordPostings = new ArrayList<>();
+        if (word.length() <= GRAM_LENGTH) {
+            wordPostings.add(postings.getOrDefault(word, Collections.emptySet()));
+        } else {
+            for (int i = 0; i + GRAM_LENGTH <= word.length(); i++) {
+                wordPostings.add(postings.getOrDefault(word.substring(i, i + GRAM_LENGTH), Collections.emptySet()));
+            }
+        }
+        if (restriction != null) {
+            wordPostings.add(restriction);
+        }
+        wordPostings.sort(comparingInt(Set::size));
+
+        Set<T> matches = setFactory.get();
+        List<Set<T>> otherPostings = wordPostings.subList(1, wordPostings.size());
+        for (T candidate : wordPostings.get(0)) {
+            if (otherPostings.stream().allMatch(p -> p.contains(candidate)) && contains(candidate, word)) {
+                matches.add(candidate);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return the items of the given set one of whose terms contains the given word, without looking at the grams
+     */
+    public Set<T> refine(Set<T> items, String word) {
+        Set<T> matches = setFactory.get();
+        for (T item : items) {
+            if (contains(item, word)) {
+                matches.add(item);
+            }
+        }
+        return matches;
+    }
+
+    private void indexGrams(T item, String text) {
+        for (String gram : gramsOf(text)) {
+            postings.computeIfAbsent(gram, g -> setFactory.get()).add(item);
+        }
+    }
+
+    /**
+     * @return the normalized terms, each preceded by the separator, so that no term spans two of them
+     */
+    private static String textOf(String... terms) {
+        StringBuilder text = new StringBuilder();
+        for (String term : terms) {
+            if (term != null) {
+                text.append(TERM_SEPARATOR).append(normalize(term));
+            }
+        }
+        return text.toString();
+    }
+
+    private static Set<String> gramsOf(String text) {
+        Set<String> grams = new HashSet<>();
+        for (String term : text.split(String.valueOf(TERM_SEPARATOR))) {
+            for (int length = 1; length <= GRAM_LENGTH; length++) {
+                for (int i = 0; i + length <= term.length(); i++) {
+                    grams.add(term.substring(i, i + length));
+                }
+            }
+        }
+        return grams;
+    }
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.util;
+
+import reactor.core.Disposable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Holds the subscription of the latest of a sequence of requests (switch-map semantics): subscribing a new request
+ * first disposes the one still in flight, so that a slow, superseded request can never overwrite the result of a newer
+ * one. The number of requests cancelled this way is kept for monitoring.
+ */
+public final class LatestRequestSubscription {
+
+    private final AtomicLong cancelledCount = new AtomicLong();
+    private Disposable current;
+
+    /**
+     * Cancels the request in flight (if any) and then subscribes the new one using the given supplier.
+     */
+    public synchronized void subscribeLatest(Supplier<Disposable> subscription) {
+        cancel();
+        current = subscription.get();
+    }
+
+    /**
+     * Cancels the request in flight, if there is one. Requests that already terminated are not counted.
+     */
+    public synchronized void cancel() {
+        if (current != null && !current.isDisposed()) {
+            current.dispose();
+            cancelledCount.incrementAndGet();
+        }
+        current = null;
+    }
+
+    public long cancelledCount() {
+        return cancelledCount.get();
+    }
+
+}
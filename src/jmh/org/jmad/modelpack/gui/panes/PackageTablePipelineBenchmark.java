@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import static java.util.stream.Collectors.toList;
+import static org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl.PACKAGE_LINE_ORDER;
+import static org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl.PACKAGE_ORDER;
+import static org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl.VARIANT_ORDER;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.jmad.modelpack.domain.ModelPackage;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.TreeMultimap;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+
+/**
+ * Benchmarks the steps the packages table goes through for every catalogue refresh: sorting the variants into the
+ * package multimap, filtering them by type, creating the table lines, building the (collapsed) tree items and diffing
+ * them against the next catalogue state. Run with {@code ./gradlew jmh}, which also records the allocation rate
+ * through the gc profiler.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PackageTablePipelineBenchmark {
+
+    @Param({ "100", "1000", "10000", "100000" })
+    private int variantCount;
+
+    private List<ModelPackageVariant> variants;
+    private TreeMultimap<ModelPackage, ModelPackageVariant> packages;
+    private Predicate<ModelPackageVariant> releasesOnly;
+    private Predicate<ModelPackageVariant> allTypes;
+    private Map<ModelPackageVariant, PackageLine> lines;
+    private List<TreeItem<PackageLine>> releaseItems;
+
+    @Setup
+    public void setUp() {
+        variants = SyntheticCatalogue.ofSize(variantCount);
+        packages = packagesOf(variants);
+        releasesOnly = VariantTypeFilterControl.variantFilter(true, false, false);
+        allTypes = VariantTypeFilterControl.variantFilter(true, true, true);
+        lines = new HashMap<>();
+        releaseItems = buildTable(releasesOnly, this::lineFor);
+    }
+
+    @Benchmark
+    public TreeMultimap<ModelPackage, ModelPackageVariant> insertIntoPackagesMap() {
+        return packagesOf(variants);
+    }
+
+    @Benchmark
+    public void evaluateVariantTypeFilter(Blackhole blackhole) {
+        for (ModelPackageVariant variant : variants) {
+            blackhole.consume(releasesOnly.test(variant));
+        }
+    }
+
+    /**
+     * The normalized allocation reported by the gc profiler (gc.alloc.rate.norm), divided by the variant count, is the
+     * heap taken by each line of the table
+     */
+    @Benchmark
+    public List<PackageLine> createPackageLines() {
+        List<PackageLine> lines = new ArrayList<>(variants.size());
+        for (ModelPackageVariant variant : variants) {
+            lines.add(new PackageLine(variant));
+        }
+        return lines;
+    }
+
+    /**
+     * What a displayed line additionally allocates: the cell values of its three columns
+     */
+    @Benchmark
+    public void displayPackageLines(Blackhole blackhole) {
+        for (ModelPackageVariant variant : variants) {
+            PackageLine line = lineFor(variant);
+            blackhole.consume(line.packageNameProperty());
+            blackhole.consume(line.variantProperty());
+            blackhole.consume(line.statusProperty());
+        }
+    }
+
+    /**
+     * The first display of the table: the diff from an empty table inserts the (collapsed) package items
+     */
+    @Benchmark
+    public List<TreeItem<PackageLine>> buildTableForReleases() {
+        return buildTable(releasesOnly, PackageLine::new);
+    }
+
+    @Benchmark
+    public List<TreeItem<PackageLine>> buildTableForAllTypes() {
+        return buildTable(allTypes, PackageLine::new);
+    }
+
+    /**
+     * A refresh returning the same catalogue: the diff must be empty, so the table is not touched at all
+     */
+    @Benchmark
+    public CatalogueDiff diffUnchangedCatalogue() {
+        return CatalogueDiff.between(releaseItems,
+                JMadModelPackagesSelectionControl.rowsFor(packages, releasesOnly, this::lineFor), PACKAGE_LINE_ORDER);
+    }
+
+    @Benchmark
+    public CatalogueDiff diffShowingAllTypes() {
+        return CatalogueDiff.between(releaseItems,
+                JMadModelPackagesSelectionControl.rowsFor(packages, allTypes, this::lineFor), PACKAGE_LINE_ORDER);
+    }
+
+    /**
+     * Builds the package items the way the control does: through a {@link CatalogueDiff} applied to an empty table
+     */
+    private List<TreeItem<PackageLine>> buildTable(Predicate<ModelPackageVariant> filter,
+            Function<ModelPackageVariant, PackageLine> lineFactory) {
+        ObservableList<TreeItem<PackageLine>> items = FXCollections.observableArrayList();
+        List<CatalogueDiff.Row> rows = JMadModelPackagesSelectionControl.rowsFor(packages, filter, lineFactory);
+        CatalogueDiff.between(items, rows, PACKAGE_LINE_ORDER).applyTo(items,
+                row -> new PackageTreeItem(row.line(), row.leaf(), () -> visibleLines(row, filter, lineFactory)),
+                (item, row) -> ((PackageTreeItem) item).update(row.line(), row.leaf()));
+        return items;
+    }
+
+    private List<PackageLine> visibleLines(CatalogueDiff.Row row, Predicate<ModelPackageVariant> filter,
+            Function<ModelPackageVariant, PackageLine> lineFactory) {
+        ModelPackage modelPackage = row.line().modelPackageVariant().modelPackage();
+        return packages.get(modelPackage).stream().filter(filter).map(lineFactory).collect(toList());
+    }
+
+    private PackageLine lineFor(ModelPackageVariant variant) {
+        return lines.computeIfAbsent(variant, PackageLine::new);
+    }
+
+    private static TreeMultimap<ModelPackage, ModelPackageVariant> packagesOf(List<ModelPackageVariant> variants) {
+        TreeMultimap<ModelPackage, ModelPackageVariant> map = TreeMultimap.create(PACKAGE_ORDER, VARIANT_ORDER);
+        for (ModelPackageVariant variant : variants) {
+            map.put(variant.modelPackage(), variant);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.dialogs;
+
+import javafx.event.Event;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TreeTableView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.VariantType;
+import org.jmad.modelpack.gui.domain.ModelDefinitionCache;
+import org.jmad.modelpack.gui.domain.ModelPackSelectionState;
+import org.jmad.modelpack.gui.domain.ModelSelectionCoordinates;
+import org.jmad.modelpack.gui.domain.PackageCatalogue;
+import org.jmad.modelpack.gui.domain.PackageCatalogueSnapshotStore;
+import org.jmad.modelpack.gui.domain.RecentSelections;
+import org.jmad.modelpack.gui.domain.RecentSelectionsStore;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.jmad.modelpack.gui.panes.JMadModelDefinitionSelectionControl;
+import org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl;
+import org.jmad.modelpack.gui.panes.JMadModelRepositorySelectionControl;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelPackageService;
+import org.jmad.modelpack.gui.synthetic.SyntheticRepositoryManager;
+import org.jmad.modelpack.gui.util.FxUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testfx.util.WaitForAsyncUtils;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JMadModelSelectionDialogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SyntheticCatalogue syntheticCatalogue;
+    private PackageCatalogue catalogue;
+    private ModelPackSelectionState state;
+    private RecentSelections recentSelections;
+    private JMadModelPackagesSelectionControl packagesControl;
+    private JMadModelSelectionDialog dialog;
+
+    @BeforeClass
+    public static void initFx() {
+        FxUtils.ensureFxInitialized();
+    }
+
+    @Before
+    public void setUp() {
+        syntheticCatalogue = SyntheticCatalogue.builder().variants(40).variantsPerPackage(4).build();
+        SyntheticModelPackageService service = SyntheticModelPackageService.builder().catalogue(syntheticCatalogue)
+                .definitionsPerVariant(2).opticsPerDefinition(3).build();
+        SyntheticRepositoryManager repositoryManager = new SyntheticRepositoryManager(
+                syntheticCatalogue.repositories());
+        ModelDefinitionCache definitionsCache = new ModelDefinitionCache(service.asService());
+        catalogue = new PackageCatalogue(service.asService(), definitionsCache, Schedulers.boundedElastic(),
+                PackageCatalogueSnapshotStore.disabled(), Duration.ofMillis(16), 256, ModelSelectionMetrics.noop(),
+                Optional.empty());
+        state = new ModelPackSelectionState(service.asService(), definitionsCache, Schedulers.boundedElastic());
+        recentSelections = new RecentSelections(
+                new RecentSelectionsStore(folder.getRoot().toPath().resolve("recent-selections")),
+                Schedulers.boundedElastic());
+
+        /* wired as by the configuration */
+        FxUtils.runSyncOnFxThread(() -> {
+            packagesControl = new JMadModelPackagesSelectionControl(catalogue, state,
+                    ModelSelectionMetrics.noop());
+            dialog = new JMadModelSelectionDialog(
+                    new HBox(packagesControl, new JMadModelDefinitionSelectionControl(state)),
+                    new JMadModelRepositorySelectionControl(repositoryManager.asRepositoryManager(),
+                            Schedulers.boundedElastic()), state,
+                    packagesControl::dispose);
+            dialog.recentSelectionsProperty().set(recentSelections);
+        });
+        await("the catalogue to be retrieved", () -> onFx(() -> !catalogue.loadingProperty().get()
+                && catalogue.packages().size() == syntheticCatalogue.variantCount()));
+    }
+
+    @After
+    public void tearDown() {
+        FxUtils.runSyncOnFxThread(() -> {
+            dialog.close();
+            dialog.dispose();
+            recentSelections.dispose();
+        });
+    }
+
+    @Test
+    public void recordedSelectionIsConfirmedFromTheRecentSelections() {
+        ModelPackageVariant variant = variantsOfType(VariantType.RELEASE).get(1);
+        String modelName = variant.modelPackage().name() + "-" + variant.variant().name() + "-model-1";
+        record(new ModelSelectionCoordinates(variant, modelName, modelName + "-optics-2", modelName + "-sequence",
+                "ALL", false, Instant.now()));
+
+        FxUtils.runSyncOnFxThread(() -> {
+            dialog.show();
+            ListView<?> recentSelectionsView = (ListView<?>) ((VBox) dialog.getDialogPane().getContent())
+                    .getChildren().get(0).lookup(".list-view");
+            recentSelectionsView.getSelectionModel().select(0);
+            Event.fireEvent(recentSelectionsView,
+                    new KeyEvent(KeyEvent.KEY_PRESSED, "", "", KeyCode.ENTER, false, false, false, false));
+        });
+
+        await("the selection to be confirmed", () -> onFx(() -> dialog.getResult() != null));
+        assertThat(onFx(() -> dialog.getResult()).modelDefinition().getName()).isEqualTo(modelName);
+        assertThat(onFx(() -> state.selectedPackageProperty().get())).isEqualTo(variant);
+        assertThat(onFx(() -> state.selectedOpticsProperty().get().getName())).isEqualTo(modelName + "-optics-2");
+        assertThat(onFx(() -> state.selectedSequenceProperty().get().getName())).isEqualTo(modelName + "-sequence");
+        assertThat(onFx(() -> state.selectedRangeProperty().get().getName())).isEqualTo("ALL");
+    }
+
+    @Test
+    public void selectionOfAVariantNotShownIsRestoredAndPendingInTheTable() {
+        /* only the releases are shown by default */
+        ModelPackageVariant filteredOut = variantsOfType(VariantType.TAG).get(0);
+        String modelName = filteredOut.modelPackage().name() + "-" + filteredOut.variant().name() + "-model-1";
+        FxUtils.runSyncOnFxThread(() -> dialog.show());
+
+        boolean restored = restore(new ModelSelectionCoordinates(filteredOut, modelName, null, null, null, false,
+                Instant.now()));
+
+        assertThat(restored).isTrue();
+        assertThat(onFx(() -> state.selectedPackageProperty().get())).isEqualTo(filteredOut);
+        assertThat(onFx(() -> state.selectedModelDefinitionProperty().get().getName())).isEqualTo(modelName);
+        assertThat(onFx(() -> packagesTable().getSelectionModel().getSelectedItem())).isNull();
+    }
+
+    @Test
+    public void restoredSelectionClearsTheSearchHidingIt() {
+        List<ModelPackageVariant> releases = variantsOfType(VariantType.RELEASE);
+        ModelPackageVariant searched = releases.get(0);
+        ModelPackageVariant variant = releases.stream()
+                .filter(v -> !v.modelPackage().equals(searched.modelPackage())).findFirst().get();
+        String modelName = variant.modelPackage().name() + "-" + variant.variant().name() + "-model-0";
+        FxUtils.runSyncOnFxThread(() -> {
+            dialog.show();
+            searchField().setText(searched.modelPackage().name());
+        });
+
+        boolean restored = restore(new ModelSelectionCoordinates(variant, modelName, null, null, null, false,
+                Instant.now()));
+
+        assertThat(restored).isTrue();
+        assertThat(onFx(() -> searchField().getText())).isEmpty();
+        assertThat(onFx(() -> state.selectedPackageProperty().get())).isEqualTo(variant);
+        assertThat(onFx(() -> packagesTable().getSelectionModel().getSelectedItem())).isNotNull();
+    }
+
+    private TreeTableView<?> packagesTable() {
+        return (TreeTableView<?>) packagesControl.lookup(".tree-table-view");
+    }
+
+    private TextField searchField() {
+        return (TextField) packagesControl.lookup(".text-field");
+    }
+
+    private List<ModelPackageVariant> variantsOfType(VariantType type) {
+        return syntheticCatalogue.variants().stream().filter(v -> v.variant().type() == type).collect(toList());
+    }
+
+    private void record(ModelSelectionCoordinates selection) {
+        FxUtils.runSyncOnFxThread(() -> recentSelections.record(selection));
+        await("the selection to be recorded", () -> onFx(() -> !recentSelections.selections().isEmpty()));
+    }
+
+    private boolean restore(ModelSelectionCoordinates selection) {
+        CompletableFuture<Boolean> restored = new CompletableFuture<>();
+        FxUtils.runSyncOnFxThread(
+                () -> state.restore(selection).subscribe(restored::complete, restored::completeExceptionally));
+        try {
+            return restored.get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new AssertionError("Selection not restored", e);
+        }
+    }
+
+    private static <T> T onFx(Supplier<T> supplier) {
+        AtomicReference<T> result = new AtomicReference<>();
+        FxUtils.runSyncOnFxThread(() -> result.set(supplier.get()));
+        return result.get();
+    }
+
+    private static void await(String description, Callable<Boolean> condition) {
+        try {
+            WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, condition);
+        } catch (TimeoutException e) {
+            throw new AssertionError("Timed out waiting for " + description, e);
+        }
+    }
+
+}
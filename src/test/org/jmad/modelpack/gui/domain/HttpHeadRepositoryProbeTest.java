@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpHeadRepositoryProbeTest {
+
+    private final RepositoryProbe probe = RepositoryProbe.httpHead(Duration.ofSeconds(5));
+    private final List<String> requestMethods = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/repository", exchange -> respond(exchange, 200));
+        server.createContext("/api", exchange -> respond(exchange, 405));
+        server.createContext("/broken", exchange -> respond(exchange, 503));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void answeringRepositoryIsReachableWithoutPackageCount() {
+        assertThat(probe.probe(repository("/repository")).blockOptional()).isEmpty();
+        assertThat(requestMethods).containsExactly("HEAD");
+    }
+
+    @Test
+    public void repositoryRefusingTheRequestIsStillReachable() {
+        assertThat(probe.probe(repository("/api")).blockOptional()).isEmpty();
+    }
+
+    @Test
+    public void serverErrorFailsTheProbe() {
+        assertThatThrownBy(() -> probe.probe(repository("/broken")).block()).hasMessageContaining("503");
+    }
+
+    @Test
+    public void closedServerFailsTheProbe() {
+        JMadModelPackageRepository repository = repository("/repository");
+        server.stop(0);
+
+        assertThatThrownBy(() -> probe.probe(repository).block()).isNotNull();
+    }
+
+    @Test
+    public void onlyHttpRepositoriesAreProbed() {
+        assertThat(probe.canProbe(repository("/repository"))).isTrue();
+        assertThat(probe.canProbe(new JMadModelPackageRepository("https://gitlab.cern.ch", "gitlab", "gitlab")))
+                .isTrue();
+        assertThat(probe.canProbe(new JMadModelPackageRepository("file:///opt/models", "local", "local"))).isFalse();
+        assertThat(probe.canProbe(new JMadModelPackageRepository("not a url", "invalid", "invalid"))).isFalse();
+    }
+
+    private JMadModelPackageRepository repository(String path) {
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+        return new JMadModelPackageRepository(url, path, "test");
+    }
+
+    private void respond(HttpExchange exchange, int status) throws IOException {
+        requestMethods.add(exchange.getRequestMethod());
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelPackageService;
+import org.junit.Before;
+import org.junit.Test;
+
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+public class ModelDefinitionCacheTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private ModelPackageVariant variant;
+    private SyntheticModelPackageService service;
+    private ModelDefinitionCache cache;
+
+    @Before
+    public void setUp() {
+        SyntheticCatalogue catalogue = SyntheticCatalogue.builder().variants(4).build();
+        variant = catalogue.variants().get(0);
+        service = SyntheticModelPackageService.builder().catalogue(catalogue)
+                .definitionsLatency(Duration.ofMillis(200)).definitionsPerVariant(2).build();
+        cache = new ModelDefinitionCache(service.asService());
+    }
+
+    @Test
+    public void concurrentLoadsOfAVariantShareASingleRetrieval() {
+        Mono<List<JMadModelDefinition>> selection = cache.loadDefinitionsFrom(variant)
+                .subscribeOn(Schedulers.boundedElastic());
+        Mono<List<JMadModelDefinition>> prefetch = cache.loadDefinitionsFrom(variant)
+                .subscribeOn(Schedulers.boundedElastic());
+
+        List<List<JMadModelDefinition>> loaded = Mono.zip(selection, prefetch, (s, p) -> Arrays.asList(s, p))
+                .block(TIMEOUT);
+
+        assertThat(loaded.get(0)).hasSize(2).isSameAs(loaded.get(1));
+        assertThat(service.definitionsLoadsCount()).isEqualTo(1);
+        assertThat(cache.inFlightLoadsCount()).isZero();
+        assertThat(cache.isCached(variant)).isTrue();
+    }
+
+    @Test
+    public void completedLoadIsNotSharedWithTheNextOne() {
+        cache.loadDefinitionsFrom(variant).block(TIMEOUT);
+        cache.loadDefinitionsFrom(variant).block(TIMEOUT);
+
+        assertThat(service.definitionsLoadsCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void cancellingOneOfTheSharingLoadsDoesNotCancelTheOthers() {
+        Disposable prefetch = cache.loadDefinitionsFrom(variant).subscribe();
+        Mono<List<JMadModelDefinition>> selection = cache.loadDefinitionsFrom(variant).cache();
+        selection.subscribe();
+
+        prefetch.dispose();
+
+        assertThat(selection.block(TIMEOUT)).hasSize(2);
+        assertThat(service.definitionsLoadsCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void loadCancelledByAllItsSubscribersIsForgotten() {
+        Disposable prefetch = cache.loadDefinitionsFrom(variant).subscribe();
+        Disposable selection = cache.loadDefinitionsFrom(variant).subscribe();
+        assertThat(cache.inFlightLoadsCount()).isEqualTo(1);
+
+        prefetch.dispose();
+        selection.dispose();
+
+        assertThat(cache.inFlightLoadsCount()).isZero();
+        assertThat(cache.loadDefinitionsFrom(variant).block(TIMEOUT)).hasSize(2);
+        assertThat(service.definitionsLoadsCount()).isEqualTo(2);
+        assertThat(cache.isCached(variant)).isTrue();
+    }
+
+}
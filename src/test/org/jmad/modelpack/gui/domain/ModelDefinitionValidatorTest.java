@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmad.modelpack.gui.synthetic.SyntheticModelFiles.failingFileFinderManager;
+import static org.jmad.modelpack.gui.synthetic.SyntheticModelFiles.fileFinderManager;
+import static org.jmad.modelpack.gui.synthetic.SyntheticModelFiles.modelDefinition;
+import static org.jmad.modelpack.gui.synthetic.SyntheticModelFiles.modelFile;
+import static org.jmad.modelpack.gui.synthetic.SyntheticModelFiles.optics;
+import static org.jmad.modelpack.gui.synthetic.SyntheticModelFiles.range;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jmad.modelpack.gui.domain.ModelDefinitionValidation.State;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.junit.Test;
+
+import cern.accsoft.steering.jmad.domain.file.ModelFile;
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import cern.accsoft.steering.jmad.modeldefs.io.ModelFileFinderManager;
+import reactor.core.scheduler.Schedulers;
+
+public class ModelDefinitionValidatorTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final ModelFile modelInit = modelFile("init.madx");
+    private final ModelFile opticsInit = modelFile("optics.str");
+    private final ModelFile rangeFile = modelFile("range.madx");
+    private final JMadModelDefinition definition = modelDefinition("LHC 2018", modelInit);
+
+    @Test
+    public void allFilesFoundIsValid() {
+        Set<String> opened = ConcurrentHashMap.newKeySet();
+        ModelDefinitionValidator validator = validator(fileFinderManager(file -> {
+            opened.add(file.getName());
+            return stream();
+        }), 4, TIMEOUT);
+
+        ModelDefinitionValidation validation = validator
+                .validate(definition, optics("R2018a", opticsInit), range("ALL", rangeFile)).block();
+
+        assertThat(validation.state()).isEqualTo(State.VALID);
+        assertThat(validation.checkedFiles()).isEqualTo(3);
+        assertThat(validation.missingFiles()).isEmpty();
+        assertThat(validation.latency()).isPresent();
+        assertThat(opened).containsExactlyInAnyOrder("init.madx", "optics.str", "range.madx");
+    }
+
+    @Test
+    public void withoutOpticsAndRangeOnlyTheModelDefinitionFilesAreChecked() {
+        ModelDefinitionValidator validator = validator(fileFinderManager(file -> stream()), 4, TIMEOUT);
+
+        ModelDefinitionValidation validation = validator.validate(definition, null, null).block();
+
+        assertThat(validation.state()).isEqualTo(State.VALID);
+        assertThat(validation.checkedFiles()).isEqualTo(1);
+    }
+
+    @Test
+    public void fileReferencedTwiceIsCheckedOnce() {
+        AtomicInteger opened = new AtomicInteger();
+        ModelDefinitionValidator validator = validator(fileFinderManager(file -> {
+            opened.incrementAndGet();
+            return stream();
+        }), 4, TIMEOUT);
+
+        ModelDefinitionValidation validation = validator
+                .validate(definition, optics("R2018a", modelInit), range("ALL", modelInit)).block();
+
+        assertThat(validation.checkedFiles()).isEqualTo(1);
+        assertThat(opened).hasValue(1);
+    }
+
+    @Test
+    public void missingAndUnreadableFilesMakeItInvalid() {
+        ModelDefinitionValidator validator = validator(fileFinderManager(file -> {
+            if (file == opticsInit) {
+                return null;
+            }
+            if (file == rangeFile) {
+                throw new UncheckedIOException(new IOException("permission denied"));
+            }
+            return stream();
+        }), 4, TIMEOUT);
+
+        ModelDefinitionValidation validation = validator
+                .validate(definition, optics("R2018a", opticsInit), range("ALL", rangeFile)).block();
+
+        assertThat(validation.state()).isEqualTo(State.INVALID);
+        assertThat(validation.checkedFiles()).isEqualTo(3);
+        assertThat(validation.missingFiles()).containsExactlyInAnyOrder("optics.str",
+                "range.madx (permission denied)");
+    }
+
+    @Test
+    public void failingFileFinderIsAFailedValidation() {
+        ModelDefinitionValidator validator = validator(
+                failingFileFinderManager(new IllegalStateException("no finder for this model definition")), 4,
+                TIMEOUT);
+
+        ModelDefinitionValidation validation = validator.validate(definition, null, null).block();
+
+        assertThat(validation.state()).isEqualTo(State.FAILED);
+        assertThat(validation.error()).hasValueSatisfying(e -> assertThat(e).contains("no finder"));
+    }
+
+    @Test
+    public void checkThatTakesTooLongIsAFailedValidation() {
+        ModelDefinitionValidator validator = validator(fileFinderManager(file -> {
+            sleep(Duration.ofSeconds(2));
+            return stream();
+        }), 4, Duration.ofMillis(100));
+
+        ModelDefinitionValidation validation = validator.validate(definition, null, null).block();
+
+        assertThat(validation.state()).isEqualTo(State.FAILED);
+        assertThat(validation.error()).hasValueSatisfying(e -> assertThat(e).contains("Timeout"));
+    }
+
+    @Test
+    public void filesAreCheckedWithBoundedConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ModelDefinitionValidator validator = validator(fileFinderManager(file -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(Duration.ofMillis(20));
+            running.decrementAndGet();
+            return stream();
+        }), 2, TIMEOUT);
+        ModelFile[] files = new ModelFile[10];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = modelFile("file-" + i + ".madx");
+        }
+
+        ModelDefinitionValidation validation = validator.validate(modelDefinition("many files", files), null, null)
+                .block();
+
+        assertThat(validation.state()).isEqualTo(State.VALID);
+        assertThat(validation.checkedFiles()).isEqualTo(10);
+        assertThat(maxRunning.get()).isBetween(1, 2);
+    }
+
+    private static ModelDefinitionValidator validator(ModelFileFinderManager fileFinderManager, int maxConcurrency,
+            Duration timeout) {
+        return new ModelDefinitionValidator(fileFinderManager, Schedulers.boundedElastic(), maxConcurrency, timeout,
+                ModelSelectionMetrics.noop());
+    }
+
+    private static InputStream stream() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
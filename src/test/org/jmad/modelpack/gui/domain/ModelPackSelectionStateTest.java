@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelPackageService;
+import org.jmad.modelpack.gui.util.FxUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.testfx.util.WaitForAsyncUtils;
+
+import reactor.core.scheduler.Schedulers;
+
+public class ModelPackSelectionStateTest {
+
+    private ModelPackageVariant variant;
+    private ModelPackSelectionState state;
+
+    @BeforeClass
+    public static void initFx() {
+        FxUtils.ensureFxInitialized();
+    }
+
+    @Before
+    public void setUp() {
+        SyntheticCatalogue catalogue = SyntheticCatalogue.builder().variants(4).build();
+        variant = catalogue.variants().get(0);
+        SyntheticModelPackageService service = SyntheticModelPackageService.builder().catalogue(catalogue)
+                .definitionsLatency(Duration.ofMillis(100)).build();
+        state = onFx(() -> new ModelPackSelectionState(service.asService(),
+                new ModelDefinitionCache(service.asService()), Schedulers.boundedElastic()));
+    }
+
+    @Test
+    public void loadedDefinitionsDoNotEndTheLoadingOfTheCatalogue() {
+        onFx(() -> {
+            state.catalogueLoadingProperty().set(true);
+            state.selectedPackageProperty().set(variant);
+            return null;
+        });
+        await("the definitions to be loaded", () -> onFx(() -> !state.availableDefinitionsProperty().isEmpty()));
+
+        assertThat(onFx(() -> state.loadingProperty().get())).isTrue();
+
+        onFx(() -> {
+            state.catalogueLoadingProperty().set(false);
+            return null;
+        });
+        assertThat(onFx(() -> state.loadingProperty().get())).isFalse();
+    }
+
+    @Test
+    public void loadedCatalogueDoesNotEndTheLoadingOfTheDefinitions() {
+        onFx(() -> {
+            state.catalogueLoadingProperty().set(true);
+            state.selectedPackageProperty().set(variant);
+            state.catalogueLoadingProperty().set(false);
+            return null;
+        });
+
+        assertThat(onFx(() -> state.loadingProperty().get())).isTrue();
+        await("the definitions to be loaded", () -> onFx(() -> !state.loadingProperty().get()));
+        assertThat(onFx(() -> state.availableDefinitionsProperty())).isNotEmpty();
+    }
+
+    private static <T> T onFx(Supplier<T> supplier) {
+        AtomicReference<T> result = new AtomicReference<>();
+        FxUtils.runSyncOnFxThread(() -> result.set(supplier.get()));
+        return result.get();
+    }
+
+    private static void await(String description, Callable<Boolean> condition) {
+        try {
+            WaitForAsyncUtils.waitFor(5, TimeUnit.SECONDS, condition);
+        } catch (TimeoutException e) {
+            throw new AssertionError("Timed out waiting for " + description, e);
+        }
+    }
+
+}
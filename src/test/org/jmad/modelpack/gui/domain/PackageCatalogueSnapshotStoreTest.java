@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackage;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.Variant;
+import org.jmad.modelpack.domain.VariantType;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PackageCatalogueSnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path snapshotFile;
+    private PackageCatalogueSnapshotStore store;
+
+    @Before
+    public void setUp() {
+        snapshotFile = folder.getRoot().toPath().resolve("catalogue").resolve("packages-catalogue.snapshot");
+        store = new PackageCatalogueSnapshotStore(snapshotFile);
+    }
+
+    @Test
+    public void savedVariantsAreLoadedBack() {
+        List<ModelPackageVariant> variants = SyntheticCatalogue.builder().variants(500).repositories(3).build()
+                .variants();
+
+        store.save(variants);
+
+        assertThat(store.load()).hasValueSatisfying(snapshot -> {
+            assertThat(snapshot.variants()).containsExactlyElementsOf(variants);
+            assertThat(snapshot.variants().get(0).modelPackage().repository())
+                    .isEqualTo(variants.get(0).modelPackage().repository());
+        });
+        assertThat(snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp")).doesNotExist();
+    }
+
+    @Test
+    public void allTheFieldsOfTheVariantsAreLoadedBack() {
+        JMadModelPackageRepository repository = new JMadModelPackageRepository("https://gitlab.cern.ch", "CERN GitLab",
+                "gitlab");
+        ModelPackageVariant variant = new ModelPackageVariant(new ModelPackage("LHC", repository, "1234"),
+                new Variant("feature/optics", VariantType.BRANCH));
+
+        store.save(Collections.singletonList(variant));
+
+        ModelPackageVariant loaded = store.load().get().variants().get(0);
+        assertThat(loaded).isEqualTo(variant);
+        assertThat(loaded.modelPackage().id()).isEqualTo("1234");
+        assertThat(loaded.modelPackage().repository().repoUrl()).isEqualTo("https://gitlab.cern.ch");
+        assertThat(loaded.modelPackage().repository().repoName()).isEqualTo("CERN GitLab");
+        assertThat(loaded.modelPackage().repository().connectorId()).isEqualTo("gitlab");
+        assertThat(loaded.variant().type()).isEqualTo(VariantType.BRANCH);
+    }
+
+    @Test
+    public void missingFileIsNoSnapshot() {
+        assertThat(store.load()).isEmpty();
+    }
+
+    @Test
+    public void disabledStoreNeitherSavesNorLoads() {
+        PackageCatalogueSnapshotStore disabled = PackageCatalogueSnapshotStore.disabled();
+        disabled.save(SyntheticCatalogue.ofSize(10));
+        assertThat(disabled.load()).isEmpty();
+    }
+
+    @Test
+    public void corruptedFileIsDiscarded() throws IOException {
+        Files.createDirectories(snapshotFile.getParent());
+        Files.write(snapshotFile, new byte[] { 1, 2, 3, 4, 5 });
+
+        assertThat(store.load()).isEmpty();
+        assertThat(snapshotFile).doesNotExist();
+    }
+
+    @Test
+    public void unreasonableVariantCountIsDiscarded() throws IOException {
+        writeHeaderAnd(PackageCatalogueSnapshotStore.MAX_VARIANTS + 1, out -> {});
+
+        assertThat(store.load()).isEmpty();
+        assertThat(snapshotFile).doesNotExist();
+    }
+
+    @Test
+    public void negativeVariantCountIsDiscarded() throws IOException {
+        writeHeaderAnd(-1, out -> {});
+
+        assertThat(store.load()).isEmpty();
+        assertThat(snapshotFile).doesNotExist();
+    }
+
+    @Test
+    public void truncatedFileIsDiscarded() throws IOException {
+        writeHeaderAnd(2, out -> ModelPackageVariantCodec.write(out, SyntheticCatalogue.ofSize(1).get(0)));
+
+        assertThat(store.load()).isEmpty();
+        assertThat(snapshotFile).doesNotExist();
+    }
+
+    @Test
+    public void unknownVariantTypeIsDiscarded() throws IOException {
+        writeHeaderAnd(1, out -> {
+            for (int i = 0; i < 6; i++) {
+                ModelPackageVariantCodec.writeNullableString(out, "field-" + i);
+            }
+            out.writeUTF("java.util.Date");
+        });
+
+        assertThat(store.load()).isEmpty();
+        assertThat(snapshotFile).doesNotExist();
+    }
+
+    private void writeHeaderAnd(int count, LocalStoreFile.ContentWriter variantsWriter) throws IOException {
+        Files.createDirectories(snapshotFile.getParent());
+        try (DataOutputStream out = new DataOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(snapshotFile)))) {
+            out.writeInt(0x4A4D5043);
+            out.writeInt(2);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(count);
+            variantsWriter.write(out);
+        }
+    }
+
+}
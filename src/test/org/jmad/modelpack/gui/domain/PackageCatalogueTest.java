@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.VariantType;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelPackageService;
+import org.jmad.modelpack.gui.synthetic.SyntheticRepositoryManager;
+import org.jmad.modelpack.gui.util.FxUtils;
+import org.jmad.modelpack.service.JMadModelPackageService.Mode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.testfx.util.WaitForAsyncUtils;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+public class PackageCatalogueTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(300);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private SyntheticCatalogue syntheticCatalogue;
+    private SyntheticModelPackageService service;
+    private SyntheticRepositoryManager repositoryManager;
+    private List<JMadModelPackageRepository> repositories;
+    private PackageCatalogueSnapshotStore snapshotStore;
+    /* what each repository of the source delivers, by default its synthetic listing */
+    private Map<JMadModelPackageRepository, Flux<ModelPackageVariant>> listings;
+    private RecordingListener listener;
+    private Disposable subscription;
+
+    @BeforeClass
+    public static void initFx() {
+        FxUtils.ensureFxInitialized();
+    }
+
+    @Before
+    public void setUp() {
+        syntheticCatalogue = SyntheticCatalogue.builder().variants(40).variantsPerPackage(4).repositories(2).build();
+        service = SyntheticModelPackageService.builder().catalogue(syntheticCatalogue).build();
+        repositoryManager = new SyntheticRepositoryManager(syntheticCatalogue.repositories());
+        repositories = syntheticCatalogue.repositories();
+        snapshotStore = new PackageCatalogueSnapshotStore(folder.getRoot().toPath().resolve("catalogue.snapshot"));
+        listings = new ConcurrentHashMap<>();
+        listener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    @Test
+    public void catalogueIsRetrievedOnFirstSubscription() {
+        PackageCatalogue catalogue = catalogueWithFetcher();
+
+        subscribe(catalogue);
+        listener.awaitUpdates(1);
+
+        assertThat(onFx(() -> new ArrayList<>(catalogue.packages().values())))
+                .containsExactlyInAnyOrderElementsOf(syntheticCatalogue.variants());
+        assertThat(onFx(() -> catalogue.loadingProperty().get())).isFalse();
+    }
+
+    @Test
+    public void snapshotIsReconciledWithTheLiveCatalogue() {
+        List<ModelPackageVariant> firstRepository = variantsOf(repositories.get(0));
+        ModelPackageVariant gone = firstRepository.get(0);
+        ModelPackageVariant fresh = firstRepository.get(1);
+        snapshotStore.save(without(syntheticCatalogue.variants(), fresh));
+        listings.put(repositories.get(0), Flux.fromIterable(without(firstRepository, gone)));
+        PackageCatalogue catalogue = catalogueWithFetcher();
+
+        subscribe(catalogue);
+        listener.awaitUpdates(1);
+
+        assertThat(onFx(() -> catalogue.statusOf(gone))).isEqualTo(PackageStatus.REMOVED);
+        assertThat(onFx(() -> catalogue.statusOf(fresh))).isEqualTo(PackageStatus.ADDED);
+        assertThat(onFx(() -> catalogue.statusOf(firstRepository.get(2)))).isEqualTo(PackageStatus.LIVE);
+        awaitSnapshot(without(syntheticCatalogue.variants(), gone));
+    }
+
+    @Test
+    public void failedRepositoryKeepsItsSnapshotVariants() {
+        snapshotStore.save(syntheticCatalogue.variants());
+        JMadModelPackageRepository failing = repositories.get(1);
+        listings.put(failing, Flux.error(new IllegalStateException("unreachable")));
+        PackageCatalogue catalogue = catalogueWithFetcher();
+
+        subscribe(catalogue);
+        listener.awaitUpdates(1);
+
+        assertThat(onFx(() -> variantsOf(failing).stream().map(catalogue::statusOf).distinct().collect(toList())))
+                .containsExactly(PackageStatus.CACHED);
+        assertThat(onFx(() -> variantsOf(repositories.get(0)).stream().map(catalogue::statusOf).distinct()
+                .collect(toList()))).containsExactly(PackageStatus.LIVE);
+        awaitSnapshot(syntheticCatalogue.variants());
+    }
+
+    @Test
+    public void timedOutRepositoryKeepsItsSnapshotVariants() {
+        snapshotStore.save(syntheticCatalogue.variants());
+        JMadModelPackageRepository silent = repositories.get(0);
+        listings.put(silent, Flux.never());
+        PackageCatalogue catalogue = catalogueWithFetcher();
+
+        subscribe(catalogue);
+        listener.awaitUpdates(1);
+
+        assertThat(onFx(() -> variantsOf(silent).stream().map(catalogue::statusOf).distinct().collect(toList())))
+                .containsExactly(PackageStatus.CACHED);
+        assertThat(onFx(() -> catalogue.packages().size())).isEqualTo(syntheticCatalogue.variantCount());
+    }
+
+    @Test
+    public void disabledRepositoryIsRemovedOnRefresh() {
+        PackageCatalogue catalogue = catalogueWithFetcher();
+        subscribe(catalogue);
+        listener.awaitUpdates(1);
+        JMadModelPackageRepository disabled = repositories.get(1);
+
+        repositoryManager.disable(disabled);
+        catalogue.refresh();
+        listener.awaitUpdates(1);
+
+        assertThat(onFx(() -> new ArrayList<>(catalogue.packages().values()))).doesNotContainAnyElementsOf(
+                variantsOf(disabled));
+        assertThat(onFx(() -> variantsOf(repositories.get(0)).stream().map(catalogue::statusOf).distinct()
+                .collect(toList()))).containsExactly(PackageStatus.LIVE);
+        awaitSnapshot(variantsOf(repositories.get(0)));
+    }
+
+    @Test
+    public void failedRefreshStillNotifiesTheListeners() {
+        snapshotStore.save(syntheticCatalogue.variants());
+        service = SyntheticModelPackageService.builder().catalogue(syntheticCatalogue).errorRate(1).build();
+        PackageCatalogue catalogue = catalogue(Optional.empty());
+        subscribe(catalogue);
+        listener.awaitUpdates(1);
+
+        catalogue.refresh();
+
+        listener.awaitUpdates(1);
+        assertThat(onFx(() -> catalogue.packages().size())).isEqualTo(syntheticCatalogue.variantCount());
+    }
+
+    @Test
+    public void switchingModeSetsItOnTheServiceOnceAndOffTheFxThread() {
+        PackageCatalogue catalogue = catalogueWithFetcher();
+        subscribe(catalogue);
+        listener.awaitUpdates(1);
+        ModelPackSelectionState state = new ModelPackSelectionState(service.asService(),
+                new ModelDefinitionCache(service.asService()), Schedulers.boundedElastic());
+        onFx(() -> {
+            state.bindOnlineModeTo(catalogue);
+            state.onlineModeProperty().set(false);
+            return null;
+        });
+
+        listener.awaitUpdates(1);
+
+        assertThat(service.mode()).isEqualTo(Mode.OFFLINE);
+        assertThat(service.modeSwitchThreads()).hasSize(1).allSatisfy(thread -> assertThat(thread)
+                .isNotEqualTo(onFx(() -> Thread.currentThread().getName())));
+        assertThat(onFx(() -> catalogue.packages().values().stream().map(v -> v.variant().type()).distinct()
+                .collect(toList()))).containsExactly(VariantType.RELEASE);
+    }
+
+    @Test
+    public void stateNotBoundToACatalogueSetsTheModeOnTheServiceItself() {
+        ModelPackSelectionState state = new ModelPackSelectionState(service.asService(),
+                new ModelDefinitionCache(service.asService()), Schedulers.boundedElastic());
+
+        onFx(() -> {
+            state.onlineModeProperty().set(false);
+            return null;
+        });
+
+        assertThat(service.mode()).isEqualTo(Mode.OFFLINE);
+        assertThat(service.modeSwitchThreads()).hasSize(1);
+    }
+
+    @Test
+    public void disposedCatalogueStopsIndexingTheLoadedDefinitions() {
+        ModelDefinitionCache definitionsCache = new ModelDefinitionCache(service.asService());
+        PackageCatalogue catalogue = new PackageCatalogue(service.asService(), definitionsCache,
+                Schedulers.boundedElastic(), snapshotStore, Duration.ofMillis(16), 256, ModelSelectionMetrics.noop(),
+                Optional.empty());
+        ModelPackageVariant indexed = syntheticCatalogue.variants().get(0);
+        ModelPackageVariant notIndexed = syntheticCatalogue.variants().get(1);
+        catalogue.searchIndex().add(indexed);
+        catalogue.searchIndex().add(notIndexed);
+        definitionsCache.loadDefinitionsFrom(indexed).block(Duration.ofSeconds(5));
+
+        catalogue.dispose();
+        definitionsCache.loadDefinitionsFrom(notIndexed).block(Duration.ofSeconds(5));
+
+        assertThat(catalogue.searchIndex().search("-model-")).containsExactly(indexed);
+    }
+
+    private PackageCatalogue catalogueWithFetcher() {
+        RepositoryPackageSource source = repository -> listings.getOrDefault(repository,
+                service.availablePackages(repository));
+        RepositoryPackagesFetcher fetcher = new RepositoryPackagesFetcher(service.asService(),
+                repositoryManager.asRepositoryManager(), new RepositoryStatuses(), Schedulers.boundedElastic(),
+                Optional.of(source), 2, TIMEOUT, TIMEOUT, 0, Duration.ofMillis(10));
+        return catalogue(Optional.of(fetcher));
+    }
+
+    private PackageCatalogue catalogue(Optional<RepositoryPackagesFetcher> fetcher) {
+        return new PackageCatalogue(service.asService(), new ModelDefinitionCache(service.asService()),
+                Schedulers.boundedElastic(), snapshotStore, Duration.ofMillis(16), 256, ModelSelectionMetrics.noop(),
+                fetcher);
+    }
+
+    private void subscribe(PackageCatalogue catalogue) {
+        subscription = catalogue.subscribe(listener);
+    }
+
+    private List<ModelPackageVariant> variantsOf(JMadModelPackageRepository repository) {
+        return syntheticCatalogue.variants().stream().filter(v -> repository.equals(v.modelPackage().repository()))
+                .collect(toList());
+    }
+
+    private static List<ModelPackageVariant> without(List<ModelPackageVariant> variants, ModelPackageVariant removed) {
+        return variants.stream().filter(v -> !v.equals(removed)).collect(toList());
+    }
+
+    private void awaitSnapshot(List<ModelPackageVariant> expected) {
+        await("the snapshot to be saved", () -> snapshotStore.load()
+                .map(s -> s.variants().size() == expected.size() && s.variants().containsAll(expected)).orElse(false));
+    }
+
+    static <T> T onFx(Supplier<T> supplier) {
+        AtomicReference<T> result = new AtomicReference<>();
+        FxUtils.runSyncOnFxThread(() -> result.set(supplier.get()));
+        return result.get();
+    }
+
+    static void await(String description, Callable<Boolean> condition) {
+        try {
+            WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, condition);
+        } catch (TimeoutException e) {
+            throw new AssertionError("Timed out waiting for " + description, e);
+        }
+    }
+
+    /**
+     * Records the notifications of the catalogue, and lets the test wait for them
+     */
+    static class RecordingListener implements PackageCatalogue.Listener {
+
+        private final Semaphore updates = new Semaphore(0);
+        private final List<ModelPackageVariant> removed = new ArrayList<>();
+
+        @Override
+        public void packagesAdded(List<ModelPackageVariant> variants) {
+            /* read from the catalogue */
+        }
+
+        @Override
+        public void packagesRemoved(Collection<ModelPackageVariant> variants) {
+            removed.addAll(variants);
+        }
+
+        @Override
+        public void statusChanged(ModelPackageVariant variant, PackageStatus status) {
+            /* read from the catalogue */
+        }
+
+        @Override
+        public void catalogueCleared() {
+            /* nothing to clear */
+        }
+
+        @Override
+        public void catalogueUpdated() {
+            updates.release();
+        }
+
+        void awaitUpdates(int count) {
+            try {
+                assertThat(updates.tryAcquire(count, 10, TimeUnit.SECONDS)).as("catalogue updated").isTrue();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+
+        List<ModelPackageVariant> removed() {
+            return onFx(() -> new ArrayList<>(removed));
+        }
+    }
+
+}
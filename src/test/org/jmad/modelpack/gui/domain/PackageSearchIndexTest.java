@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmad.modelpack.gui.synthetic.SyntheticModelDefinitions.modelDefinition;
+
+import java.util.Set;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackage;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.Variant;
+import org.jmad.modelpack.domain.VariantType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PackageSearchIndexTest {
+
+    private static final JMadModelPackageRepository REPOSITORY = new JMadModelPackageRepository("test://repository",
+            "test-repository", "test");
+
+    private final ModelPackageVariant lhcRelease = variant("LHC-Optics", "2018.1", VariantType.RELEASE);
+    private final ModelPackageVariant lhcBranch = variant("LHC-Optics", "feature/ions", VariantType.BRANCH);
+    private final ModelPackageVariant spsRelease = variant("SPS-Optics", "2017.2", VariantType.RELEASE);
+
+    private PackageSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PackageSearchIndex();
+        index.add(lhcRelease);
+        index.add(lhcBranch);
+        index.add(spsRelease);
+    }
+
+    @Test
+    public void emptyQueryMatchesEverything() {
+        assertThat(index.search("")).containsExactlyInAnyOrder(lhcRelease, lhcBranch, spsRelease);
+        assertThat(index.search("   ")).hasSize(3);
+        assertThat(index.search(null)).hasSize(3);
+    }
+
+    @Test
+    public void searchIsCaseInsensitive() {
+        assertThat(index.search("lhc")).containsExactlyInAnyOrder(lhcRelease, lhcBranch);
+        assertThat(index.search("OPTICS")).hasSize(3);
+    }
+
+    @Test
+    public void searchMatchesShortAndLongWords() {
+        assertThat(index.search("s")).containsExactlyInAnyOrder(lhcRelease, lhcBranch, spsRelease);
+        assertThat(index.search("sp")).containsExactly(spsRelease);
+        assertThat(index.search("ions")).containsExactly(lhcBranch);
+        assertThat(index.search("2018.1")).containsExactly(lhcRelease);
+    }
+
+    @Test
+    public void searchRequiresAllTheWords() {
+        assertThat(index.search("lhc 2018")).containsExactly(lhcRelease);
+        assertThat(index.search("sps 2018")).isEmpty();
+    }
+
+    @Test
+    public void searchOnlyMatchesWithinOneName() {
+        /* "optics2018" is not in any name, even though "optics" and "2018" are names of the same variant */
+        assertThat(index.search("optics2018")).isEmpty();
+    }
+
+    @Test
+    public void definitionNamesBecomeSearchable() {
+        assertThat(index.search("b1")).isEmpty();
+
+        index.addDefinitions(spsRelease, singletonList(modelDefinition("SPS 2017", "spsb1", "injection")));
+
+        assertThat(index.search("injection")).containsExactly(spsRelease);
+        assertThat(index.search("b1")).containsExactly(spsRelease);
+        assertThat(index.matches(spsRelease, "sps injection")).isTrue();
+    }
+
+    @Test
+    public void definitionsOfUnknownVariantsAreIgnored() {
+        ModelPackageVariant unknown = variant("PSB", "1.0", VariantType.TAG);
+
+        index.addDefinitions(unknown, singletonList(modelDefinition("PSB", "psb1", "flat")));
+
+        assertThat(index.search("flat")).isEmpty();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void removedVariantsAreNotFound() {
+        index.remove(lhcRelease);
+
+        assertThat(index.search("lhc")).containsExactly(lhcBranch);
+        assertThat(index.search("2018")).isEmpty();
+        assertThat(index.matches(lhcRelease, "lhc")).isFalse();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void clearedIndexIsEmpty() {
+        index.clear();
+
+        assertThat(index.search("")).isEmpty();
+        assertThat(index.search("lhc")).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    public void refineKeepsThePreviousMatchesOfTheExtendedQuery() {
+        Set<ModelPackageVariant> previous = index.search("lhc");
+
+        assertThat(index.refine(previous, "lhc 2018")).containsExactly(lhcRelease);
+        assertThat(index.refine(previous, "lhc-o")).containsExactlyInAnyOrder(lhcRelease, lhcBranch);
+    }
+
+    @Test
+    public void versionChangesWithEveryUpdate() {
+        long initial = index.version();
+
+        index.add(lhcRelease);
+        assertThat(index.version()).as("adding a known variant changes nothing").isEqualTo(initial);
+
+        index.addDefinitions(lhcRelease, singletonList(modelDefinition("LHC 2018", "lhcb1", "collision")));
+        long afterDefinitions = index.version();
+        assertThat(afterDefinitions).isNotEqualTo(initial);
+
+        index.remove(spsRelease);
+        long afterRemoval = index.version();
+        assertThat(afterRemoval).isNotEqualTo(afterDefinitions);
+
+        index.remove(spsRelease);
+        assertThat(index.version()).as("removing an unknown variant changes nothing").isEqualTo(afterRemoval);
+
+        index.clear();
+        assertThat(index.version()).isNotEqualTo(afterRemoval);
+    }
+
+    @Test
+    public void refiningAfterAnUpdateMissesNewMatches() {
+        /* the reason why the callers only refine as long as the version did not change */
+        long version = index.version();
+        Set<ModelPackageVariant> previous = index.search("sps");
+        index.addDefinitions(lhcRelease, singletonList(modelDefinition("LHC 2018", "lhcb1", "sps-transfer")));
+
+        assertThat(index.version()).isNotEqualTo(version);
+        assertThat(index.refine(previous, "sps-t")).isEmpty();
+        assertThat(index.search("sps-t")).containsExactly(lhcRelease);
+    }
+
+    private static ModelPackageVariant variant(String packageName, String variantName, VariantType type) {
+        return new ModelPackageVariant(new ModelPackage(packageName, REPOSITORY, packageName),
+                new Variant(variantName, type));
+    }
+
+}
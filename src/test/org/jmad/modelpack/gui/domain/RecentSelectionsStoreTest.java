@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecentSelectionsStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<ModelPackageVariant> variants = SyntheticCatalogue.builder().variants(10).repositories(2)
+            .build().variants();
+
+    private Path selectionsFile;
+    private RecentSelectionsStore store;
+
+    @Before
+    public void setUp() {
+        selectionsFile = folder.getRoot().toPath().resolve("selections").resolve("recent-selections");
+        store = new RecentSelectionsStore(selectionsFile);
+    }
+
+    @Test
+    public void savedPinnedAndRecentSelectionsAreLoadedBack() {
+        List<ModelSelectionCoordinates> selections = Arrays.asList(
+                new ModelSelectionCoordinates(variants.get(0), "LHC 2018", "R2018a_A11mC11mA10mL10m", "lhcb1", "ALL",
+                        true, Instant.ofEpochMilli(3_000)),
+                new ModelSelectionCoordinates(variants.get(7), "LHC 2018", "R2018a_A30cmC30cmA10mL300cm", "lhcb2",
+                        "IP1", false, Instant.ofEpochMilli(2_000)),
+                new ModelSelectionCoordinates(variants.get(9), "SPS", null, null, null, false,
+                        Instant.ofEpochMilli(1_000)));
+
+        store.save(selections);
+
+        assertThat(store.load()).usingFieldByFieldElementComparator().containsExactlyElementsOf(selections);
+        assertThat(selectionsFile.resolveSibling(selectionsFile.getFileName() + ".tmp")).doesNotExist();
+    }
+
+    @Test
+    public void savingReplacesThePreviousSelections() {
+        ModelSelectionCoordinates selection = new ModelSelectionCoordinates(variants.get(1), "LHC 2018", null, null,
+                null, true, Instant.ofEpochMilli(1_000));
+        store.save(Arrays.asList(selection, selection.withPinned(false)));
+
+        store.save(Arrays.asList(selection));
+
+        assertThat(store.load()).usingFieldByFieldElementComparator().containsExactly(selection);
+    }
+
+    @Test
+    public void missingFileIsNoSelection() {
+        assertThat(store.load()).isEmpty();
+    }
+
+    @Test
+    public void disabledStoreNeitherSavesNorLoads() {
+        RecentSelectionsStore disabled = RecentSelectionsStore.disabled();
+        disabled.save(Arrays.asList(new ModelSelectionCoordinates(variants.get(0), "LHC 2018", null, null, null,
+                false, Instant.now())));
+        assertThat(disabled.load()).isEmpty();
+    }
+
+    @Test
+    public void corruptedFileIsDiscarded() throws IOException {
+        Files.createDirectories(selectionsFile.getParent());
+        Files.write(selectionsFile, new byte[] { 1, 2, 3, 4, 5 });
+
+        assertThat(store.load()).isEmpty();
+        assertThat(selectionsFile).doesNotExist();
+    }
+
+    @Test
+    public void unreasonableSelectionCountIsDiscarded() throws IOException {
+        writeHeader(2, RecentSelectionsStore.MAX_SELECTIONS + 1);
+
+        assertThat(store.load()).isEmpty();
+        assertThat(selectionsFile).doesNotExist();
+    }
+
+    @Test
+    public void selectionsOfThePreviousFormatAreDiscarded() throws IOException {
+        writeHeader(1, 0);
+
+        assertThat(store.load()).isEmpty();
+        assertThat(selectionsFile).doesNotExist();
+    }
+
+    private void writeHeader(int formatVersion, int count) throws IOException {
+        Files.createDirectories(selectionsFile.getParent());
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(selectionsFile))) {
+            out.writeInt(0x4A4D5253);
+            out.writeInt(formatVersion);
+            out.writeInt(count);
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.domain.RepositoryHealthProber.UnhealthyRepositoryPolicy;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelPackageService;
+import org.jmad.modelpack.gui.synthetic.SyntheticRepositoryManager;
+import org.jmad.modelpack.gui.util.FxUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+public class RepositoryHealthProberTest {
+
+    private static final Duration PROBE_TIMEOUT = Duration.ofMillis(300);
+    private static final Duration SLOW_THRESHOLD = Duration.ofMillis(100);
+
+    private SyntheticCatalogue catalogue;
+    private SyntheticModelPackageService service;
+    private SyntheticRepositoryManager repositoryManager;
+    private List<JMadModelPackageRepository> repositories;
+    /* what each stub repository delivers, by default its synthetic listing */
+    private Map<JMadModelPackageRepository, Flux<ModelPackageVariant>> listings;
+
+    @BeforeClass
+    public static void initFx() {
+        FxUtils.ensureFxInitialized();
+    }
+
+    @Before
+    public void setUp() {
+        catalogue = SyntheticCatalogue.builder().variants(40).variantsPerPackage(5).repositories(4).build();
+        service = SyntheticModelPackageService.builder().catalogue(catalogue).build();
+        repositoryManager = new SyntheticRepositoryManager(catalogue.repositories());
+        repositories = catalogue.repositories();
+        listings = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    public void eachRepositoryIsProbedOnItsOwn() {
+        JMadModelPackageRepository healthy = repositories.get(0);
+        JMadModelPackageRepository failing = repositories.get(1);
+        JMadModelPackageRepository slow = repositories.get(2);
+        JMadModelPackageRepository silent = repositories.get(3);
+        listings.put(failing, Flux.error(new IllegalStateException("unreachable")));
+        listings.put(slow, service.availablePackages(slow).delaySubscription(SLOW_THRESHOLD.multipliedBy(2)));
+        listings.put(silent, Flux.never());
+        RepositoryHealthProber prober = prober(UnhealthyRepositoryPolicy.KEEP);
+
+        List<RepositoryHealth> results = prober.probeNow().block();
+
+        assertThat(results).extracting(RepositoryHealth::repository).containsExactlyInAnyOrderElementsOf(repositories);
+        RepositoryHealth healthyResult = prober.healthOf(healthy).get();
+        assertThat(healthyResult.isReachable()).isTrue();
+        assertThat(healthyResult.packageCount()).hasValue(variantsOf(healthy).size());
+        assertThat(healthyResult.consecutiveSlowProbes()).isZero();
+        assertThat(prober.healthOf(failing).get().isReachable()).isFalse();
+        assertThat(prober.healthOf(failing).get().error()).hasValueSatisfying(e -> assertThat(e).contains("unreachable"));
+        assertThat(prober.healthOf(slow).get().isReachable()).isTrue();
+        assertThat(prober.healthOf(slow).get().consecutiveSlowProbes()).isEqualTo(1);
+        assertThat(prober.healthOf(silent).get().isReachable()).isFalse();
+    }
+
+    @Test
+    public void disabledRepositoriesAreNotProbed() {
+        JMadModelPackageRepository disabled = repositories.get(2);
+        repositoryManager.disable(disabled);
+        RepositoryHealthProber prober = prober(UnhealthyRepositoryPolicy.KEEP);
+
+        List<RepositoryHealth> results = prober.probeNow().block();
+
+        assertThat(results).extracting(RepositoryHealth::repository).hasSize(3).doesNotContain(disabled);
+        assertThat(prober.healthOf(disabled)).isEmpty();
+    }
+
+    @Test
+    public void repositoriesTheProbeCannotTellAnythingAboutAreNotProbed() {
+        JMadModelPackageRepository unprobed = repositories.get(1);
+        RepositoryProbe probe = new RepositoryProbe() {
+            @Override
+            public Mono<Integer> probe(JMadModelPackageRepository repository) {
+                return Mono.empty();
+            }
+
+            @Override
+            public boolean canProbe(JMadModelPackageRepository repository) {
+                return !repository.equals(unprobed);
+            }
+        };
+        RepositoryHealthProber prober = new RepositoryHealthProber(repositoryManager.asRepositoryManager(),
+                new RepositoryStatuses(), Schedulers.boundedElastic(), probe, Duration.ofMinutes(1),
+                Duration.ofMinutes(10), PROBE_TIMEOUT, SLOW_THRESHOLD, 2, UnhealthyRepositoryPolicy.KEEP);
+
+        List<RepositoryHealth> results = prober.probeNow().block();
+
+        assertThat(results).extracting(RepositoryHealth::repository).hasSize(3).doesNotContain(unprobed);
+        assertThat(results).allSatisfy(result -> {
+            assertThat(result.isReachable()).isTrue();
+            assertThat(result.packageCount()).isEmpty();
+        });
+        assertThat(prober.healthOf(unprobed)).isEmpty();
+    }
+
+    @Test
+    public void consecutiveFailuresMakeARepositoryUnhealthy() {
+        JMadModelPackageRepository failing = repositories.get(1);
+        listings.put(failing, Flux.error(new IllegalStateException("unreachable")));
+        RepositoryHealthProber prober = prober(UnhealthyRepositoryPolicy.KEEP);
+
+        prober.probeNow().block();
+        assertThat(prober.isUnhealthy(prober.healthOf(failing).get())).isFalse();
+        prober.probeNow().block();
+
+        assertThat(prober.healthOf(failing).get().consecutiveFailures()).isEqualTo(2);
+        assertThat(prober.isUnhealthy(prober.healthOf(failing).get())).isTrue();
+        assertThat(prober.isUnhealthy(prober.healthOf(repositories.get(0)).get())).isFalse();
+
+        listings.remove(failing);
+        prober.probeNow().block();
+        assertThat(prober.healthOf(failing).get().consecutiveFailures()).isZero();
+    }
+
+    @Test
+    public void unhealthyRepositoryIsDisabledWithTheDisablePolicy() {
+        JMadModelPackageRepository failing = repositories.get(1);
+        listings.put(failing, Flux.error(new IllegalStateException("unreachable")));
+        RepositoryHealthProber prober = prober(UnhealthyRepositoryPolicy.DISABLE);
+
+        prober.probeNow().block();
+        assertThat(enabledRepositories()).contains(failing);
+        prober.probeNow().block();
+
+        assertThat(enabledRepositories()).doesNotContain(failing).hasSize(3);
+    }
+
+    @Test
+    public void rankingPutsHealthyAndFastRepositoriesFirst() {
+        JMadModelPackageRepository failing = repositories.get(0);
+        JMadModelPackageRepository slow = repositories.get(1);
+        listings.put(failing, Flux.error(new IllegalStateException("unreachable")));
+        listings.put(slow, service.availablePackages(slow).delaySubscription(SLOW_THRESHOLD.multipliedBy(2)));
+        RepositoryHealthProber prober = prober(UnhealthyRepositoryPolicy.DEPRIORITISE);
+
+        prober.probeNow().block();
+
+        List<JMadModelPackageRepository> ranked = repositories.stream().sorted(prober.healthRanking())
+                .collect(toList());
+        assertThat(ranked.subList(0, 2)).containsExactlyInAnyOrder(repositories.get(2), repositories.get(3));
+        assertThat(ranked.subList(2, 4)).containsExactly(slow, failing);
+    }
+
+    private RepositoryHealthProber prober(UnhealthyRepositoryPolicy policy) {
+        RepositoryPackageSource source = repository -> listings.getOrDefault(repository,
+                service.availablePackages(repository));
+        return new RepositoryHealthProber(repositoryManager.asRepositoryManager(), new RepositoryStatuses(),
+                Schedulers.boundedElastic(), RepositoryProbe.listingThrough(source), Duration.ofMinutes(1),
+                Duration.ofMinutes(10), PROBE_TIMEOUT, SLOW_THRESHOLD, 2, policy);
+    }
+
+    private List<JMadModelPackageRepository> enabledRepositories() {
+        return repositoryManager.state().blockFirst().entrySet().stream().filter(e -> e.getValue().asBoolEnabled())
+                .map(Map.Entry::getKey).collect(toList());
+    }
+
+    private List<ModelPackageVariant> variantsOf(JMadModelPackageRepository repository) {
+        return catalogue.variants().stream().filter(v -> repository.equals(v.modelPackage().repository()))
+                .collect(toList());
+    }
+
+}
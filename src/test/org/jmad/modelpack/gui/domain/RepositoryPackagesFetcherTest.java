@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.domain;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.Variant;
+import org.jmad.modelpack.gui.metrics.ModelSelectionMetrics;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelPackageService;
+import org.jmad.modelpack.gui.synthetic.SyntheticRepositoryManager;
+import org.jmad.modelpack.gui.util.FxUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.testfx.util.WaitForAsyncUtils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+public class RepositoryPackagesFetcherTest {
+
+    private static final Duration TIMEOUT = Duration.ofMillis(300);
+
+    private SyntheticCatalogue catalogue;
+    private SyntheticModelPackageService service;
+    private SyntheticRepositoryManager repositoryManager;
+    private List<JMadModelPackageRepository> repositories;
+    private RepositoryStatuses statuses;
+    /* what each repository of the source delivers, by default its synthetic listing */
+    private Map<JMadModelPackageRepository, Flux<ModelPackageVariant>> listings;
+    /* the recorded repository latencies, as the repository and outcome tags */
+    private Map<String, List<Duration>> repositoryLatencies;
+
+    @BeforeClass
+    public static void initFx() {
+        FxUtils.ensureFxInitialized();
+    }
+
+    @Before
+    public void setUp() {
+        catalogue = SyntheticCatalogue.builder().variants(60).variantsPerPackage(5).repositories(3).build();
+        service = SyntheticModelPackageService.builder().catalogue(catalogue).build();
+        repositoryManager = new SyntheticRepositoryManager(catalogue.repositories());
+        repositories = catalogue.repositories();
+        statuses = new RepositoryStatuses();
+        listings = new ConcurrentHashMap<>();
+        repositoryLatencies = new ConcurrentHashMap<>();
+    }
+
+    @Test
+    public void failingRepositoryOnlyLosesItsOwnPackages() {
+        listings.put(repositories.get(1), Flux.error(new IllegalStateException("unreachable")));
+
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+        List<ModelPackageVariant> fetched = fetcher.availablePackages().collectList().block();
+
+        assertThat(fetched).containsExactlyInAnyOrderElementsOf(variantsOf(repositories.get(0), repositories.get(2)));
+        assertThat(fetcher.failedRepositories()).containsExactly(repositories.get(1));
+        awaitFetchState(repositories.get(1), RepositoryFetchStatus.State.FAILED);
+        awaitFetchState(repositories.get(0), RepositoryFetchStatus.State.OK);
+    }
+
+    @Test
+    public void failingRepositoryIsListedOnceWithoutRetries() {
+        AtomicInteger attempts = new AtomicInteger();
+        IllegalStateException failure = new IllegalStateException("unreachable");
+        listings.put(repositories.get(1), Flux.defer(() -> {
+            attempts.incrementAndGet();
+            return Flux.error(failure);
+        }));
+
+        fetcherWithSource(0).availablePackages().collectList().block();
+
+        assertThat(attempts).hasValue(1);
+        awaitFetchState(repositories.get(1), RepositoryFetchStatus.State.FAILED);
+        assertThat(statuses.fetchStatuses().get(repositories.get(1)).error()).contains(failure.toString());
+    }
+
+    @Test
+    public void latencyOfEachRepositoryIsMeasuredUntilItIsCompletelyReceived() {
+        listings.put(repositories.get(0), Flux.fromIterable(variantsOf(repositories.get(0)))
+                .delaySubscription(Duration.ofMillis(200)));
+        listings.put(repositories.get(1), Flux.error(new IllegalStateException("unreachable")));
+
+        fetcherWithSource(0).availablePackages().collectList().block();
+
+        assertThat(repositoryLatencies).containsOnlyKeys(repositories.get(0) + "/success",
+                repositories.get(1) + "/error", repositories.get(2) + "/success");
+        assertThat(repositoryLatencies.get(repositories.get(0) + "/success")).hasSize(1)
+                .allSatisfy(latency -> assertThat(latency).isGreaterThanOrEqualTo(Duration.ofMillis(200)));
+    }
+
+    @Test
+    public void silentRepositoryTimesOut() {
+        listings.put(repositories.get(2), Flux.never());
+
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+        List<ModelPackageVariant> fetched = fetcher.availablePackages().collectList().block(Duration.ofSeconds(10));
+
+        assertThat(fetched).containsExactlyInAnyOrderElementsOf(variantsOf(repositories.get(0), repositories.get(1)));
+        assertThat(fetcher.failedRepositories()).containsExactly(repositories.get(2));
+        awaitFetchState(repositories.get(2), RepositoryFetchStatus.State.FAILED);
+    }
+
+    @Test
+    public void retriedRepositoryDeliversEachPackageOnce() {
+        JMadModelPackageRepository repository = repositories.get(0);
+        List<ModelPackageVariant> variants = variantsOf(repository);
+        AtomicInteger attempts = new AtomicInteger();
+        listings.put(repository, Flux.defer(() -> attempts.incrementAndGet() == 1
+                ? Flux.fromIterable(variants.subList(0, 3)).concatWith(Flux.error(new IllegalStateException("reset")))
+                : Flux.fromIterable(variants)));
+
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(1);
+        List<ModelPackageVariant> fetched = fetcher.availablePackages().collectList().block();
+
+        assertThat(attempts).hasValue(2);
+        assertThat(fetched).doesNotHaveDuplicates().containsAll(variants).hasSize(catalogue.variantCount());
+        assertThat(fetcher.failedRepositories()).isEmpty();
+    }
+
+    @Test
+    public void sharedListingIsRetrievedOnceAndNotRetried() {
+        service = SyntheticModelPackageService.builder().catalogue(catalogue).errorRate(1).build();
+        RepositoryPackagesFetcher fetcher = new RepositoryPackagesFetcher(service.asService(),
+                repositoryManager.asRepositoryManager(), statuses, Schedulers.boundedElastic(), Optional.empty(), 4,
+                TIMEOUT, TIMEOUT, 3, Duration.ofMillis(10));
+
+        fetcher.availablePackages().collectList().block();
+
+        assertThat(service.listingsCount()).isEqualTo(1);
+        assertThat(fetcher.failedRepositories()).isNotEmpty();
+    }
+
+    @Test
+    public void sharedListingIsSplitByRepository() {
+        RepositoryPackagesFetcher fetcher = new RepositoryPackagesFetcher(service.asService(),
+                repositoryManager.asRepositoryManager(), statuses, Schedulers.boundedElastic());
+
+        List<ModelPackageVariant> fetched = fetcher.availablePackages().collectList().block();
+
+        assertThat(fetched).containsExactlyInAnyOrderElementsOf(catalogue.variants());
+        assertThat(service.listingsCount()).isEqualTo(1);
+        assertThat(fetcher.failedRepositories()).isEmpty();
+    }
+
+    @Test
+    public void onlyEnabledRepositoriesAreFetched() {
+        repositoryManager.disable(repositories.get(0));
+
+        List<ModelPackageVariant> fetched = fetcherWithSource(0).availablePackages().collectList().block();
+
+        assertThat(fetched).containsExactlyInAnyOrderElementsOf(variantsOf(repositories.get(1), repositories.get(2)));
+    }
+
+    @Test
+    public void disabledRepositoriesAreNotFailedAnymore() {
+        listings.put(repositories.get(1), Flux.error(new IllegalStateException("unreachable")));
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+        fetcher.availablePackages().blockLast();
+        assertThat(fetcher.failedRepositories()).containsExactly(repositories.get(1));
+
+        repositoryManager.disable(repositories.get(1));
+        fetcher.availablePackages().blockLast();
+
+        assertThat(fetcher.failedRepositories()).isEmpty();
+    }
+
+    @Test
+    public void changedListingsOnlyReportChangedRepositories() {
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+
+        assertThat(fetcher.changedListings().collectList().block()).hasSize(3);
+        assertThat(fetcher.changedListings().collectList().block()).isEmpty();
+
+        JMadModelPackageRepository changed = repositories.get(1);
+        List<ModelPackageVariant> shrunk = variantsOf(changed).subList(1, variantsOf(changed).size());
+        listings.put(changed, Flux.fromIterable(shrunk));
+
+        List<RepositoryListing> changedListings = fetcher.changedListings().collectList().block();
+        assertThat(changedListings).hasSize(1);
+        assertThat(changedListings.get(0).repository()).contains(changed);
+        assertThat(changedListings.get(0).variants()).containsExactlyInAnyOrderElementsOf(shrunk);
+        awaitFetchState(repositories.get(0), RepositoryFetchStatus.State.UNCHANGED);
+    }
+
+    @Test
+    public void reorderedListingIsUnchangedButReplacedVariantIsChanged() {
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+        fetcher.changedListings().blockLast();
+        JMadModelPackageRepository repository = repositories.get(0);
+        List<ModelPackageVariant> reordered = new ArrayList<>(variantsOf(repository));
+        Collections.reverse(reordered);
+        listings.put(repository, Flux.fromIterable(reordered));
+
+        assertThat(fetcher.changedListings().collectList().block()).isEmpty();
+
+        List<ModelPackageVariant> replaced = new ArrayList<>(reordered);
+        ModelPackageVariant first = replaced.get(0);
+        replaced.set(0, new ModelPackageVariant(first.modelPackage(),
+                new Variant(first.variant().name() + "-rebuilt", first.variant().type())));
+        listings.put(repository, Flux.fromIterable(replaced));
+
+        assertThat(fetcher.changedListings().collectList().block()).extracting(listing -> listing.repository().get())
+                .containsExactly(repository);
+    }
+
+    @Test
+    public void forgottenVersionsAreReportedAsChanged() {
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+        fetcher.changedListings().blockLast();
+
+        fetcher.forgetVersions();
+
+        assertThat(fetcher.changedListings().collectList().block()).hasSize(3);
+    }
+
+    @Test
+    public void failedListingIsNotReportedAsChanged() {
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+        fetcher.changedListings().blockLast();
+        listings.put(repositories.get(0), Flux.error(new IllegalStateException("unreachable")));
+        fetcher.forgetVersions();
+
+        List<RepositoryListing> changedListings = fetcher.changedListings().collectList().block();
+
+        assertThat(changedListings).extracting(listing -> listing.repository().get())
+                .containsExactlyInAnyOrder(repositories.get(1), repositories.get(2));
+        assertThat(fetcher.failedRepositories()).containsExactly(repositories.get(0));
+    }
+
+    @Test
+    public void disabledRepositoryGetsAnEmptyListing() {
+        RepositoryPackagesFetcher fetcher = fetcherWithSource(0);
+        fetcher.changedListings().blockLast();
+        JMadModelPackageRepository disabled = repositories.get(2);
+
+        repositoryManager.disable(disabled);
+        List<RepositoryListing> changedListings = fetcher.changedListings().collectList().block();
+
+        assertThat(changedListings).hasSize(1);
+        assertThat(changedListings.get(0).repository()).contains(disabled);
+        assertThat(changedListings.get(0).variants()).isEmpty();
+        assertThat(fetcher.changedListings().collectList().block()).isEmpty();
+
+        repositoryManager.enable(disabled);
+        changedListings = fetcher.changedListings().collectList().block();
+        assertThat(changedListings).hasSize(1);
+        assertThat(changedListings.get(0).variants()).containsExactlyInAnyOrderElementsOf(variantsOf(disabled));
+    }
+
+    private RepositoryPackagesFetcher fetcherWithSource(int retries) {
+        RepositoryPackageSource source = repository -> listings.getOrDefault(repository,
+                service.availablePackages(repository));
+        return new RepositoryPackagesFetcher(service.asService(), repositoryManager.asRepositoryManager(), statuses,
+                Schedulers.boundedElastic(), Optional.of(source), 2, TIMEOUT, TIMEOUT, retries, Duration.ofMillis(10),
+                (name, duration, tags) -> {
+                    if (name.equals(ModelSelectionMetrics.REPOSITORY_LATENCY)) {
+                        repositoryLatencies.computeIfAbsent(tags[1] + "/" + tags[3], k -> new CopyOnWriteArrayList<>())
+                                .add(duration);
+                    }
+                });
+    }
+
+    private List<ModelPackageVariant> variantsOf(JMadModelPackageRepository... ofRepositories) {
+        List<JMadModelPackageRepository> wanted = Arrays.asList(ofRepositories);
+        return catalogue.variants().stream().filter(v -> wanted.contains(v.modelPackage().repository()))
+                .collect(toList());
+    }
+
+    private void awaitFetchState(JMadModelPackageRepository repository, RepositoryFetchStatus.State state) {
+        try {
+            WaitForAsyncUtils.waitFor(5, TimeUnit.SECONDS, () -> {
+                RepositoryFetchStatus status = statuses.fetchStatuses().get(repository);
+                return status != null && status.state() == state;
+            });
+        } catch (TimeoutException e) {
+            throw new AssertionError("Repository " + repository + " did not reach " + state + " but is "
+                    + statuses.fetchStatuses().get(repository), e);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.jmad.modelpack.gui.dialogs.JMadModelSelectionDialog;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Records the model selection dialogs created by the context, so that the {@link LoadTestScript} can find the ones the
+ * factory shows.
+ */
+final class CreatedDialogs implements BeanPostProcessor {
+
+    /* guarded by itself */
+    private final List<JMadModelSelectionDialog> dialogs = new ArrayList<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof JMadModelSelectionDialog) {
+            synchronized (dialogs) {
+                dialogs.add((JMadModelSelectionDialog) bean);
+            }
+        }
+        return bean;
+    }
+
+    /**
+     * @return a showing dialog other than the given ones. Must be called from the Fx thread.
+     */
+    Optional<JMadModelSelectionDialog> showingExcept(List<JMadModelSelectionDialog> excluded) {
+        synchronized (dialogs) {
+            return dialogs.stream().filter(JMadModelSelectionDialog::isShowing).filter(d -> !excluded.contains(d))
+                    .findFirst();
+        }
+    }
+
+}
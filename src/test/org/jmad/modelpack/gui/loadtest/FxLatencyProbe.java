@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.loadtest;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+
+/**
+ * Measures the responsiveness of the FX thread: at a fixed interval, posts a task to the FX thread and records how
+ * long it waited before being run, i.e. the latency an input event would have seen at that moment.
+ */
+final class FxLatencyProbe {
+
+    private final Duration interval;
+    private final LatencyStatistics latencies;
+    private ScheduledExecutorService pinger;
+
+    FxLatencyProbe(Duration interval, LatencyStatistics latencies) {
+        this.interval = requireNonNull(interval, "interval must not be null");
+        this.latencies = requireNonNull(latencies, "latencies must not be null");
+    }
+
+    synchronized void start() {
+        if (pinger != null) {
+            return;
+        }
+        pinger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "fx-latency-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pinger.scheduleAtFixedRate(() -> {
+            long posted = System.nanoTime();
+            Platform.runLater(() -> latencies.record(Duration.ofNanos(System.nanoTime() - posted)));
+        }, 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    synchronized void stop() {
+        if (pinger != null) {
+            pinger.shutdownNow();
+            pinger = null;
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.loadtest;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * The recorded durations of one measurement, with their percentiles. Thread safe.
+ */
+final class LatencyStatistics {
+
+    private final String name;
+    /* guarded by this */
+    private long[] nanos = new long[64];
+    private int count;
+
+    LatencyStatistics(String name) {
+        this.name = requireNonNull(name, "name must not be null");
+    }
+
+    String name() {
+        return name;
+    }
+
+    synchronized void record(Duration duration) {
+        if (count == nanos.length) {
+            nanos = Arrays.copyOf(nanos, count * 2);
+        }
+        nanos[count++] = duration.toNanos();
+    }
+
+    synchronized int count() {
+        return count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the smallest recorded duration that is greater or equal than the given percentage of all the recorded
+     *         ones (nearest rank), or zero if nothing was recorded
+     */
+    synchronized Duration percentile(double percentile) {
+        if (count == 0) {
+            return Duration.ZERO;
+        }
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * count);
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(count, rank) - 1)]);
+    }
+
+    Duration max() {
+        return percentile(100);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-70s count=%6d p50=%8.2fms p90=%8.2fms p99=%8.2fms max=%8.2fms", name, count(),
+                millis(percentile(50)), millis(percentile(90)), millis(percentile(99)), millis(max()));
+    }
+
+    String toCsv() {
+        return String.format("%s,%d,%.3f,%.3f,%.3f,%.3f", name, count(), millis(percentile(50)),
+                millis(percentile(90)), millis(percentile(99)), millis(max()));
+    }
+
+    static String csvHeader() {
+        return "name,count,p50_ms,p90_ms,p99_ms,max_ms";
+    }
+
+    static double millis(Duration duration) {
+        return duration.toNanos() / 1e6;
+    }
+
+}
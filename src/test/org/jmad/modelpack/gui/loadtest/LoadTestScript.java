@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.loadtest;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.joining;
+import static org.jmad.modelpack.gui.metrics.ModelSelectionMetrics.elapsedSince;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.conf.JMadModelSelectionDialogFactory;
+import org.jmad.modelpack.gui.dialogs.JMadModelSelectionDialog;
+import org.jmad.modelpack.gui.domain.ModelPackSelectionState;
+import org.jmad.modelpack.gui.domain.RepositoryFetchStatus;
+import org.jmad.modelpack.gui.domain.RepositoryStatuses;
+import org.jmad.modelpack.gui.metrics.BindableModelSelectionMetrics;
+import org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.TextField;
+import javafx.scene.control.TreeItem;
+import javafx.scene.control.TreeTableView;
+import reactor.core.Disposable;
+
+/**
+ * Drives the model selection dialog through scripted cycles of opening it, filtering, searching, selecting packages,
+ * refreshing and closing it, like a user would. Records the duration of each step on the FX thread, the metrics
+ * reported by the GUI and the latency of the FX thread throughout.
+ */
+final class LoadTestScript {
+
+    static final String FX_THREAD_LATENCY = "fx.thread.latency";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadTestScript.class);
+    private static final Duration STEP_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(10);
+    private static final Duration FX_PROBE_INTERVAL = Duration.ofMillis(5);
+    private static final String SEARCH_QUERY = "synthetic-package-0001";
+    private static final int SELECTED_ROWS = 20;
+
+    private final ApplicationContext context;
+    /* guarded by itself */
+    private final Map<String, LatencyStatistics> statistics = new LinkedHashMap<>();
+
+    LoadTestScript(ApplicationContext context) {
+        this.context = requireNonNull(context, "context must not be null");
+    }
+
+    /**
+     * @return the statistics of all the measurements, in the order they were first recorded
+     */
+    List<LatencyStatistics> run(int cycles) throws Exception {
+        JMadModelSelectionDialogFactory factory = context.getBean(JMadModelSelectionDialogFactory.class);
+        Disposable metricsBinding = context.getBean(BindableModelSelectionMetrics.class)
+                .bindTo((name, duration, tags) -> statisticsOf(metricKey(name, tags)).record(duration));
+        FxLatencyProbe probe = new FxLatencyProbe(FX_PROBE_INTERVAL, statisticsOf(FX_THREAD_LATENCY));
+        probe.start();
+        try {
+            for (int cycle = 0; cycle < cycles; cycle++) {
+                LOGGER.info("Load test cycle {} of {}", cycle + 1, cycles);
+                runCycle(factory, cycle);
+            }
+        } finally {
+            probe.stop();
+            metricsBinding.dispose();
+        }
+        synchronized (statistics) {
+            return new ArrayList<>(statistics.values());
+        }
+    }
+
+    private void runCycle(JMadModelSelectionDialogFactory factory, int cycle) throws Exception {
+        long start = System.nanoTime();
+        Disposable selection = factory.modelSelection().subscribe();
+        JMadModelSelectionDialog dialog = awaitDialog(Collections.emptyList());
+        ModelPackSelectionState state = dialog.selectionState();
+        awaitOnFx(() -> !state.loadingProperty().get());
+        record("script.open", start);
+
+        JMadModelPackagesSelectionControl packages = onFx(
+                () -> lookup(dialog.getDialogPane(), "*", JMadModelPackagesSelectionControl.class, c -> true));
+        filter(packages);
+        search(packages);
+        select(packages, state);
+        openSecondDialog(factory, dialog);
+        if (cycle % 2 == 0) {
+            refresh(packages);
+        } else {
+            fullRefresh(packages, state);
+        }
+
+        start = System.nanoTime();
+        selection.dispose();
+        awaitOnFx(() -> !dialog.isShowing());
+        record("script.close", start);
+    }
+
+    private void filter(JMadModelPackagesSelectionControl packages) throws Exception {
+        for (String type : new String[] { "tags", "branches" }) {
+            CheckBox checkBox = onFx(() -> lookup(packages, ".check-box", CheckBox.class,
+                    c -> type.equals(c.getText())));
+            /* on, then off again */
+            timedOnFx("script.filter." + type, checkBox::fire);
+            timedOnFx("script.filter." + type, checkBox::fire);
+        }
+    }
+
+    private void search(JMadModelPackagesSelectionControl packages) throws Exception {
+        TextField searchField = onFx(() -> lookup(packages, ".text-field", TextField.class,
+                f -> f.getPromptText() != null && f.getPromptText().startsWith("Search")));
+        for (int length = 1; length <= SEARCH_QUERY.length(); length++) {
+            String query = SEARCH_QUERY.substring(0, length);
+            timedOnFx("script.search.type", () -> searchField.setText(query));
+        }
+        timedOnFx("script.search.clear", searchField::clear);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void select(JMadModelPackagesSelectionControl packages, ModelPackSelectionState state) throws Exception {
+        TreeTableView<Object> table = onFx(() -> lookup(packages, ".tree-table-view", TreeTableView.class, t -> true));
+        int rows = onFx(() -> table.getRoot().getChildren().size());
+        for (int row = 0; row < Math.min(SELECTED_ROWS, rows); row++) {
+            int selectedRow = row;
+            long start = System.nanoTime();
+            timedOnFx("script.select", () -> table.getSelectionModel().select(selectedRow));
+            awaitOnFx(() -> {
+                ModelPackageVariant selected = state.selectedPackageProperty().get();
+                return selected != null && state.definitionsCache().peekDefinitionsFrom(selected).isPresent();
+            });
+            record("script.select.definitions", start);
+        }
+        if (rows > 0) {
+            TreeItem<Object> firstItem = onFx(() -> table.getRoot().getChildren().get(0));
+            timedOnFx("script.expand", () -> firstItem.setExpanded(true));
+            timedOnFx("script.collapse", () -> firstItem.setExpanded(false));
+        }
+    }
+
+    /**
+     * Opens another dialog while the first one is open: it shares the catalogue, so it is expected to be browsable
+     * without retrieving anything.
+     */
+    private void openSecondDialog(JMadModelSelectionDialogFactory factory, JMadModelSelectionDialog firstDialog)
+            throws Exception {
+        long start = System.nanoTime();
+        Disposable secondSelection = factory.modelSelection().subscribe();
+        JMadModelSelectionDialog secondDialog = awaitDialog(Collections.singletonList(firstDialog));
+        awaitOnFx(() -> !secondDialog.selectionState().loadingProperty().get());
+        record("script.open.second", start);
+        secondSelection.dispose();
+        awaitOnFx(() -> !secondDialog.isShowing());
+    }
+
+    private JMadModelSelectionDialog awaitDialog(List<JMadModelSelectionDialog> excluded) throws Exception {
+        CreatedDialogs createdDialogs = context.getBean(CreatedDialogs.class);
+        awaitOnFx(() -> createdDialogs.showingExcept(excluded).isPresent());
+        return onFx(() -> createdDialogs.showingExcept(excluded).get());
+    }
+
+    private void refresh(JMadModelPackagesSelectionControl packages) throws Exception {
+        RepositoryStatuses statuses = context.getBean(RepositoryStatuses.class);
+        Button refreshButton = button(packages, "Refresh");
+        long start = System.nanoTime();
+        timedOnFx("script.refresh.click", refreshButton::fire);
+        try {
+            awaitOnFx(() -> isFetching(statuses), Duration.ofSeconds(2));
+        } catch (TimeoutException e) {
+            /* already done, or there was nothing to fetch */
+        }
+        awaitOnFx(() -> !isFetching(statuses));
+        record("script.refresh", start);
+    }
+
+    private void fullRefresh(JMadModelPackagesSelectionControl packages, ModelPackSelectionState state)
+            throws Exception {
+        Button fullRefreshButton = button(packages, "Full refresh");
+        long start = System.nanoTime();
+        timedOnFx("script.refresh.full.click", fullRefreshButton::fire);
+        awaitOnFx(() -> !state.loadingProperty().get());
+        record("script.refresh.full", start);
+    }
+
+    private static boolean isFetching(RepositoryStatuses statuses) {
+        return statuses.fetchStatuses().values().stream()
+                .anyMatch(s -> s.state() == RepositoryFetchStatus.State.FETCHING);
+    }
+
+    private Button button(Node root, String text) throws Exception {
+        return onFx(() -> lookup(root, ".button", Button.class, b -> text.equals(b.getText())));
+    }
+
+    private static <T extends Node> T lookup(Node root, String selector, Class<T> type, Predicate<T> condition) {
+        Optional<T> node = root.lookupAll(selector).stream().filter(type::isInstance).map(type::cast)
+                .filter(condition).findFirst();
+        return node.orElseThrow(() -> new IllegalStateException("No " + selector + " found in " + root));
+    }
+
+    private void timedOnFx(String name, Runnable step) throws Exception {
+        Duration duration = onFx(() -> {
+            long start = System.nanoTime();
+            step.run();
+            return elapsedSince(start);
+        });
+        statisticsOf(name).record(duration);
+    }
+
+    private void record(String name, long startNanos) {
+        statisticsOf(name).record(elapsedSince(startNanos));
+    }
+
+    private LatencyStatistics statisticsOf(String name) {
+        synchronized (statistics) {
+            return statistics.computeIfAbsent(name, LatencyStatistics::new);
+        }
+    }
+
+    private static String metricKey(String name, String... tags) {
+        if (tags.length == 0) {
+            return name;
+        }
+        List<String> pairs = new ArrayList<>();
+        for (int i = 0; i + 1 < tags.length; i += 2) {
+            pairs.add(tags[i] + "=" + tags[i + 1]);
+        }
+        return name + pairs.stream().collect(joining(",", "{", "}"));
+    }
+
+    private static void awaitOnFx(BooleanSupplier condition) throws Exception {
+        awaitOnFx(condition, STEP_TIMEOUT);
+    }
+
+    private static void awaitOnFx(BooleanSupplier condition, Duration timeout) throws Exception {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!onFx(condition::getAsBoolean)) {
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("Condition not met within " + timeout);
+            }
+            Thread.sleep(POLL_INTERVAL.toMillis());
+        }
+    }
+
+    private static <T> T onFx(Callable<T> callable) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                result.complete(callable.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result.get(STEP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+}
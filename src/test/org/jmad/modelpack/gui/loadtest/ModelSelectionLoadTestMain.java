@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jmad.modelpack.gui.conf.JMadModelSelectionDialogConfiguration;
+import org.jmad.modelpack.gui.domain.RepositoryPackageSource;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelPackageService;
+import org.jmad.modelpack.gui.synthetic.SyntheticRepositoryManager;
+import org.jmad.modelpack.service.JMadModelPackageRepositoryManager;
+import org.jmad.modelpack.service.JMadModelPackageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.stage.Stage;
+
+/**
+ * Headless load test of the model selection dialog against a {@link SyntheticModelPackageService}: runs the
+ * {@link LoadTestScript} and reports the percentiles of the FX thread latency, of each scripted step and of the metrics
+ * recorded by the GUI. No network or real repository is needed. Run it with {@code ./gradlew loadTest}, or directly
+ * with options of the form {@code --name=value}:
+ * <ul>
+ * <li>{@code variants} (10000), {@code variantsPerPackage} (20), {@code repositories} (4): size of the catalogue</li>
+ * <li>{@code releaseFraction} (0.5), {@code tagFraction} (0.3): variant types, the rest being branches</li>
+ * <li>{@code firstItemLatencyMillis} (200), {@code itemLatencyMicros} (0), {@code definitionsLatencyMillis} (50):
+ * latencies of the synthetic service</li>
+ * <li>{@code errorRate} (0): probability that a listing fails</li>
+ * <li>{@code perRepository} (true): whether the repositories are queried independently</li>
+ * <li>{@code cycles} (6): number of open/filter/search/select/open second dialog/refresh/close cycles</li>
+ * <li>{@code report}: CSV file to write the results to</li>
+ * <li>{@code maxFxLatencyP99Millis}: if set, the run fails (exit code 1) if the 99th percentile of the FX thread
+ * latency is above it</li>
+ * <li>{@code headless} (true): whether to run on the Monocle headless platform</li>
+ * </ul>
+ */
+@Configuration
+@Import(JMadModelSelectionDialogConfiguration.class)
+public class ModelSelectionLoadTestMain extends Application {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ModelSelectionLoadTestMain.class);
+
+    /* set by main(), before the context is created */
+    private static Map<String, String> options = new HashMap<>();
+
+    @Bean
+    public SyntheticModelPackageService syntheticModelPackageService() {
+        SyntheticCatalogue catalogue = SyntheticCatalogue.builder().variants(intOption("variants", 10000))
+                .variantsPerPackage(intOption("variantsPerPackage", 20))
+                .repositories(intOption("repositories", 4))
+                .typeFractions(doubleOption("releaseFraction", 0.5), doubleOption("tagFraction", 0.3)).build();
+        return SyntheticModelPackageService.builder().catalogue(catalogue)
+                .firstItemLatency(Duration.ofMillis(intOption("firstItemLatencyMillis", 200)))
+                .itemLatency(Duration.ofNanos(intOption("itemLatencyMicros", 0) * 1000L))
+                .definitionsLatency(Duration.ofMillis(intOption("definitionsLatencyMillis", 50)))
+                .errorRate(doubleOption("errorRate", 0)).build();
+    }
+
+    @Bean
+    public JMadModelPackageService jmadModelPackageService(SyntheticModelPackageService syntheticService) {
+        return syntheticService.asService();
+    }
+
+    @Bean
+    public JMadModelPackageRepositoryManager jmadModelPackageRepositoryManager(
+            SyntheticModelPackageService syntheticService) {
+        return new SyntheticRepositoryManager(syntheticService.repositories()).asRepositoryManager();
+    }
+
+    @Bean
+    public static CreatedDialogs createdDialogs() {
+        return new CreatedDialogs();
+    }
+
+    @Bean
+    public RepositoryPackageSource repositoryPackageSource(SyntheticModelPackageService syntheticService) {
+        if (!Boolean.parseBoolean(options.getOrDefault("perRepository", "true"))) {
+            /* the fetcher then splits the merged listing of the service */
+            return null;
+        }
+        return syntheticService.asRepositorySource();
+    }
+
+    @Override
+    public void start(Stage primaryStage) {
+        /* the dialog is the only window, and it is closed at the end of each cycle */
+        Platform.setImplicitExit(false);
+        Thread driver = new Thread(this::runLoadTest, "load-test-driver");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    private void runLoadTest() {
+        int status = 1;
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(
+                ModelSelectionLoadTestMain.class)) {
+            List<LatencyStatistics> results = new LoadTestScript(context).run(intOption("cycles", 6));
+            report(results);
+            status = verdict(results);
+        } catch (Exception e) {
+            LOGGER.error("Load test failed", e);
+        } finally {
+            Platform.exit();
+        }
+        System.exit(status);
+    }
+
+    private static void report(List<LatencyStatistics> results) throws IOException {
+        StringBuilder summary = new StringBuilder("Load test results:");
+        List<String> csv = new ArrayList<>();
+        csv.add(LatencyStatistics.csvHeader());
+        for (LatencyStatistics statistics : results) {
+            summary.append(System.lineSeparator()).append(statistics);
+            csv.add(statistics.toCsv());
+        }
+        LOGGER.info("{}", summary);
+        if (options.containsKey("report")) {
+            Path report = Paths.get(options.get("report"));
+            Files.write(report, csv, StandardCharsets.UTF_8);
+            LOGGER.info("Results written to {}", report);
+        }
+    }
+
+    private static int verdict(List<LatencyStatistics> results) {
+        if (!options.containsKey("maxFxLatencyP99Millis")) {
+            return 0;
+        }
+        double maxP99Millis = doubleOption("maxFxLatencyP99Millis", 0);
+        double p99Millis = results.stream().filter(s -> LoadTestScript.FX_THREAD_LATENCY.equals(s.name()))
+                .mapToDouble(s -> LatencyStatistics.millis(s.percentile(99))).findFirst().orElse(0);
+        if (p99Millis > maxP99Millis) {
+            LOGGER.error("FX thread latency p99 of {} ms is above the limit of {} ms", p99Millis, maxP99Millis);
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int intOption(String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    private static double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> parsed = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Options must be of the form --name=value, but got " + arg);
+            }
+            parsed.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        options = parsed;
+
+        if (Boolean.parseBoolean(options.getOrDefault("headless", "true"))) {
+            setDefaultProperty("glass.platform", "Monocle");
+            setDefaultProperty("monocle.platform", "Headless");
+            setDefaultProperty("prism.order", "sw");
+            setDefaultProperty("prism.text", "t2k");
+            setDefaultProperty("java.awt.headless", "true");
+        }
+        /* never replace the snapshot of the real catalogue (or the recent selections) with synthetic ones */
+        setDefaultProperty("jmad.modelpack.gui.snapshot.enabled", "false");
+        setDefaultProperty("jmad.modelpack.gui.recentSelections.enabled", "false");
+        Application.launch(ModelSelectionLoadTestMain.class);
+    }
+
+    private static void setDefaultProperty(String name, String value) {
+        if (System.getProperty(name) == null) {
+            System.setProperty(name, value);
+        }
+    }
+
+}
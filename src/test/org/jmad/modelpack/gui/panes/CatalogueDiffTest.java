@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+import org.jmad.modelpack.domain.ModelPackage;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.gui.synthetic.SyntheticCatalogue;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl.PACKAGE_LINE_ORDER;
+import static org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl.VARIANT_ORDER;
+
+public class CatalogueDiffTest {
+
+    /* the latest and the next variant of each package, in package order */
+    private List<PackageLine> heads;
+    private List<PackageLine> seconds;
+
+    @Before
+    public void setUp() {
+        Map<ModelPackage, List<ModelPackageVariant>> packages = SyntheticCatalogue.builder().variants(400)
+                .variantsPerPackage(2).build().variants().stream()
+                .collect(groupingBy(ModelPackageVariant::modelPackage));
+        heads = new ArrayList<>();
+        seconds = new ArrayList<>();
+        packages.values().stream().sorted(comparing(variants -> variants.get(0), PACKAGE_LINE_ORDER))
+                .forEach(variants -> {
+                    variants.sort(VARIANT_ORDER);
+                    heads.add(new PackageLine(variants.get(0)));
+                    seconds.add(new PackageLine(variants.get(1)));
+                });
+    }
+
+    @Test
+    public void unchangedRowsDoNotTouchTheItems() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(heads.subList(0, 10));
+        List<TreeItem<PackageLine>> before = new ArrayList<>(items);
+        AtomicInteger changes = countChanges(items);
+
+        CatalogueDiff diff = apply(items, rowsOf(heads.subList(0, 10)));
+
+        assertThat(diff.isEmpty()).isTrue();
+        assertThat(changes).hasValue(0);
+        assertThat(items).containsExactlyElementsOf(before);
+    }
+
+    @Test
+    public void insertedRowsAreInsertedInPlace() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(keep(heads.subList(0, 10), i -> i != 3 && i != 4));
+        List<TreeItem<PackageLine>> before = new ArrayList<>(items);
+
+        CatalogueDiff diff = apply(items, rowsOf(heads.subList(0, 10)));
+
+        assertThat(diff.operations()).extracting(Object::toString).containsExactly("INSERT@3x2");
+        assertThat(linesOf(items)).containsExactlyElementsOf(heads.subList(0, 10));
+        assertThat(items).containsAll(before);
+    }
+
+    @Test
+    public void removedRowsAreRemoved() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(heads.subList(0, 10));
+
+        CatalogueDiff diff = apply(items, rowsOf(keep(heads.subList(0, 10), i -> i != 0 && i != 5 && i != 6)));
+
+        assertThat(diff.operations()).extracting(Object::toString).containsExactly("REMOVE@0x1", "REMOVE@4x2");
+        assertThat(linesOf(items)).containsExactlyElementsOf(keep(heads.subList(0, 10), i -> i != 0 && i != 5
+                && i != 6));
+    }
+
+    @Test
+    public void keptItemsMoveWithTheRowsAroundThem() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(keep(heads.subList(0, 6), i -> i % 2 == 0));
+        List<TreeItem<PackageLine>> before = new ArrayList<>(items);
+
+        apply(items, rowsOf(keep(heads.subList(0, 6), i -> i != 0)));
+
+        assertThat(linesOf(items)).containsExactlyElementsOf(heads.subList(1, 6));
+        assertThat(items.get(1)).isSameAs(before.get(1));
+        assertThat(items.get(3)).isSameAs(before.get(2));
+    }
+
+    @Test
+    public void newHeadOfAPackageIsAnUpdateOfItsItem() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(heads.subList(0, 5));
+        List<TreeItem<PackageLine>> before = new ArrayList<>(items);
+        List<PackageLine> updated = new ArrayList<>(heads.subList(0, 5));
+        updated.set(2, seconds.get(2));
+
+        CatalogueDiff diff = apply(items, rowsOf(updated));
+
+        assertThat(diff.operations()).extracting(Object::toString).containsExactly("UPDATE@2x1");
+        assertThat(items).containsExactlyElementsOf(before);
+        assertThat(linesOf(items)).containsExactlyElementsOf(updated);
+    }
+
+    @Test
+    public void allChangedRowsAreReplaced() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(keep(heads, i -> i % 2 == 0));
+        List<PackageLine> others = keep(heads, i -> i % 2 == 1);
+
+        apply(items, rowsOf(others));
+
+        assertThat(linesOf(items)).containsExactlyElementsOf(others);
+    }
+
+    @Test
+    public void operationsUpToTheThresholdAreAppliedOneByOne() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(heads.subList(0, 128));
+        AtomicInteger changes = countChanges(items);
+
+        CatalogueDiff diff = apply(items, rowsOf(keep(heads.subList(0, 128), i -> i % 2 == 0)));
+
+        assertThat(diff.operations()).hasSize(64);
+        assertThat(changes).hasValue(64);
+        assertThat(items).hasSize(64);
+    }
+
+    @Test
+    public void operationsAboveTheThresholdAreAppliedAtOnce() {
+        ObservableList<TreeItem<PackageLine>> items = itemsOf(heads.subList(0, 130));
+        AtomicInteger changes = countChanges(items);
+
+        CatalogueDiff diff = apply(items, rowsOf(keep(heads.subList(0, 130), i -> i % 2 == 0)));
+
+        assertThat(diff.operations()).hasSize(65);
+        assertThat(changes).hasValue(1);
+        assertThat(linesOf(items)).containsExactlyElementsOf(keep(heads.subList(0, 130), i -> i % 2 == 0));
+    }
+
+    @Test
+    public void expandedItemWithUnchangedChildrenIsNotUpdated() {
+        List<PackageLine> visibleLines = new ArrayList<>();
+        visibleLines.add(heads.get(0));
+        visibleLines.add(seconds.get(0));
+        PackageTreeItem item = new PackageTreeItem(heads.get(0), false, () -> new ArrayList<>(visibleLines));
+        item.setExpanded(true);
+        ObservableList<TreeItem<PackageLine>> items = FXCollections.observableArrayList(
+                Collections.singletonList(item));
+        List<CatalogueDiff.Row> rows = Collections.singletonList(new CatalogueDiff.Row(heads.get(0), false));
+
+        assertThat(CatalogueDiff.between(items, rows, PACKAGE_LINE_ORDER).isEmpty()).isTrue();
+
+        visibleLines.set(1, new PackageLine(seconds.get(0).modelPackageVariant()));
+        CatalogueDiff diff = CatalogueDiff.between(items, rows, PACKAGE_LINE_ORDER);
+        assertThat(diff.operations()).extracting(Object::toString).containsExactly("UPDATE@0x1");
+    }
+
+    private static CatalogueDiff apply(ObservableList<TreeItem<PackageLine>> items, List<CatalogueDiff.Row> rows) {
+        CatalogueDiff diff = CatalogueDiff.between(items, rows, PACKAGE_LINE_ORDER);
+        diff.applyTo(items, row -> new TreeItem<>(row.line()), (item, row) -> item.setValue(row.line()));
+        return diff;
+    }
+
+    private static ObservableList<TreeItem<PackageLine>> itemsOf(List<PackageLine> lines) {
+        return lines.stream().map(TreeItem::new).collect(toCollection(FXCollections::observableArrayList));
+    }
+
+    private static List<CatalogueDiff.Row> rowsOf(List<PackageLine> lines) {
+        return lines.stream().map(line -> new CatalogueDiff.Row(line, true)).collect(toList());
+    }
+
+    private static List<PackageLine> linesOf(List<TreeItem<PackageLine>> items) {
+        return items.stream().map(TreeItem::getValue).collect(toList());
+    }
+
+    private static List<PackageLine> keep(List<PackageLine> lines, Predicate<Integer> index) {
+        List<PackageLine> kept = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (index.test(i)) {
+                kept.add(lines.get(i));
+            }
+        }
+        return kept;
+    }
+
+    private static AtomicInteger countChanges(ObservableList<TreeItem<PackageLine>> items) {
+        AtomicInteger changes = new AtomicInteger();
+        items.addListener((ListChangeListener<TreeItem<PackageLine>>) change -> changes.incrementAndGet());
+        return changes;
+    }
+
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.panes;
+
+import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+import org.jmad.modelpack.gui.synthetic.SyntheticModelDefinitions;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OpticsNameIndexTest {
+
+    private final OpticsDefinition injection = SyntheticModelDefinitions.optics("R2018a_A11mC11mA10mL10m");
+    private final OpticsDefinition collision = SyntheticModelDefinitions.optics("R2018a_A30cmC30cmA10mL300cm");
+    private final OpticsDefinition ions = SyntheticModelDefinitions.optics("R2018i_A11mC11mA10mL10m");
+    private final OpticsDefinition md = SyntheticModelDefinitions.optics("MD_injection_2018a");
+
+    private OpticsNameIndex index;
+
+    @Before
+    public void setUp() {
+        index = new OpticsNameIndex();
+        index.reset(Arrays.asList(injection, collision, ions, md));
+    }
+
+    @Test
+    public void emptyQueryMatchesAll() {
+        assertThat(index.matches("")).isNull();
+        assertThat(index.matches("   ")).isNull();
+        assertThat(index.matches(null)).isNull();
+    }
+
+    @Test
+    public void nameContainingTheQueryMatches() {
+        assertThat(index.matches("a11m")).containsExactlyInAnyOrder(injection, ions);
+        assertThat(index.matches("30cm")).containsExactly(collision);
+        assertThat(index.matches("l")).containsExactlyInAnyOrder(injection, collision, ions);
+        assertThat(index.matches("2018a")).containsExactlyInAnyOrder(injection, collision, md);
+        assertThat(index.matches("nothing")).isEmpty();
+    }
+
+    @Test
+    public void queryIsCaseInsensitive() {
+        assertThat(index.matches("R2018I")).containsExactly(ions);
+        assertThat(index.matches("md_INJ")).containsExactly(md);
+        assertThat(index.matches("  r2018i  ")).containsExactly(ions);
+    }
+
+    @Test
+    public void typingAndErasingGivesTheSameMatchesAsAFreshQuery() {
+        String query = "r2018a_a11";
+        for (int length = 1; length <= query.length(); length++) {
+            assertThat(index.matches(query.substring(0, length))).as(query.substring(0, length))
+                    .containsExactlyInAnyOrderElementsOf(freshMatches(query.substring(0, length)));
+        }
+        for (int length = query.length() - 1; length >= 1; length--) {
+            assertThat(index.matches(query.substring(0, length))).as(query.substring(0, length))
+                    .containsExactlyInAnyOrderElementsOf(freshMatches(query.substring(0, length)));
+        }
+        assertThat(index.matches("a30")).containsExactly(collision);
+    }
+
+    @Test
+    public void resetForgetsThePreviousOpticsAndQuery() {
+        assertThat(index.matches("r2018")).hasSize(3);
+        OpticsDefinition other = SyntheticModelDefinitions.optics("R2018a_other");
+
+        index.reset(Arrays.asList(other, md));
+
+        assertThat(index.matches("r2018a")).containsExactly(other);
+        assertThat(index.matches("r2018a_a11")).isEmpty();
+        assertThat(index.matches("2018a")).containsExactlyInAnyOrder(other, md);
+    }
+
+    @Test
+    public void opticsStartingWithTheQueryComeFirst() {
+        List<OpticsDefinition> ordered = Arrays.asList(md, ions, collision, injection).stream()
+                .sorted(index.order("MD")).collect(toList());
+        assertThat(ordered).containsExactly(md, injection, collision, ions);
+
+        ordered = Arrays.asList(md, ions, collision, injection).stream().sorted(index.order("injection"))
+                .collect(toList());
+        assertThat(ordered).containsExactly(injection, collision, ions, md);
+    }
+
+    @Test
+    public void emptyQueryKeepsTheIndexedOrder() {
+        List<OpticsDefinition> ordered = Arrays.asList(md, ions, collision, injection).stream()
+                .sorted(index.order("")).collect(toList());
+
+        assertThat(ordered).containsExactly(injection, collision, ions, md);
+    }
+
+    private Set<OpticsDefinition> freshMatches(String query) {
+        OpticsNameIndex freshIndex = new OpticsNameIndex();
+        freshIndex.reset(Arrays.asList(injection, collision, ions, md));
+        return freshIndex.matches(query);
+    }
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.synthetic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackage;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.Variant;
+import org.jmad.modelpack.domain.VariantType;
+
+/**
+ * Generates reproducible, synthetic catalogues of model package variants of arbitrary size, e.g. for benchmarks and
+ * for exercising the GUI without a real repository. The same settings (including the seed) always produce an equal
+ * catalogue, so that results of different runs can be compared.
+ */
+public final class SyntheticCatalogue {
+
+    public static final long DEFAULT_SEED = 42L;
+
+    private final int variantCount;
+    private final int variantsPerPackage;
+    private final int repositoryCount;
+    private final double releaseFraction;
+    private final double tagFraction;
+    private final long seed;
+
+    private SyntheticCatalogue(Builder builder) {
+        this.variantCount = builder.variantCount;
+        this.variantsPerPackage = builder.variantsPerPackage;
+        this.repositoryCount = builder.repositoryCount;
+        this.releaseFraction = builder.releaseFraction;
+        this.tagFraction = builder.tagFraction;
+        this.seed = builder.seed;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static List<ModelPackageVariant> ofSize(int variantCount) {
+        return builder().variants(variantCount).build().variants();
+    }
+
+    /**
+     * @return the variants of this catalogue, shuffled in the order a repository would typically deliver them
+     */
+    public List<ModelPackageVariant> variants() {
+        Random random = new Random(seed);
+        List<JMadModelPackageRepository> repositories = repositories();
+
+        List<ModelPackageVariant> variants = new ArrayList<>(variantCount);
+        ModelPackage modelPackage = null;
+        for (int i = 0; i < variantCount; i++) {
+            int variantIndex = i % variantsPerPackage;
+            if (variantIndex == 0) {
+                int packageIndex = i / variantsPerPackage;
+                modelPackage = modelPackage(packageIndex, repositories.get(packageIndex % repositoryCount));
+            }
+            variants.add(new ModelPackageVariant(modelPackage, variant(variantIndex, random)));
+        }
+        Collections.shuffle(variants, random);
+        return variants;
+    }
+
+    public List<JMadModelPackageRepository> repositories() {
+        List<JMadModelPackageRepository> repositories = new ArrayList<>(repositoryCount);
+        for (int i = 0; i < repositoryCount; i++) {
+            repositories.add(repository(i));
+        }
+        return repositories;
+    }
+
+    public int variantCount() {
+        return variantCount;
+    }
+
+    private Variant variant(int index, Random random) {
+        double draw = random.nextDouble();
+        if (draw < releaseFraction) {
+            return new Variant(String.format("v%d.%d.%d", index / 100, (index / 10) % 10, index % 10),
+                    VariantType.RELEASE);
+        }
+        if (draw < releaseFraction + tagFraction) {
+            return new Variant(String.format("tag-%04d", index), VariantType.TAG);
+        }
+        return new Variant(String.format("feature/branch-%04d", index), VariantType.BRANCH);
+    }
+
+    private static ModelPackage modelPackage(int index, JMadModelPackageRepository repository) {
+        String name = String.format("synthetic-package-%06d", index);
+        return new ModelPackage(name, repository, name);
+    }
+
+    private static JMadModelPackageRepository repository(int index) {
+        return new JMadModelPackageRepository("synthetic://repository-" + index, "synthetic-repository-" + index,
+                "synthetic");
+    }
+
+    public static class Builder {
+        private int variantCount = 1000;
+        private int variantsPerPackage = 20;
+        private int repositoryCount = 1;
+        private double releaseFraction = 0.5;
+        private double tagFraction = 0.3;
+        private long seed = DEFAULT_SEED;
+
+        public Builder variants(int variantCount) {
+            this.variantCount = requirePositive(variantCount, "variantCount");
+            return this;
+        }
+
+        public Builder variantsPerPackage(int variantsPerPackage) {
+            this.variantsPerPackage = requirePositive(variantsPerPackage, "variantsPerPackage");
+            return this;
+        }
+
+        public Builder repositories(int repositoryCount) {
+            this.repositoryCount = requirePositive(repositoryCount, "repositoryCount");
+            return this;
+        }
+
+        /**
+         * Sets the fractions of releases and tags among the variants, the remaining ones being branches.
+         */
+        public Builder typeFractions(double releaseFraction, double tagFraction) {
+            if (releaseFraction < 0 || tagFraction < 0 || releaseFraction + tagFraction > 1) {
+                throw new IllegalArgumentException(
+                        "release and tag fractions must be positive and sum up to <= 1, but were " + releaseFraction + " and " + tagFraction);
+            }
+            this.releaseFraction = releaseFraction;
+            this.tagFraction = tagFraction;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticCatalogue build() {
+            return new SyntheticCatalogue(this);
+        }
+
+        private static int requirePositive(int value, String name) {
+            if (value <= 0) {
+                throw new IllegalArgumentException(name + " must be positive, but was " + value);
+            }
+            return value;
+        }
+    }
+}
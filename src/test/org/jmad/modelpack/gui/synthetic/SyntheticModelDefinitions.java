@@ -0,0 +1,61 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.synthetic;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableMap;
+
+import cern.accsoft.steering.jmad.domain.machine.RangeDefinition;
+import cern.accsoft.steering.jmad.domain.machine.SequenceDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+
+/**
+ * Creates small, hand-made model definitions (with their optics, sequences and ranges) for tests, where the names
+ * matter rather than the size.
+ */
+public final class SyntheticModelDefinitions {
+
+    private SyntheticModelDefinitions() {
+        /* static methods only */
+    }
+
+    /**
+     * @return a model definition with the given optics (the first one being the default) and one sequence of the
+     *         given name, with a single range "ALL"
+     */
+    public static JMadModelDefinition modelDefinition(String name, String sequenceName, String... opticsNames) {
+        List<OpticsDefinition> optics = Arrays.stream(opticsNames).map(SyntheticModelDefinitions::optics)
+                .collect(toList());
+        SequenceDefinition sequence = sequence(sequenceName, range("ALL"));
+        ImmutableMap.Builder<String, Object> values = ImmutableMap.<String, Object> builder().put("getName", name)
+                .put("getOpticsDefinitions", optics)
+                .put("getSequenceDefinitions", Collections.singletonList(sequence))
+                .put("getDefaultSequenceDefinition", sequence);
+        if (!optics.isEmpty()) {
+            values.put("getDefaultOpticsDefinition", optics.get(0));
+        }
+        return SyntheticProxies.dataObject(JMadModelDefinition.class, name, values.build());
+    }
+
+    public static OpticsDefinition optics(String name) {
+        return SyntheticProxies.dataObject(OpticsDefinition.class, name, ImmutableMap.of("getName", name));
+    }
+
+    public static SequenceDefinition sequence(String name, RangeDefinition range) {
+        return SyntheticProxies.dataObject(SequenceDefinition.class, name, ImmutableMap.of("getName", name,
+                "getRangeDefinitions", Collections.singletonList(range), "getDefaultRangeDefinition", range));
+    }
+
+    public static RangeDefinition range(String name) {
+        return SyntheticProxies.dataObject(RangeDefinition.class, name, ImmutableMap.of("getName", name));
+    }
+
+}
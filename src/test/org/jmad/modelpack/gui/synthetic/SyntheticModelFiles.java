@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.synthetic;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.collect.ImmutableMap;
+
+import cern.accsoft.steering.jmad.domain.file.ModelFile;
+import cern.accsoft.steering.jmad.domain.machine.RangeDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+import cern.accsoft.steering.jmad.modeldefs.io.ModelFileFinder;
+import cern.accsoft.steering.jmad.modeldefs.io.ModelFileFinderManager;
+
+/**
+ * Creates model definitions, optics and ranges that reference model files, and the file finders that look them up,
+ * for the tests of the file checks.
+ */
+public final class SyntheticModelFiles {
+
+    private SyntheticModelFiles() {
+        /* static methods only */
+    }
+
+    public static ModelFile modelFile(String name) {
+        return SyntheticProxies.dataObject(ModelFile.class, name, ImmutableMap.of("getName", name));
+    }
+
+    public static JMadModelDefinition modelDefinition(String name, ModelFile... initFiles) {
+        return SyntheticProxies.dataObject(JMadModelDefinition.class, name,
+                ImmutableMap.of("getName", name, "getInitFiles", Arrays.asList(initFiles)));
+    }
+
+    public static OpticsDefinition optics(String name, ModelFile... initFiles) {
+        return SyntheticProxies.dataObject(OpticsDefinition.class, name,
+                ImmutableMap.of("getName", name, "getInitFiles", Arrays.asList(initFiles)));
+    }
+
+    public static RangeDefinition range(String name, ModelFile... postUseFiles) {
+        return SyntheticProxies.dataObject(RangeDefinition.class, name,
+                ImmutableMap.of("getName", name, "getPostUseFiles", Arrays.asList(postUseFiles)));
+    }
+
+    /**
+     * @param streams opens the stream of a file: null if it cannot be found, or throws if it cannot be read
+     * @return a manager that gives the same finder for all the model definitions
+     */
+    public static ModelFileFinderManager fileFinderManager(Function<ModelFile, InputStream> streams) {
+        ModelFileFinder finder = SyntheticProxies.delegatingTo(ModelFileFinder.class, new FileFinder(streams));
+        return SyntheticProxies.delegatingTo(ModelFileFinderManager.class, new FileFinderManager(() -> finder));
+    }
+
+    /**
+     * @return a manager that fails with the given error to give the finder of any model definition
+     */
+    public static ModelFileFinderManager failingFileFinderManager(RuntimeException error) {
+        return SyntheticProxies.delegatingTo(ModelFileFinderManager.class, new FileFinderManager(() -> {
+            throw error;
+        }));
+    }
+
+    /**
+     * The methods of the file finder that are used, called through {@link SyntheticProxies#delegatingTo}
+     */
+    public static final class FileFinder {
+        private final Function<ModelFile, InputStream> streams;
+
+        private FileFinder(Function<ModelFile, InputStream> streams) {
+            this.streams = requireNonNull(streams, "streams must not be null");
+        }
+
+        public InputStream getStream(ModelFile file) {
+            return streams.apply(file);
+        }
+
+        @Override
+        public String toString() {
+            return "synthetic file finder";
+        }
+    }
+
+    /**
+     * The methods of the file finder manager that are used, called through {@link SyntheticProxies#delegatingTo}
+     */
+    public static final class FileFinderManager {
+        private final Supplier<ModelFileFinder> finder;
+
+        private FileFinderManager(Supplier<ModelFileFinder> finder) {
+            this.finder = finder;
+        }
+
+        public ModelFileFinder getModelFileFinder(JMadModelDefinition modelDefinition) {
+            return finder.get();
+        }
+
+        @Override
+        public String toString() {
+            return "synthetic file finder manager";
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.synthetic;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.domain.ModelPackageVariant;
+import org.jmad.modelpack.domain.VariantType;
+import org.jmad.modelpack.gui.domain.RepositoryPackageSource;
+import org.jmad.modelpack.service.JMadModelPackageService;
+import org.jmad.modelpack.service.JMadModelPackageService.Mode;
+
+import com.google.common.collect.ImmutableMap;
+
+import cern.accsoft.steering.jmad.domain.machine.RangeDefinition;
+import cern.accsoft.steering.jmad.domain.machine.SequenceDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.JMadModelDefinition;
+import cern.accsoft.steering.jmad.modeldefs.domain.OpticsDefinition;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * A model package service serving a {@link SyntheticCatalogue}, with configurable latencies and injected errors, to
+ * exercise the GUI without network or real repositories. The offline mode serves the releases only, without latency,
+ * like a local cache would.
+ */
+public final class SyntheticModelPackageService {
+
+    private final List<ModelPackageVariant> variants;
+    private final Map<JMadModelPackageRepository, List<ModelPackageVariant>> variantsByRepository;
+    private final List<JMadModelPackageRepository> repositories;
+    private final Duration firstItemLatency;
+    private final Duration itemLatency;
+    private final double errorRate;
+    private final Duration definitionsLatency;
+    private final int definitionsPerVariant;
+    private final int opticsPerDefinition;
+    /* guarded by itself */
+    private final Random random;
+    private volatile Mode mode = Mode.ONLINE;
+    private final List<String> modeSwitchThreads = new CopyOnWriteArrayList<>();
+    private final AtomicInteger listingsCount = new AtomicInteger();
+    private final AtomicInteger definitionsLoadsCount = new AtomicInteger();
+
+    private SyntheticModelPackageService(Builder builder) {
+        this.variants = Collections.unmodifiableList(builder.catalogue.variants());
+        this.repositories = builder.catalogue.repositories();
+        this.variantsByRepository = variants.stream().collect(groupingBy(v -> v.modelPackage().repository()));
+        this.firstItemLatency = builder.firstItemLatency;
+        this.itemLatency = builder.itemLatency;
+        this.errorRate = builder.errorRate;
+        this.definitionsLatency = builder.definitionsLatency;
+        this.definitionsPerVariant = builder.definitionsPerVariant;
+        this.opticsPerDefinition = builder.opticsPerDefinition;
+        this.random = new Random(builder.seed);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return this service, as the interface expected by the GUI
+     */
+    public JMadModelPackageService asService() {
+        return SyntheticProxies.delegatingTo(JMadModelPackageService.class, this);
+    }
+
+    /**
+     * @return a source querying the repositories of this service independently, each with its own latency and errors
+     */
+    public RepositoryPackageSource asRepositorySource() {
+        return this::availablePackages;
+    }
+
+    public List<JMadModelPackageRepository> repositories() {
+        return repositories;
+    }
+
+    /**
+     * @return the number of listings started so far, merged or of a single repository
+     */
+    public int listingsCount() {
+        return listingsCount.get();
+    }
+
+    /**
+     * @return the number of model definitions retrievals started so far
+     */
+    public int definitionsLoadsCount() {
+        return definitionsLoadsCount.get();
+    }
+
+    /**
+     * @return the names of the threads on which the mode was set so far, in order
+     */
+    public List<String> modeSwitchThreads() {
+        return Collections.unmodifiableList(modeSwitchThreads);
+    }
+
+    public Flux<ModelPackageVariant> availablePackages() {
+        return listing(variants, "the merged listing");
+    }
+
+    public Flux<ModelPackageVariant> availablePackages(JMadModelPackageRepository repository) {
+        return listing(variantsByRepository.getOrDefault(repository, Collections.emptyList()),
+                String.valueOf(repository));
+    }
+
+    public Flux<JMadModelDefinition> modelDefinitionsFrom(ModelPackageVariant variant) {
+        return Flux.defer(() -> {
+            definitionsLoadsCount.incrementAndGet();
+            List<JMadModelDefinition> definitions = new ArrayList<>(definitionsPerVariant);
+            for (int i = 0; i < definitionsPerVariant; i++) {
+                definitions.add(definition(variant, i));
+            }
+            return Flux.fromIterable(definitions).delaySubscription(definitionsLatency);
+        });
+    }
+
+    public Mono<Void> clearCache() {
+        return Mono.empty();
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        modeSwitchThreads.add(Thread.currentThread().getName());
+        this.mode = requireNonNull(mode, "mode must not be null");
+    }
+
+    private Flux<ModelPackageVariant> listing(List<ModelPackageVariant> listed, String description) {
+        return Flux.defer(() -> {
+            listingsCount.incrementAndGet();
+            if (mode == Mode.OFFLINE) {
+                return Flux.fromIterable(
+                        listed.stream().filter(v -> v.variant().type() == VariantType.RELEASE).collect(toList()));
+            }
+            int failAfter = failAfter(listed.size());
+            Flux<ModelPackageVariant> items = Flux.fromIterable(failAfter < 0 ? listed : listed.subList(0, failAfter));
+            if (!itemLatency.isZero()) {
+                items = items.delayElements(itemLatency);
+            }
+            if (failAfter >= 0) {
+                items = items.concatWith(Flux.error(new IllegalStateException(
+                        "Synthetic failure of " + description + " after " + failAfter + " packages")));
+            }
+            return items.delaySubscription(firstItemLatency);
+        });
+    }
+
+    /**
+     * @return the number of packages to deliver before an injected failure, or -1 if the listing succeeds
+     */
+    private int failAfter(int size) {
+        synchronized (random) {
+            if (random.nextDouble() >= errorRate) {
+                return -1;
+            }
+            return size == 0 ? 0 : random.nextInt(size);
+        }
+    }
+
+    private JMadModelDefinition definition(ModelPackageVariant variant, int index) {
+        String name = variant.modelPackage().name() + "-" + variant.variant().name() + "-model-" + index;
+        List<OpticsDefinition> optics = new ArrayList<>(opticsPerDefinition);
+        for (int i = 0; i < opticsPerDefinition; i++) {
+            optics.add(named(OpticsDefinition.class, name + "-optics-" + i));
+        }
+        RangeDefinition range = named(RangeDefinition.class, "ALL");
+        SequenceDefinition sequence = SyntheticProxies.dataObject(SequenceDefinition.class, name + "-sequence",
+                ImmutableMap.of("getName", name + "-sequence", "getRangeDefinitions",
+                        Collections.singletonList(range), "getDefaultRangeDefinition", range));
+        ImmutableMap.Builder<String, Object> values = ImmutableMap.<String, Object> builder().put("getName", name)
+                .put("getOpticsDefinitions", optics)
+                .put("getSequenceDefinitions", Collections.singletonList(sequence))
+                .put("getDefaultSequenceDefinition", sequence);
+        if (!optics.isEmpty()) {
+            values.put("getDefaultOpticsDefinition", optics.get(0));
+        }
+        return SyntheticProxies.dataObject(JMadModelDefinition.class, name, values.build());
+    }
+
+    private static <T> T named(Class<T> type, String name) {
+        return SyntheticProxies.dataObject(type, name, ImmutableMap.of("getName", name));
+    }
+
+    public static class Builder {
+        private SyntheticCatalogue catalogue = SyntheticCatalogue.builder().build();
+        private Duration firstItemLatency = Duration.ZERO;
+        private Duration itemLatency = Duration.ZERO;
+        private double errorRate = 0;
+        private Duration definitionsLatency = Duration.ZERO;
+        private int definitionsPerVariant = 2;
+        private int opticsPerDefinition = 10;
+        private long seed = SyntheticCatalogue.DEFAULT_SEED;
+
+        public Builder catalogue(SyntheticCatalogue catalogue) {
+            this.catalogue = requireNonNull(catalogue, "catalogue must not be null");
+            return this;
+        }
+
+        /**
+         * Sets the latency before the first package of each listing, e.g. the time to reach the repository
+         */
+        public Builder firstItemLatency(Duration firstItemLatency) {
+            this.firstItemLatency = requireNonNull(firstItemLatency, "firstItemLatency must not be null");
+            return this;
+        }
+
+        /**
+         * Sets the latency between two packages of a listing
+         */
+        public Builder itemLatency(Duration itemLatency) {
+            this.itemLatency = requireNonNull(itemLatency, "itemLatency must not be null");
+            return this;
+        }
+
+        /**
+         * Sets the probability that a listing fails after a random number of packages
+         */
+        public Builder errorRate(double errorRate) {
+            if (errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException("errorRate must be between 0 and 1, but was " + errorRate);
+            }
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        public Builder definitionsLatency(Duration definitionsLatency) {
+            this.definitionsLatency = requireNonNull(definitionsLatency, "definitionsLatency must not be null");
+            return this;
+        }
+
+        public Builder definitionsPerVariant(int definitionsPerVariant) {
+            if (definitionsPerVariant < 0) {
+                throw new IllegalArgumentException("definitionsPerVariant must not be negative");
+            }
+            this.definitionsPerVariant = definitionsPerVariant;
+            return this;
+        }
+
+        public Builder opticsPerDefinition(int opticsPerDefinition) {
+            if (opticsPerDefinition < 0) {
+                throw new IllegalArgumentException("opticsPerDefinition must not be negative");
+            }
+            this.opticsPerDefinition = opticsPerDefinition;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public SyntheticModelPackageService build() {
+            return new SyntheticModelPackageService(this);
+        }
+    }
+
+}
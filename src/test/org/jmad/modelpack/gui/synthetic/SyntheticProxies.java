@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.synthetic;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implements the interfaces of the model package service (and of the jmad domain) through dynamic proxies, so that the
+ * synthetic implementations only have to provide the methods the GUI actually uses, whatever the version of the
+ * interfaces on the classpath.
+ */
+final class SyntheticProxies {
+
+    private SyntheticProxies() {
+        /* static methods only */
+    }
+
+    /**
+     * @return an implementation of the given interface that forwards each call to the public method of the delegate
+     *         with the same name and parameter types. Calls to other methods fail with an
+     *         {@link UnsupportedOperationException}.
+     */
+    static <T> T delegatingTo(Class<T> type, Object delegate) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (p, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return objectMethod(p, method, args, delegate.toString());
+            }
+            Method target;
+            try {
+                target = delegate.getClass().getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                throw new UnsupportedOperationException(
+                        delegate.getClass().getSimpleName() + " does not support " + method.getName(), e);
+            }
+            try {
+                return target.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        });
+        return type.cast(proxy);
+    }
+
+    /**
+     * @return an immutable data object implementing the given interface, whose getters return the given values (by
+     *         method name). Other methods return an empty list, false, zero or null, depending on their return type.
+     */
+    static <T> T dataObject(Class<T> type, String name, Map<String, Object> values) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (p, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return objectMethod(p, method, args, name);
+            }
+            if (values.containsKey(method.getName())) {
+                return values.get(method.getName());
+            }
+            return defaultValue(method.getReturnType());
+        });
+        return type.cast(proxy);
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args, String name) {
+        switch (method.getName()) {
+        case "equals":
+            return proxy == args[0];
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        default:
+            return name;
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == List.class) {
+            return Collections.emptyList();
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        return null;
+    }
+
+}
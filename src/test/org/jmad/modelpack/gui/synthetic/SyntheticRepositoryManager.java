@@ -0,0 +1,70 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.synthetic;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jmad.modelpack.domain.JMadModelPackageRepository;
+import org.jmad.modelpack.service.JMadModelPackageRepositoryManager;
+import org.jmad.modelpack.service.JMadModelPackageRepositoryManager.EnableState;
+
+import com.google.common.collect.ImmutableMap;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ReplayProcessor;
+
+/**
+ * A repository manager for the repositories of a {@link SyntheticModelPackageService}, all enabled initially. Enabling
+ * and disabling only changes the published state.
+ */
+public final class SyntheticRepositoryManager {
+
+    /* guarded by this */
+    private final Map<JMadModelPackageRepository, EnableState> states = new LinkedHashMap<>();
+    private final ReplayProcessor<Map<JMadModelPackageRepository, EnableState>> state = ReplayProcessor.cacheLast();
+
+    public SyntheticRepositoryManager(Collection<JMadModelPackageRepository> repositories) {
+        requireNonNull(repositories, "repositories must not be null").forEach(r -> states.put(r, stateOf(true)));
+        state.onNext(ImmutableMap.copyOf(states));
+    }
+
+    /**
+     * @return this manager, as the interface expected by the GUI
+     */
+    public JMadModelPackageRepositoryManager asRepositoryManager() {
+        return SyntheticProxies.delegatingTo(JMadModelPackageRepositoryManager.class, this);
+    }
+
+    public Flux<Map<JMadModelPackageRepository, EnableState>> state() {
+        return state;
+    }
+
+    public void enable(JMadModelPackageRepository repository) {
+        setEnabled(repository, true);
+    }
+
+    public void disable(JMadModelPackageRepository repository) {
+        setEnabled(repository, false);
+    }
+
+    private synchronized void setEnabled(JMadModelPackageRepository repository, boolean enabled) {
+        if (!states.containsKey(repository)) {
+            throw new IllegalArgumentException("Unknown repository " + repository);
+        }
+        states.put(repository, stateOf(enabled));
+        state.onNext(ImmutableMap.copyOf(states));
+    }
+
+    private static EnableState stateOf(boolean enabled) {
+        return Arrays.stream(EnableState.values()).filter(s -> s.asBoolEnabled() == enabled).findFirst()
+                .orElseThrow(() -> new IllegalStateException("No enable state for enabled=" + enabled));
+    }
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jmad.modelpack.gui.util.FxThreadStallDetector.Stall;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.testfx.util.WaitForAsyncUtils;
+
+import javafx.application.Platform;
+
+public class FxThreadStallDetectorTest {
+
+    private static final Duration THRESHOLD = Duration.ofMillis(100);
+    private static final Duration PING_INTERVAL = Duration.ofMillis(10);
+
+    private final List<Stall> stalls = new CopyOnWriteArrayList<>();
+    private final FxThreadStallDetector detector = new FxThreadStallDetector(THRESHOLD, PING_INTERVAL, stalls::add);
+
+    @BeforeClass
+    public static void initFx() {
+        FxUtils.ensureFxInitialized();
+    }
+
+    @After
+    public void tearDown() {
+        detector.stop();
+    }
+
+    @Test
+    public void stallIsReportedWithTheCodeThatCausedIt() throws TimeoutException {
+        detector.start();
+        waitForResponsiveFxThread();
+
+        Platform.runLater(() -> blockFxThread(Duration.ofMillis(400)));
+
+        WaitForAsyncUtils.waitFor(10, TimeUnit.SECONDS, () -> !stalls.isEmpty());
+        Stall stall = stalls.get(0);
+        assertThat(stall.duration()).isGreaterThanOrEqualTo(THRESHOLD);
+        assertThat(stall.culprit()).hasValueSatisfying(frame -> {
+            assertThat(frame.getClassName()).isEqualTo(FxThreadStallDetectorTest.class.getName());
+            assertThat(frame.getMethodName()).isEqualTo("blockFxThread");
+        });
+    }
+
+    @Test
+    public void responsiveFxThreadIsNotReported() {
+        detector.start();
+
+        WaitForAsyncUtils.sleep(THRESHOLD.multipliedBy(3).toMillis(), TimeUnit.MILLISECONDS);
+        Platform.runLater(() -> blockFxThread(THRESHOLD.dividedBy(4)));
+        WaitForAsyncUtils.sleep(THRESHOLD.multipliedBy(3).toMillis(), TimeUnit.MILLISECONDS);
+
+        assertThat(stalls).isEmpty();
+    }
+
+    @Test
+    public void nothingIsReportedOnceStopped() {
+        detector.start();
+        detector.start();
+        assertThat(detector.isStarted()).isTrue();
+
+        detector.stop();
+        Platform.runLater(() -> blockFxThread(THRESHOLD.multipliedBy(3)));
+        WaitForAsyncUtils.sleep(THRESHOLD.multipliedBy(5).toMillis(), TimeUnit.MILLISECONDS);
+
+        assertThat(detector.isStarted()).isFalse();
+        assertThat(stalls).isEmpty();
+    }
+
+    @Test
+    public void culpritIsTheInnermostFrameOfTheLibrary() {
+        Stall stall = new Stall(THRESHOLD, new StackTraceElement[] { //
+                frame("java.lang.Thread", "sleep"), //
+                frame(FxThreadStallDetector.class.getName() + "$Stall", "culprit"), //
+                frame("reactor.core.publisher.FluxMap$MapSubscriber", "onNext"), //
+                frame("org.jmad.modelpack.gui.panes.JMadModelPackagesSelectionControl", "updateSearch"), //
+                frame("com.sun.glass.ui.InvokeLaterDispatcher$Future", "run") });
+
+        assertThat(stall.culprit()).hasValueSatisfying(
+                frame -> assertThat(frame.getMethodName()).isEqualTo("updateSearch"));
+    }
+
+    @Test
+    public void culpritFallsBackToTheInnermostReactorFrame() {
+        Stall stall = new Stall(THRESHOLD, new StackTraceElement[] { //
+                frame("java.lang.Thread", "sleep"), //
+                frame("reactor.core.publisher.FluxMap$MapSubscriber", "onNext"), //
+                frame("com.sun.glass.ui.InvokeLaterDispatcher$Future", "run") });
+        Stall unknown = new Stall(THRESHOLD, new StackTraceElement[] { frame("java.lang.Thread", "sleep") });
+
+        assertThat(stall.culprit()).hasValueSatisfying(
+                frame -> assertThat(frame.getClassName()).startsWith("reactor.core.publisher."));
+        assertThat(unknown.culprit()).isEmpty();
+    }
+
+    private void waitForResponsiveFxThread() {
+        /* the first ping tells the detector which thread is the FX thread */
+        WaitForAsyncUtils.waitForFxEvents();
+        WaitForAsyncUtils.sleep(PING_INTERVAL.multipliedBy(3).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private static void blockFxThread(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static StackTraceElement frame(String className, String methodName) {
+        return new StackTraceElement(className, methodName, null, -1);
+    }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2018 European Organisation for Nuclear Research (CERN), All Rights Reserved.
+ */
+
+package org.jmad.modelpack.gui.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GramIndexTest {
+
+    @Test
+    public void wordMatchesTheItemsWithATermContainingIt() {
+        GramIndex<String> index = GramIndex.create();
+        index.add("a", "LHC", "2018");
+        index.add("b", "SPS", "2018");
+
+        assertThat(index.matching("lhc", null)).containsExactly("a");
+        assertThat(index.matching("201", null)).containsExactlyInAnyOrder("a", "b");
+        assertThat(index.matching("2018", null)).containsExactlyInAnyOrder("a", "b");
+        assertThat(index.matching("s", null)).containsExactly("b");
+        assertThat(index.matching("lhc2018", null)).as("words do not span terms").isEmpty();
+        assertThat(index.matching("2018", new HashSet<>(Arrays.asList("b")))).containsExactly("b");
+    }
+
+    @Test
+    public void extendedItemMatchesItsNewTerms() {
+        GramIndex<String> index = GramIndex.create();
+        index.add("a", "LHC");
+
+        assertThat(index.extend("a", "Injection")).isTrue();
+        assertThat(index.extend("unknown", "Injection")).isFalse();
+
+        assertThat(index.matching("inject", null)).containsExactly("a");
+        assertThat(index.matching("lhc", null)).containsExactly("a");
+        assertThat(index.contains("a", "injection")).isTrue();
+    }
+
+    @Test
+    public void removedItemDoesNotMatchAnymore() {
+        GramIndex<String> index = GramIndex.create();
+        index.add("a", "LHC");
+        index.add("b", "LHC");
+
+        assertThat(index.remove("a")).isTrue();
+        assertThat(index.remove("a")).isFalse();
+
+        assertThat(index.matching("lhc", null)).containsExactly("b");
+        assertThat(index.items()).containsExactly("b");
+        index.clear();
+        assertThat(index.size()).isZero();
+        assertThat(index.matching("lhc", null)).isEmpty();
+    }
+
+    @Test
+    public void identityBasedIndexTellsEqualItemsApart() {
+        GramIndex<String> index = GramIndex.identityBased();
+        String first = new String("item");
+        String second = new String("item");
+
+        assertThat(index.add(first, "LHC")).isTrue();
+        assertThat(index.add(second, "SPS")).isTrue();
+        assertThat(index.add(first, "PS")).isFalse();
+
+        assertThat(index.matching("sps", null)).hasSize(1).allSatisfy(item -> assertThat(item).isSameAs(second));
+        assertThat(index.refine(index.items(), "lhc")).hasSize(1).allSatisfy(item -> assertThat(item).isSameAs(first));
+    }
+
+}